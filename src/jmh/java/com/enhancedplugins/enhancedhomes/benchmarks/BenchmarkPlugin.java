@@ -0,0 +1,60 @@
+package com.enhancedplugins.enhancedhomes.benchmarks;
+
+import com.enhancedplugins.enhancedhomes.EnhancedHomes;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPluginLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * The BenchmarkPlugin class is an EnhancedHomes plugin running on the BenchmarkServer, with a temporary data folder.
+ * The plugin is not enabled: benchmarks create the managers they measure themselves.
+ */
+final class BenchmarkPlugin extends EnhancedHomes {
+
+    private BenchmarkPlugin(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file) {
+        super(loader, description, dataFolder, file);
+    }
+
+    /**
+     * Creates a plugin in a new temporary data folder, with the settings and messages loaded.
+     *
+     * @param config The configuration values that differ from the bundled config.yml.
+     * @return The plugin.
+     * @throws IOException If the data folder could not be created.
+     */
+    @SuppressWarnings("deprecation")
+    static BenchmarkPlugin create(Map<String, Object> config) throws IOException {
+        JavaPluginLoader loader = new JavaPluginLoader(BenchmarkServer.install());
+        File dataFolder = Files.createTempDirectory("enhancedhomes-benchmark").toFile();
+        PluginDescriptionFile description = new PluginDescriptionFile("EnhancedHomes", "benchmark", EnhancedHomes.class.getName());
+        BenchmarkPlugin plugin = new BenchmarkPlugin(loader, description, dataFolder, new File(dataFolder, "EnhancedHomes.jar"));
+
+        YamlConfiguration configFile = new YamlConfiguration();
+        config.forEach(configFile::set);
+        configFile.save(new File(dataFolder, "config.yml"));
+        plugin.reloadPluginConfig();
+        plugin.loadLangConfig();
+        return plugin;
+    }
+
+    /**
+     * Deletes the data folder of the plugin and everything in it.
+     *
+     * @throws IOException If a file could not be deleted.
+     */
+    void deleteDataFolder() throws IOException {
+        try (Stream<Path> paths = Files.walk(getDataFolder().toPath())) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.enhancedplugins.enhancedhomes.benchmarks;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.PermissionAttachmentInfo;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The BenchmarkServer class stands in for a Bukkit server, so the plugin can run in the benchmarks without one.
+ * The server, its scheduler and players are dynamic proxies: the few methods the plugin needs return fixed values,
+ * and every other method returns a neutral value (null, zero, false or an empty collection).
+ * Scheduled tasks are never run, benchmarks call the code they measure directly, except asynchronous timers
+ * such as the background writer, which run on a daemon thread between startAsyncTimers and stopAsyncTimers.
+ */
+final class BenchmarkServer {
+    private static final long MILLIS_PER_TICK = 50;
+    private static Server server;
+    private static volatile ScheduledExecutorService asyncTimers;
+
+    private BenchmarkServer() {
+    }
+
+    /**
+     * Installs the stand-in server as the Bukkit server, once per JVM.
+     *
+     * @return The server.
+     */
+    static synchronized Server install() {
+        if (server == null) {
+            Logger logger = Logger.getLogger("BenchmarkServer");
+            logger.setLevel(Level.WARNING);
+            BukkitTask task = stub(BukkitTask.class, Map.of());
+            BukkitScheduler scheduler = stub(BukkitScheduler.class, Map.of(
+                    "runTask", task,
+                    "runTaskLater", task,
+                    "runTaskTimer", task,
+                    "runTaskAsynchronously", task,
+                    "runTaskLaterAsynchronously", task,
+                    "runTaskTimerAsynchronously", (Answer) args -> scheduleAsyncTimer((Runnable) args[1], (long) args[2], (long) args[3])));
+            server = stub(Server.class, Map.of(
+                    "getLogger", logger,
+                    "getName", "BenchmarkServer",
+                    "getVersion", "benchmark",
+                    "getBukkitVersion", "benchmark",
+                    "getScheduler", scheduler));
+            Bukkit.setServer(server);
+        }
+        return server;
+    }
+
+    /**
+     * Runs the asynchronous timers scheduled from now on, for benchmarks measuring the plugin while it writes in the background.
+     */
+    static synchronized void startAsyncTimers() {
+        if (asyncTimers == null) {
+            asyncTimers = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "BenchmarkServer Async Timers");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Stops every asynchronous timer started since startAsyncTimers.
+     */
+    static synchronized void stopAsyncTimers() {
+        if (asyncTimers != null) {
+            asyncTimers.shutdownNow();
+            asyncTimers = null;
+        }
+    }
+
+    /**
+     * Schedules an asynchronous timer, or only returns a task if asynchronous timers are not running.
+     *
+     * @param runnable The task.
+     * @param delayTicks The delay before the first run, in ticks.
+     * @param periodTicks The delay between two runs, in ticks.
+     * @return The task, which stops the timer when cancelled.
+     */
+    private static BukkitTask scheduleAsyncTimer(Runnable runnable, long delayTicks, long periodTicks) {
+        ScheduledExecutorService timers = asyncTimers;
+        if (timers == null) {
+            return stub(BukkitTask.class, Map.of());
+        }
+        ScheduledFuture<?> future = timers.scheduleAtFixedRate(() -> {
+            try {
+                runnable.run();
+            } catch (RuntimeException e) {
+                // A failed run must not cancel the next ones, like on a server
+                server.getLogger().log(Level.SEVERE, "Asynchronous timer failed", e);
+            }
+        }, delayTicks * MILLIS_PER_TICK, Math.max(1, periodTicks) * MILLIS_PER_TICK, TimeUnit.MILLISECONDS);
+        return stub(BukkitTask.class, Map.of(
+                "cancel", (Answer) args -> future.cancel(false),
+                "isCancelled", (Answer) args -> future.isCancelled()));
+    }
+
+    /**
+     * Creates an online player without any permission except the given effective ones.
+     *
+     * @param playerId The UUID of the player.
+     * @param permissions The effective permissions of the player.
+     * @return The player.
+     */
+    static Player player(UUID playerId, Set<PermissionAttachmentInfo> permissions) {
+        return stub(Player.class, Map.of(
+                "getUniqueId", playerId,
+                "getName", "Player" + Long.toHexString(playerId.getLeastSignificantBits() & 0xFFFFFFL),
+                "isOnline", true,
+                "getEffectivePermissions", permissions));
+    }
+
+    /**
+     * Creates a proxy of an interface whose methods return the value registered for their name, or a neutral value.
+     *
+     * @param type The interface.
+     * @param values The return value of each method, by method name, or an Answer computing it from the arguments.
+     * @return The proxy.
+     */
+    private static <T> T stub(Class<T> type, Map<String, Object> values) {
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return self == args[0];
+                case "hashCode":
+                    return System.identityHashCode(self);
+                case "toString":
+                    return type.getSimpleName() + "Stub";
+                default:
+                    break;
+            }
+            Object value = values.get(method.getName());
+            if (value instanceof Answer answer) {
+                return answer.answer(args);
+            }
+            if (value != null) {
+                return value;
+            }
+            return neutralValue(method.getReturnType());
+        });
+        return type.cast(proxy);
+    }
+
+    private static Object neutralValue(Class<?> returnType) {
+        if (returnType == boolean.class) {
+            return false;
+        } else if (returnType == int.class) {
+            return 0;
+        } else if (returnType == long.class) {
+            return 0L;
+        } else if (returnType == double.class) {
+            return 0.0;
+        } else if (returnType == float.class) {
+            return 0.0f;
+        } else if (returnType == short.class) {
+            return (short) 0;
+        } else if (returnType == byte.class) {
+            return (byte) 0;
+        } else if (returnType == char.class) {
+            return '\0';
+        } else if (Set.class.isAssignableFrom(returnType)) {
+            return Collections.emptySet();
+        } else if (Collection.class.isAssignableFrom(returnType)) {
+            return Collections.emptyList();
+        }
+        return null;
+    }
+
+    /**
+     * The Answer interface computes the return value of a stubbed method from its arguments.
+     */
+    @FunctionalInterface
+    private interface Answer {
+        /**
+         * Computes the return value of a call.
+         *
+         * @param args The arguments of the call.
+         * @return The return value.
+         */
+        Object answer(Object[] args);
+    }
+}
@@ -0,0 +1,95 @@
+package com.enhancedplugins.enhancedhomes.benchmarks;
+
+import com.enhancedplugins.enhancedhomes.models.Home;
+import com.enhancedplugins.enhancedhomes.storage.HomeStorage;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * The HomeDataset class generates the synthetic homes the benchmarks run against.
+ * Each player has HOMES_PER_PLAYER homes, named home0 to home4, spread over two worlds
+ * within SPREAD blocks of spawn. The generator is seeded, so a given size always produces the same homes
+ * and results can be compared between runs and versions.
+ */
+final class HomeDataset {
+    static final int HOMES_PER_PLAYER = 5;
+    static final int SPREAD = 10_000;
+    private static final String[] WORLDS = {"world", "world_nether"};
+    private static final int WRITE_BATCH_SIZE = 1_000;
+    private final Map<UUID, List<Home>> homesByPlayer;
+    private final UUID[] playerIds;
+
+    private HomeDataset(Map<UUID, List<Home>> homesByPlayer) {
+        this.homesByPlayer = homesByPlayer;
+        this.playerIds = homesByPlayer.keySet().toArray(new UUID[0]);
+    }
+
+    /**
+     * Generates a dataset.
+     *
+     * @param homeCount The total number of homes, rounded up to a whole number of players.
+     * @return The dataset.
+     */
+    static HomeDataset generate(int homeCount) {
+        Random random = new Random(homeCount);
+        int playerCount = (homeCount + HOMES_PER_PLAYER - 1) / HOMES_PER_PLAYER;
+        Map<UUID, List<Home>> homesByPlayer = new LinkedHashMap<>(playerCount * 2);
+        for (int player = 0; player < playerCount; player++) {
+            List<Home> homes = new ArrayList<>(HOMES_PER_PLAYER);
+            for (int home = 0; home < HOMES_PER_PLAYER; home++) {
+                homes.add(new Home("home" + home, WORLDS[random.nextInt(WORLDS.length)],
+                        random.nextInt(2 * SPREAD) - SPREAD + 0.5, 64 + random.nextInt(64), random.nextInt(2 * SPREAD) - SPREAD + 0.5));
+            }
+            homesByPlayer.put(new UUID(random.nextLong(), random.nextLong()), homes);
+        }
+        return new HomeDataset(homesByPlayer);
+    }
+
+    /**
+     * Writes every home of the dataset to a storage, in batches.
+     *
+     * @param storage The storage.
+     * @throws IOException If the homes could not be written.
+     */
+    void writeTo(HomeStorage storage) throws IOException {
+        Map<UUID, List<Home>> batch = new LinkedHashMap<>();
+        for (Map.Entry<UUID, List<Home>> entry : homesByPlayer.entrySet()) {
+            batch.put(entry.getKey(), entry.getValue());
+            if (batch.size() == WRITE_BATCH_SIZE) {
+                storage.saveAllHomes(batch);
+                batch.clear();
+            }
+        }
+        storage.saveAllHomes(batch);
+    }
+
+    /**
+     * Retrieves the homes of every player.
+     *
+     * @return The homes, by player UUID.
+     */
+    Map<UUID, List<Home>> getHomesByPlayer() { return homesByPlayer; }
+
+    /**
+     * Retrieves the UUIDs of the players, in generation order.
+     *
+     * @return The player UUIDs.
+     */
+    UUID[] getPlayerIds() { return playerIds; }
+
+    /**
+     * Picks the players that a benchmark cycles through.
+     *
+     * @param count The number of players to pick.
+     * @return The players, picked at random with a fixed seed.
+     */
+    UUID[] samplePlayerIds(int count) {
+        Random random = new Random(count);
+        UUID[] sample = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            sample[i] = playerIds[random.nextInt(playerIds.length)];
+        }
+        return sample;
+    }
+}
@@ -0,0 +1,81 @@
+package com.enhancedplugins.enhancedhomes.benchmarks;
+
+import com.enhancedplugins.enhancedhomes.managers.HomeLimitResolver;
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.PermissionAttachmentInfo;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The HomeLimitBenchmark class compares resolving the home limit of a player through the HomeLimitResolver,
+ * with and without its cache, with the previous scan of every effective permission on each command.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HomeLimitBenchmark {
+
+    @Param({"20", "200"})
+    public int permissions;
+
+    private BenchmarkPlugin plugin;
+    private HomeLimitResolver resolver;
+    private Player player;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        plugin = BenchmarkPlugin.create(Map.of());
+        resolver = new HomeLimitResolver(plugin);
+        Set<PermissionAttachmentInfo> effectivePermissions = new HashSet<>();
+        for (int i = 0; i < permissions - 3; i++) {
+            effectivePermissions.add(new PermissionAttachmentInfo(null, "someplugin.node" + i, null, true));
+        }
+        for (int limit : new int[]{3, 10, 25}) {
+            effectivePermissions.add(new PermissionAttachmentInfo(null, "enhancedhomes.sethome.max." + limit, null, true));
+        }
+        player = BenchmarkServer.player(UUID.randomUUID(), effectivePermissions);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        plugin.deleteDataFolder();
+    }
+
+    @Benchmark
+    public int legacyScan() {
+        int maxHomes = plugin.getSettings().getMaxHomes();
+        if (player.hasPermission("enhancedhomes.sethome.unlimited")) {
+            return 100;
+        }
+        List<String> sortedPermissions = player.getEffectivePermissions().stream()
+                .map(PermissionAttachmentInfo::getPermission)
+                .filter(perm -> perm.startsWith("enhancedhomes.sethome.max"))
+                .sorted()
+                .toList();
+        return sortedPermissions.stream()
+                .map(perm -> Integer.parseInt(perm.replace("enhancedhomes.sethome.max.", "")))
+                .max(Integer::compareTo)
+                .orElse(maxHomes);
+    }
+
+    @Benchmark
+    public int resolverCached() {
+        return resolver.getHomeLimit(player);
+    }
+
+    @Benchmark
+    public int resolverUncached() {
+        resolver.invalidate(player.getUniqueId());
+        return resolver.getHomeLimit(player);
+    }
+}
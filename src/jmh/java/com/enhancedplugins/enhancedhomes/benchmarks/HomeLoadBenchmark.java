@@ -0,0 +1,63 @@
+package com.enhancedplugins.enhancedhomes.benchmarks;
+
+import com.enhancedplugins.enhancedhomes.managers.HomeManager;
+import com.enhancedplugins.enhancedhomes.models.Home;
+import com.enhancedplugins.enhancedhomes.storage.JournalHomeStorage;
+import com.enhancedplugins.enhancedhomes.storage.HomeStorage;
+import com.enhancedplugins.enhancedhomes.storage.YamlHomeStorage;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The HomeLoadBenchmark class measures how long a HomeManager with eager loading takes to start,
+ * from opening the storage to the homes of every player being published.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HomeLoadBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int homes;
+
+    @Param({"yaml", "journal"})
+    public String storageType;
+
+    private BenchmarkPlugin plugin;
+    private UUID playerId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        plugin = BenchmarkPlugin.create(Map.of("storage", storageType, "lazy-loading", false));
+        HomeDataset dataset = HomeDataset.generate(homes);
+        HomeStorage storage = "journal".equals(storageType)
+                ? new JournalHomeStorage(plugin, plugin.getSettings().getJournalCompactionInterval())
+                : new YamlHomeStorage(plugin);
+        dataset.writeTo(storage);
+        storage.close();
+        playerId = dataset.getPlayerIds()[0];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        plugin.deleteDataFolder();
+    }
+
+    @Benchmark
+    public Home loadHomes() {
+        HomeManager homeManager = new HomeManager(plugin);
+        try {
+            // Waits for the eager load to be published
+            return homeManager.getHome(playerId, "home0");
+        } finally {
+            homeManager.shutdown();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.enhancedplugins.enhancedhomes.benchmarks;
+
+import com.enhancedplugins.enhancedhomes.managers.HomeManager;
+import com.enhancedplugins.enhancedhomes.models.Home;
+import com.enhancedplugins.enhancedhomes.storage.YamlHomeStorage;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The HomeManagerBenchmark class measures the in-memory home operations that commands run on the main thread.
+ * Homes are loaded eagerly from YAML files, so every lookup is served from memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HomeManagerBenchmark {
+    private static final int SAMPLE_SIZE = 4096;
+
+    @Param({"1000", "100000", "1000000"})
+    public int homes;
+
+    private BenchmarkPlugin plugin;
+    private HomeManager homeManager;
+    private UUID[] playerIds;
+    private Player[] players;
+    private String[] homeNames;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        plugin = BenchmarkPlugin.create(Map.of("lazy-loading", false));
+        HomeDataset dataset = HomeDataset.generate(homes);
+        YamlHomeStorage storage = new YamlHomeStorage(plugin);
+        dataset.writeTo(storage);
+        storage.close();
+
+        homeManager = new HomeManager(plugin);
+        playerIds = dataset.samplePlayerIds(SAMPLE_SIZE);
+        players = new Player[SAMPLE_SIZE];
+        homeNames = new String[SAMPLE_SIZE];
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            players[i] = BenchmarkServer.player(playerIds[i], Collections.emptySet());
+            homeNames[i] = "HOME" + (i % HomeDataset.HOMES_PER_PLAYER);
+        }
+        // Waits for the eager load to be published
+        homeManager.getHome(playerIds[0], homeNames[0]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        homeManager.shutdown();
+        plugin.deleteDataFolder();
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (SAMPLE_SIZE - 1);
+        return cursor;
+    }
+
+    @Benchmark
+    public Home getHome() {
+        int i = next();
+        return homeManager.getHome(playerIds[i], homeNames[i]);
+    }
+
+    @Benchmark
+    public List<Home> getHomes() {
+        return homeManager.getHomes(playerIds[next()]);
+    }
+
+    @Benchmark
+    public List<String> completeHomeNames() {
+        return homeManager.completeHomeNames(playerIds[next()], "ho");
+    }
+
+    @Benchmark
+    public void addHome() {
+        int i = next();
+        homeManager.addHome(players[i], new Home(homeNames[i], "world", i, 64, -i));
+    }
+}
@@ -0,0 +1,186 @@
+package com.enhancedplugins.enhancedhomes.benchmarks;
+
+import com.enhancedplugins.enhancedhomes.managers.HomeManager;
+import com.enhancedplugins.enhancedhomes.models.Home;
+import com.enhancedplugins.enhancedhomes.models.PlayerHomes;
+import com.enhancedplugins.enhancedhomes.storage.HomeStorage;
+import com.enhancedplugins.enhancedhomes.storage.JournalHomeStorage;
+import com.enhancedplugins.enhancedhomes.storage.YamlHomeStorage;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * The HomeManagerStressBenchmark class hammers the home manager from several threads at once while the background writer
+ * saves every second, and checks that no change is lost. Each thread sets, moves, deletes and reads the homes of its own players,
+ * and lists the homes of the other threads' players. Reads of its own players must see its last change right away;
+ * at the end of the trial, the homes in memory and the homes read back from the storage must match every thread's changes.
+ * A mismatch throws, which fails the run with -foe true, the default of the benchmarks profile.
+ * With lazy loading, the offline cache is tiny, so homes keep being evicted and read again while they are written.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 5)
+@Threads(8)
+@Fork(1)
+public class HomeManagerStressBenchmark {
+    private static final int PLAYERS_PER_THREAD = 64;
+    private static final int HOME_NAMES = 8;
+    private static final int OFFLINE_CACHE_SIZE = 16;
+
+    @Param({"false", "true"})
+    public boolean lazyLoading;
+
+    @Param({"yaml", "journal"})
+    public String storageType;
+
+    private BenchmarkPlugin plugin;
+    private HomeManager homeManager;
+    private final List<Worker> workers = new CopyOnWriteArrayList<>();
+    private final List<UUID> allPlayerIds = new CopyOnWriteArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkServer.startAsyncTimers();
+        plugin = BenchmarkPlugin.create(Map.of(
+                "lazy-loading", lazyLoading,
+                "offline-cache-size", OFFLINE_CACHE_SIZE,
+                "storage", storageType,
+                "save-interval", 1,
+                "max-dirty-age", 1));
+        homeManager = new HomeManager(plugin);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try {
+            for (Worker worker : workers) {
+                worker.check("in memory", homeManager::getHomes);
+            }
+            homeManager.shutdown();
+            HomeStorage storage = storageType.equals("journal") ? new JournalHomeStorage(plugin, Integer.MAX_VALUE) : new YamlHomeStorage(plugin);
+            Map<UUID, List<Home>> storedHomes;
+            try {
+                storedHomes = storage.loadAllHomes();
+            } finally {
+                storage.close();
+            }
+            for (Worker worker : workers) {
+                worker.check("in the storage", playerId -> storedHomes.getOrDefault(playerId, List.of()));
+            }
+        } finally {
+            BenchmarkServer.stopAsyncTimers();
+            plugin.deleteDataFolder();
+        }
+    }
+
+    @Benchmark
+    public Object changeHomes(Worker worker) {
+        return worker.step(homeManager, allPlayerIds);
+    }
+
+    /**
+     * The Worker class holds the players of a benchmark thread, and the homes they should have after the thread's changes.
+     */
+    @State(Scope.Thread)
+    public static class Worker {
+        private final Map<UUID, Map<String, Home>> expectedHomes = new HashMap<>();
+        private UUID[] playerIds;
+        private Player[] players;
+        private long changes;
+
+        @Setup(Level.Trial)
+        public void setUp(HomeManagerStressBenchmark benchmark) {
+            playerIds = new UUID[PLAYERS_PER_THREAD];
+            players = new Player[PLAYERS_PER_THREAD];
+            for (int i = 0; i < PLAYERS_PER_THREAD; i++) {
+                playerIds[i] = UUID.randomUUID();
+                players[i] = BenchmarkServer.player(playerIds[i], Collections.emptySet());
+                expectedHomes.put(playerIds[i], new LinkedHashMap<>());
+            }
+            benchmark.allPlayerIds.addAll(Arrays.asList(playerIds));
+            benchmark.workers.add(this);
+        }
+
+        /**
+         * Runs one random operation on the homes of a player of this thread, or lists the homes of any player.
+         *
+         * @param homeManager The home manager.
+         * @param allPlayerIds The players of every thread.
+         * @return The result of the operation.
+         */
+        private Object step(HomeManager homeManager, List<UUID> allPlayerIds) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int i = random.nextInt(PLAYERS_PER_THREAD);
+            UUID playerId = playerIds[i];
+            Map<String, Home> homes = expectedHomes.get(playerId);
+            // Mixed case, so replacing a home under another case is covered
+            String homeName = (random.nextBoolean() ? "Home" : "home") + random.nextInt(HOME_NAMES);
+            String key = PlayerHomes.normalize(homeName);
+            int operation = random.nextInt(10);
+            if (operation < 3) {
+                Home home = new Home(homeName, "world", random.nextInt(10_000), 64, ++changes);
+                homeManager.addHome(players[i], home);
+                homes.put(key, home);
+            } else if (operation < 5) {
+                double x = random.nextInt(10_000);
+                homeManager.updateHome(players[i], homeName, "world_nether", x, 70, ++changes);
+                homes.computeIfPresent(key, (name, home) -> home.withLocation("world_nether", x, 70, changes));
+            } else if (operation < 7) {
+                homeManager.removeHome(playerId, homeName);
+                homes.remove(key);
+            } else if (operation < 9) {
+                Home home = homeManager.getHome(playerId, homeName);
+                if (!Objects.equals(home, homes.get(key))) {
+                    throw new IllegalStateException("Read " + describe(home) + " instead of " + describe(homes.get(key))
+                            + " for the home " + homeName + " of " + playerId);
+                }
+                return home;
+            } else {
+                List<Home> otherHomes = homeManager.getHomes(allPlayerIds.get(random.nextInt(allPlayerIds.size())));
+                Set<String> names = new HashSet<>();
+                for (Home home : otherHomes) {
+                    if (!names.add(PlayerHomes.normalize(home.getName()))) {
+                        throw new IllegalStateException("Listed the home " + home.getName() + " twice");
+                    }
+                }
+                return otherHomes;
+            }
+            return null;
+        }
+
+        /**
+         * Checks the homes of every player of this thread.
+         *
+         * @param where Where the homes are read from, for the error message.
+         * @param homesOf Reads the homes of a player.
+         */
+        private void check(String where, Function<UUID, List<Home>> homesOf) {
+            for (Map.Entry<UUID, Map<String, Home>> entry : expectedHomes.entrySet()) {
+                Set<Home> actualHomes = new HashSet<>(homesOf.apply(entry.getKey()));
+                if (!actualHomes.equals(new HashSet<>(entry.getValue().values()))) {
+                    throw new IllegalStateException("The homes of " + entry.getKey() + " " + where + " are " + describe(actualHomes)
+                            + " instead of " + describe(entry.getValue().values()));
+                }
+            }
+        }
+
+        private static String describe(Home home) {
+            return home == null ? "none" : home.getName() + "@" + home.getWorldName() + "(" + home.getX() + ", " + home.getY() + ", " + home.getZ() + ")";
+        }
+
+        private static String describe(Collection<Home> homes) {
+            StringJoiner joiner = new StringJoiner(", ", "[", "]");
+            homes.forEach(home -> joiner.add(describe(home)));
+            return joiner.toString();
+        }
+    }
+}
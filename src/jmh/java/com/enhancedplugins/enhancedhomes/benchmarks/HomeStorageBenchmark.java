@@ -0,0 +1,99 @@
+package com.enhancedplugins.enhancedhomes.benchmarks;
+
+import com.enhancedplugins.enhancedhomes.models.Home;
+import com.enhancedplugins.enhancedhomes.storage.HomeStorage;
+import com.enhancedplugins.enhancedhomes.storage.JournalHomeStorage;
+import com.enhancedplugins.enhancedhomes.storage.YamlHomeStorage;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The HomeStorageBenchmark class measures the storage operations behind loading and saving homes.
+ * The SQLite storage is left out, its driver is provided by the server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HomeStorageBenchmark {
+    private static final int SAVE_BATCH_SIZE = 100;
+
+    @Param({"1000", "100000", "1000000"})
+    public int homes;
+
+    @Param({"yaml", "journal"})
+    public String storageType;
+
+    private BenchmarkPlugin plugin;
+    private HomeStorage storage;
+    private UUID[] playerIds;
+    private Map<UUID, List<Home>> homesByPlayer;
+    private int cursor;
+    private int saves;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        plugin = BenchmarkPlugin.create(Map.of("storage", storageType));
+        HomeDataset dataset = HomeDataset.generate(homes);
+        storage = "journal".equals(storageType)
+                ? new JournalHomeStorage(plugin, plugin.getSettings().getJournalCompactionInterval())
+                : new YamlHomeStorage(plugin);
+        dataset.writeTo(storage);
+        homesByPlayer = dataset.getHomesByPlayer();
+        playerIds = dataset.samplePlayerIds(4096);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        storage.close();
+        plugin.deleteDataFolder();
+    }
+
+    /**
+     * Reads the homes of one player, as when an offline player's homes are looked up.
+     */
+    @Benchmark
+    public List<Home> loadHomes() throws IOException {
+        cursor = (cursor + 1) & (playerIds.length - 1);
+        return storage.loadHomes(playerIds[cursor]);
+    }
+
+    /**
+     * Reads every home, as the eager loading and the spatial index do at startup.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public Map<UUID, List<Home>> loadAllHomes() throws IOException {
+        return storage.loadAllHomes();
+    }
+
+    /**
+     * Writes a batch of players whose homes all moved, as one flush of the background writer does.
+     */
+    @Benchmark
+    public void saveAllHomes() throws IOException {
+        saves++;
+        Map<UUID, List<Home>> batch = new LinkedHashMap<>();
+        for (int i = 0; i < SAVE_BATCH_SIZE; i++) {
+            cursor = (cursor + 1) & (playerIds.length - 1);
+            List<Home> movedHomes = new ArrayList<>();
+            for (Home home : homesByPlayer.get(playerIds[cursor])) {
+                movedHomes.add(home.withLocation(home.getWorldName(), home.getX() + saves, home.getY(), home.getZ()));
+            }
+            batch.put(playerIds[cursor], movedHomes);
+        }
+        storage.saveAllHomes(batch);
+    }
+}
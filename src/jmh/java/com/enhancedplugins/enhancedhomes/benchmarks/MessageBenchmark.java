@@ -0,0 +1,49 @@
+package com.enhancedplugins.enhancedhomes.benchmarks;
+
+import com.enhancedplugins.enhancedhomes.utils.MessageTemplate;
+import org.bukkit.ChatColor;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The MessageBenchmark class compares rendering a language message from its compiled template
+ * with the previous way of looking it up, translating its colors and replacing its placeholders on every use.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageBenchmark {
+    private static final String PATH = "commands.delhome.home-not-found";
+    private YamlConfiguration langConfig;
+    private MessageTemplate template;
+    private String prefix;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        langConfig = YamlConfiguration.loadConfiguration(new InputStreamReader(
+                Objects.requireNonNull(MessageBenchmark.class.getClassLoader().getResourceAsStream("lang.yml")), StandardCharsets.UTF_8));
+        template = MessageTemplate.compile(langConfig.getString(PATH));
+        prefix = ChatColor.translateAlternateColorCodes('&', langConfig.getString("prefix")) + ChatColor.RESET + " ";
+    }
+
+    @Benchmark
+    public String legacyReplace() {
+        String message = ChatColor.translateAlternateColorCodes('&', langConfig.getString(PATH));
+        message = message.replace("%home%", "base");
+        message = message.replace("%player%", "Steve");
+        return prefix + message;
+    }
+
+    @Benchmark
+    public String compiledTemplate() {
+        return template.renderPrefixed(prefix, "home", "base", "player", "Steve");
+    }
+}
@@ -0,0 +1,88 @@
+package com.enhancedplugins.enhancedhomes.benchmarks;
+
+import com.enhancedplugins.enhancedhomes.managers.HomeSpatialIndex;
+import com.enhancedplugins.enhancedhomes.models.Home;
+import com.enhancedplugins.enhancedhomes.models.PlayerHomes;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SpatialIndexBenchmark class measures the proximity and region queries of the spatial index,
+ * and the update done on every home change. Region queries should stay under a millisecond with a million homes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpatialIndexBenchmark {
+    private static final int SAMPLE_SIZE = 1024;
+
+    @Param({"1000", "100000", "1000000"})
+    public int homes;
+
+    @Param({"256"})
+    public int regionSize;
+
+    private HomeSpatialIndex index;
+    private double[] queryX;
+    private double[] queryZ;
+    private UUID[] playerIds;
+    private PlayerHomes[] playerHomes;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        HomeDataset dataset = HomeDataset.generate(homes);
+        index = new HomeSpatialIndex();
+        dataset.getHomesByPlayer().forEach(index::addIfAbsent);
+
+        Random random = new Random(SAMPLE_SIZE);
+        queryX = new double[SAMPLE_SIZE];
+        queryZ = new double[SAMPLE_SIZE];
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            queryX[i] = random.nextInt(2 * HomeDataset.SPREAD) - HomeDataset.SPREAD;
+            queryZ[i] = random.nextInt(2 * HomeDataset.SPREAD) - HomeDataset.SPREAD;
+        }
+        playerIds = dataset.samplePlayerIds(SAMPLE_SIZE);
+        playerHomes = new PlayerHomes[SAMPLE_SIZE];
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            playerHomes[i] = new PlayerHomes(dataset.getHomesByPlayer().get(playerIds[i]));
+        }
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (SAMPLE_SIZE - 1);
+        return cursor;
+    }
+
+    @Benchmark
+    public List<HomeSpatialIndex.IndexedHome> findInRegion() {
+        int i = next();
+        return index.findInRegion("world", queryX[i], queryZ[i], queryX[i] + regionSize, queryZ[i] + regionSize);
+    }
+
+    @Benchmark
+    public List<HomeSpatialIndex.IndexedHome> findInWholeWorld() {
+        return index.findInRegion("world", -HomeDataset.SPREAD, -HomeDataset.SPREAD, HomeDataset.SPREAD, HomeDataset.SPREAD);
+    }
+
+    @Benchmark
+    public List<HomeSpatialIndex.IndexedHome> findNear() {
+        int i = next();
+        return index.findNear("world", queryX[i], queryZ[i], 100);
+    }
+
+    @Benchmark
+    public void update() {
+        int i = next();
+        Home home = playerHomes[i].get("home0");
+        playerHomes[i].put(home.withLocation(home.getWorldName(), home.getX() + 1, home.getY(), home.getZ()));
+        index.update(playerIds[i], playerHomes[i]);
+    }
+}
@@ -3,16 +3,40 @@ package com.enhancedplugins.enhancedhomes;
 import com.enhancedplugins.enhancedhomes.commands.DelHomeCommand;
 import com.enhancedplugins.enhancedhomes.commands.HomeCommand;
 import com.enhancedplugins.enhancedhomes.commands.HomesCommand;
+import com.enhancedplugins.enhancedhomes.commands.NearestHomeCommand;
 import com.enhancedplugins.enhancedhomes.commands.SetHomeCommand;
 import com.enhancedplugins.enhancedhomes.commands.EnhancedHomesReloadCommand;
+import com.enhancedplugins.enhancedhomes.commands.EnhancedHomesCommand;
+import com.enhancedplugins.enhancedhomes.listeners.PlayerConnectionListener;
+import com.enhancedplugins.enhancedhomes.listeners.WorldListener;
+import com.enhancedplugins.enhancedhomes.managers.ChunkPreloader;
+import com.enhancedplugins.enhancedhomes.managers.FileWatcher;
+import com.enhancedplugins.enhancedhomes.managers.HomeLimitResolver;
 import com.enhancedplugins.enhancedhomes.managers.HomeManager;
+import com.enhancedplugins.enhancedhomes.managers.PlayerNameIndex;
+import com.enhancedplugins.enhancedhomes.managers.WarmupManager;
+import com.enhancedplugins.enhancedhomes.metrics.PluginMetrics;
+import com.enhancedplugins.enhancedhomes.models.Settings;
+import com.enhancedplugins.enhancedhomes.sync.HomeSync;
+import com.enhancedplugins.enhancedhomes.sync.SocketTransport;
+import com.enhancedplugins.enhancedhomes.sync.SyncTransport;
 import com.enhancedplugins.enhancedhomes.utils.AnsiColor;
+import com.enhancedplugins.enhancedhomes.utils.MessageTemplate;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
 import org.bukkit.ChatColor;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -27,9 +51,40 @@ public class EnhancedHomes extends JavaPlugin {
     private static final String PLUGIN_ERROR_PREFIX = ChatColor.RED + "[" + ChatColor.WHITE + PLUGIN_NAME + ChatColor.RED + "] " + ChatColor.RESET;
     private static final String PLUGIN_PREFIX = ChatColor.AQUA + "[" + ChatColor.WHITE + PLUGIN_NAME + ChatColor.AQUA + "] " + ChatColor.RESET;
     private FileConfiguration config;
-    private FileConfiguration langConfig;
+    private volatile FileConfiguration langConfig;
     private HomeManager homeManager;
+    private HomeLimitResolver homeLimitResolver;
+    private WarmupManager warmupManager;
+    private ChunkPreloader chunkPreloader;
+    private PlayerNameIndex playerNameIndex;
+    private FileWatcher fileWatcher;
+    private volatile HomeSync homeSync;
+    private Path syncFolder;
     private File langFile;
+    private volatile Map<String, MessageTemplate> messages = Map.of();
+    private volatile String prefix = "";
+    private volatile Settings settings = Settings.DEFAULTS;
+    private final PluginMetrics metrics = new PluginMetrics(this);
+
+    /**
+     * Constructor for the EnhancedHomes class, used by the server to load the plugin.
+     */
+    public EnhancedHomes() {
+        super();
+    }
+
+    /**
+     * Constructor for the EnhancedHomes class, used to run the plugin without a server, e.g. in the benchmarks.
+     * The server refuses this constructor for plugins it loads itself.
+     *
+     * @param loader The plugin loader.
+     * @param description The plugin description.
+     * @param dataFolder The data folder of the plugin.
+     * @param file The plugin file.
+     */
+    protected EnhancedHomes(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file) {
+        super(loader, description, dataFolder, file);
+    }
 
     /**
      * This method is called when the plugin is enabled.
@@ -46,12 +101,37 @@ public class EnhancedHomes extends JavaPlugin {
         config.addDefault("cross-world-tp", false);
         config.addDefault("warmup", true);
         config.addDefault("warmup-time", 3);
+        config.addDefault("warmup-check-interval", 5);
+        config.addDefault("warmup-cancel-on-damage", true);
         config.addDefault("homes-limit", true);
         config.addDefault("max-homes", 5);
+        config.addDefault("save-interval", 5);
+        config.addDefault("max-dirty-age", 30);
+        config.addDefault("lazy-loading", true);
+        config.addDefault("unload-delay", 60);
+        config.addDefault("offline-cache-size", 500);
+        config.addDefault("storage", "yaml");
+        config.addDefault("journal-compaction-interval", 300);
+        config.addDefault("homes-shard-levels", 0);
+        config.addDefault("near-radius", 100);
+        config.addDefault("near-max-radius", 500);
+        config.addDefault("index-all-homes", false);
+        config.addDefault("watch-files", false);
+        config.addDefault("watch-debounce", 500);
+        config.addDefault("sync", "none");
+        config.addDefault("sync-folder", "sync");
+        config.addDefault("bulk-players-per-tick", 200);
+        config.addDefault("bulk-tick-budget", 5);
         config.options().copyDefaults(true);
         saveConfig();
+        loadSettings();
 
+        metrics.register();
         this.homeManager = new HomeManager(this);
+        this.homeLimitResolver = new HomeLimitResolver(this);
+        this.warmupManager = new WarmupManager(this);
+        this.chunkPreloader = new ChunkPreloader(this);
+        this.playerNameIndex = new PlayerNameIndex(this);
 
         File homesDir = new File(getDataFolder(), "homes");
         if (!homesDir.exists()) {
@@ -63,23 +143,61 @@ public class EnhancedHomes extends JavaPlugin {
             saveResource("lang.yml", false);
         }
         this.langConfig = YamlConfiguration.loadConfiguration(langFile);
+        compileMessages();
+        updateFileWatcher();
+        updateHomeSync();
 
         // Register commands
-        Objects.requireNonNull(getCommand("homes")).setExecutor(new HomesCommand(this));
-        Objects.requireNonNull(getCommand("home")).setExecutor(new HomeCommand(this));
+        HomesCommand homesCommand = new HomesCommand(this);
+        Objects.requireNonNull(getCommand("homes")).setExecutor(homesCommand);
+        Objects.requireNonNull(getCommand("homes")).setTabCompleter(homesCommand);
+        HomeCommand homeCommand = new HomeCommand(this);
+        Objects.requireNonNull(getCommand("home")).setExecutor(homeCommand);
+        Objects.requireNonNull(getCommand("home")).setTabCompleter(homeCommand);
+        Objects.requireNonNull(getCommand("nearesthome")).setExecutor(new NearestHomeCommand(this, homeCommand));
         Objects.requireNonNull(getCommand("sethome")).setExecutor(new SetHomeCommand(this));
-        Objects.requireNonNull(getCommand("delhome")).setExecutor(new DelHomeCommand(this));
+        DelHomeCommand delHomeCommand = new DelHomeCommand(this);
+        Objects.requireNonNull(getCommand("delhome")).setExecutor(delHomeCommand);
+        Objects.requireNonNull(getCommand("delhome")).setTabCompleter(delHomeCommand);
         Objects.requireNonNull(getCommand("enhancedhomesreload")).setExecutor(new EnhancedHomesReloadCommand(this));
+        Objects.requireNonNull(getCommand("enhancedhomes")).setExecutor(new EnhancedHomesCommand(this));
+
+        // Register listeners
+        getServer().getPluginManager().registerEvents(new PlayerConnectionListener(this), this);
+        getServer().getPluginManager().registerEvents(new WorldListener(), this);
+        getServer().getPluginManager().registerEvents(homeLimitResolver, this);
+        getServer().getPluginManager().registerEvents(warmupManager, this);
+        getServer().getPluginManager().registerEvents(playerNameIndex, this);
 
         getLogger().info(PLUGIN_ENABLED);
     }
 
     /**
      * This method is called when the plugin is disabled.
-     * It logs that the plugin has been disabled.
+     * It writes every pending home change to disk and logs that the plugin has been disabled.
      */
     @Override
-    public void onDisable() { getLogger().info(PLUGIN_DISABLED); }
+    public void onDisable() {
+        if (fileWatcher != null) {
+            fileWatcher.shutdown();
+            fileWatcher = null;
+        }
+        stopHomeSync();
+        if (warmupManager != null) {
+            warmupManager.shutdown();
+        }
+        if (chunkPreloader != null) {
+            chunkPreloader.shutdown();
+        }
+        if (playerNameIndex != null) {
+            playerNameIndex.shutdown();
+        }
+        if (homeManager != null) {
+            homeManager.shutdown();
+        }
+        metrics.unregister();
+        getLogger().info(PLUGIN_DISABLED);
+    }
 
     /**
      * Retrieves the plugin configuration.
@@ -95,6 +213,103 @@ public class EnhancedHomes extends JavaPlugin {
         reloadConfig();
         this.config = getConfig();
         saveDefaultConfig();
+        loadSettings();
+        compileMessages();
+        if (homeLimitResolver != null) {
+            homeLimitResolver.invalidateAll();
+        }
+        if (homeManager != null) {
+            updateFileWatcher();
+            updateHomeSync();
+        }
+    }
+
+    /**
+     * Starts, restarts or stops the file watcher to match the watch-files and watch-debounce settings.
+     * A failure to watch the plugin folder is logged and leaves the watcher stopped.
+     */
+    private void updateFileWatcher() {
+        if (fileWatcher != null && (!settings.isWatchFiles() || fileWatcher.getDebounceMillis() != settings.getWatchDebounce())) {
+            fileWatcher.shutdown();
+            fileWatcher = null;
+        }
+        if (fileWatcher == null && settings.isWatchFiles()) {
+            try {
+                fileWatcher = new FileWatcher(this, settings.getWatchDebounce());
+            } catch (IOException e) {
+                getLogger().severe("Could not watch the plugin folder: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Starts, restarts or stops sharing home changes with the other servers to match the sync and sync-folder settings.
+     * A failure to connect is logged and leaves the sharing stopped.
+     */
+    private void updateHomeSync() {
+        Path folder = "socket".equals(settings.getSync()) ? getDataFolder().toPath().resolve(settings.getSyncFolder()) : null;
+        if (Objects.equals(folder, syncFolder)) {
+            return;
+        }
+        stopHomeSync();
+        if (folder != null) {
+            startHomeSync(new SocketTransport(folder, getLogger()));
+            if (homeSync != null) {
+                this.syncFolder = folder;
+                getLogger().info("Sharing home changes with the other servers through " + folder);
+            }
+        }
+    }
+
+    /**
+     * Starts sharing home changes with the other servers through a transport, replacing the current one.
+     * It is used for the sync setting, and to connect several plugin instances without a server, e.g. in the benchmarks.
+     *
+     * @param transport The transport.
+     */
+    public void startHomeSync(SyncTransport transport) {
+        stopHomeSync();
+        HomeSync newHomeSync = new HomeSync(this, transport);
+        try {
+            newHomeSync.start();
+            this.homeSync = newHomeSync;
+        } catch (IOException e) {
+            transport.close();
+            getLogger().severe("Could not share home changes with the other servers: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops sharing home changes with the other servers, if they are shared.
+     */
+    private void stopHomeSync() {
+        if (homeSync != null) {
+            homeSync.shutdown();
+            homeSync = null;
+        }
+        syncFolder = null;
+    }
+
+    /**
+     * Retrieves the sharing of home changes with the other servers.
+     *
+     * @return The home sync, or null if home changes are not shared.
+     */
+    public HomeSync getHomeSync() { return this.homeSync; }
+
+    /**
+     * Retrieves the settings parsed from the plugin configuration.
+     * The returned object is immutable and replaced as a whole on reload, so callers should read it once per operation.
+     *
+     * @return The settings.
+     */
+    public Settings getSettings() { return this.settings; }
+
+    /**
+     * Parses and validates the plugin configuration into a new settings snapshot.
+     */
+    private void loadSettings() {
+        this.settings = Settings.load(getConfig(), settings, getLogger());
     }
 
     /**
@@ -104,16 +319,52 @@ public class EnhancedHomes extends JavaPlugin {
      */
     public HomeManager getHomeManager() { return this.homeManager; }
 
+    /**
+     * Retrieves the metrics of the plugin.
+     *
+     * @return The plugin metrics.
+     */
+    public PluginMetrics getMetrics() { return this.metrics; }
+
+    /**
+     * Retrieves the home limit resolver.
+     *
+     * @return The home limit resolver.
+     */
+    public HomeLimitResolver getHomeLimitResolver() { return this.homeLimitResolver; }
+
+    /**
+     * Retrieves the warmup manager.
+     *
+     * @return The warmup manager.
+     */
+    public WarmupManager getWarmupManager() { return this.warmupManager; }
+
+    /**
+     * Retrieves the chunk preloader.
+     *
+     * @return The chunk preloader.
+     */
+    public ChunkPreloader getChunkPreloader() { return this.chunkPreloader; }
+
+    /**
+     * Retrieves the index of the names of every known player.
+     *
+     * @return The player name index.
+     */
+    public PlayerNameIndex getPlayerNameIndex() { return this.playerNameIndex; }
+
     /**
      * Loads the language configuration file.
      */
-    public void loadLangConfig() {
+    public synchronized void loadLangConfig() {
         File langFile = new File(getDataFolder(), "lang.yml");
         if (!langFile.exists()) {
             saveResource("lang.yml", false);
         }
 
         this.langConfig = YamlConfiguration.loadConfiguration(langFile);
+        compileMessages();
     }
 
     /**
@@ -125,22 +376,64 @@ public class EnhancedHomes extends JavaPlugin {
      * @return The translated message.
      */
     public String getLangMessage(String path) {
-        String message = this.langConfig.getString(path);
+        return getMessage(path).render();
+    }
+
+    /**
+     * Retrieves a compiled language message, ready to be rendered with its placeholders.
+     *
+     * @param path The path to the message in the language configuration file.
+     * @return The compiled message.
+     */
+    public MessageTemplate getMessage(String path) {
+        MessageTemplate message = messages.get(path);
         if (message == null) {
-            return "Message not found for path: " + path;
+            return MessageTemplate.compile("Message not found for path: " + path);
+        }
+        return message;
+    }
+
+    /**
+     * Retrieves the prefix to put before messages, or an empty string if the prefix is disabled.
+     *
+     * @return The prefix.
+     */
+    public String getPrefix() { return this.prefix; }
+
+    /**
+     * Compiles every message of the language configuration file and the prefix.
+     * Messages missing from the language file, e.g. added by an update, fall back to the bundled lang.yml.
+     * This method is called whenever the configuration or the language file is loaded.
+     */
+    private synchronized void compileMessages() {
+        if (langConfig == null) {
+            return;
+        }
+        InputStream defaultLang = getResource("lang.yml");
+        if (defaultLang != null) {
+            langConfig.setDefaults(YamlConfiguration.loadConfiguration(new InputStreamReader(defaultLang, StandardCharsets.UTF_8)));
+            langConfig.options().copyDefaults(true);
+        }
+        Map<String, MessageTemplate> compiledMessages = new HashMap<>();
+        for (String path : langConfig.getKeys(true)) {
+            if (langConfig.isString(path)) {
+                compiledMessages.put(path, MessageTemplate.compile(langConfig.getString(path)));
+            }
         }
-        String translatedMessage = ChatColor.translateAlternateColorCodes('&', message);
-        return translatedMessage;
+        this.messages = compiledMessages;
+        this.prefix = settings.isShowPrefix() ? getLangMessage("prefix") + ChatColor.RESET + " " : "";
     }
 
     /**
      * Reloads the language configuration file.
+     * It may be called from any thread; the compiled messages are replaced at once.
      */
-    public void reloadLangFile() {
+    public synchronized void reloadLangFile() {
         this.langConfig = YamlConfiguration.loadConfiguration(langFile);
         if (!this.langFile.exists()) {
             saveResource("lang.yml", false);
             this.langConfig = YamlConfiguration.loadConfiguration(langFile);
         }
+        compileMessages();
     }
 }
\ No newline at end of file
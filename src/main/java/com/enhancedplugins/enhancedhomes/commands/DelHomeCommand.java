@@ -1,21 +1,26 @@
 package com.enhancedplugins.enhancedhomes.commands;
 
 import com.enhancedplugins.enhancedhomes.EnhancedHomes;
+import com.enhancedplugins.enhancedhomes.metrics.CommandOutcome;
 import com.enhancedplugins.enhancedhomes.managers.HomeManager;
+import com.enhancedplugins.enhancedhomes.managers.PlayerNameIndex;
 import com.enhancedplugins.enhancedhomes.models.Home;
-import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 
+import java.util.List;
+
 /**
  * The DelHomeCommand class implements the /delhome command.
  * This command allows a player to delete one of his home or a home of another player.
  */
-public class DelHomeCommand implements CommandExecutor {
+public class DelHomeCommand implements CommandExecutor, TabCompleter {
     private final EnhancedHomes plugin;
     private final HomeManager homeManager;
+    private final HomeCompletions completions;
 
     /**
      * Constructor for the DelHomeCommand class.
@@ -25,6 +30,7 @@ public class DelHomeCommand implements CommandExecutor {
     public DelHomeCommand(EnhancedHomes plugin) {
         this.plugin = plugin;
         this.homeManager = plugin.getHomeManager();
+        this.completions = new HomeCompletions(plugin);
     }
 
     /**
@@ -40,84 +46,83 @@ public class DelHomeCommand implements CommandExecutor {
      */
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
-        String pluginPrefix;
-        if (plugin.getPluginConfig().getBoolean("show-prefix")) {
-            pluginPrefix = plugin.getLangMessage("prefix") + ChatColor.RESET + " ";
-        } else {
-            pluginPrefix = "";
-        }
+        String pluginPrefix = plugin.getPrefix();
 
         // Check if the sender is a player
         if (!(sender instanceof Player)) {
-            String playerOnlyMessage = plugin.getLangMessage("commands.player-only");
-            sender.sendMessage(pluginPrefix + playerOnlyMessage);
+            sender.sendMessage(plugin.getMessage("commands.player-only").renderPrefixed(pluginPrefix));
+            plugin.getMetrics().recordCommand("delhome", CommandOutcome.INVALID);
             return true;
         }
 
         // Determine the target player
-        Player targetPlayer;
+        PlayerNameIndex.KnownPlayer targetPlayer;
         if (args.length == 0 || args.length > 2) {
             // Check if not enough arguments were provided
-            String usageMessage = plugin.getLangMessage("commands.delhome.usage");
-            sender.sendMessage(pluginPrefix + usageMessage);
+            sender.sendMessage(plugin.getMessage("commands.delhome.usage").renderPrefixed(pluginPrefix));
+            plugin.getMetrics().recordCommand("delhome", CommandOutcome.INVALID);
+            return true;
         }
 
         if (args.length == 2) {
             // Check if the sender has the necessary permissions
             if (!sender.getName().equalsIgnoreCase(args[0]) && !sender.hasPermission("enhancedhomes.delhome.other")) {
-                String noPermissionMessage = plugin.getLangMessage("commands.delhome.other-error");
-                sender.sendMessage(pluginPrefix + noPermissionMessage);
+                sender.sendMessage(plugin.getMessage("commands.delhome.other-error").renderPrefixed(pluginPrefix));
+                plugin.getMetrics().recordCommand("delhome", CommandOutcome.DENIED);
                 return true;
             }
             // Get the target player
-            targetPlayer = plugin.getServer().getPlayer(args[0]);
+            targetPlayer = plugin.getPlayerNameIndex().find(args[0]);
             if (targetPlayer == null) {
                 // Check if the target player exists
-                String playerNotFoundMessage = plugin.getLangMessage("commands.player-not-found");
-                sender.sendMessage(pluginPrefix + playerNotFoundMessage);
+                sender.sendMessage(plugin.getMessage("commands.player-not-found").renderPrefixed(pluginPrefix, "player", args[0]));
+                plugin.getMetrics().recordCommand("delhome", CommandOutcome.NOT_FOUND);
                 return true;
             }
-            // Get the home to be deleted
-            Home home = homeManager.getHome(targetPlayer, args[1]);
-            if (home == null) {
-                // Check if the home exists
-                String homeNotFoundMessage = plugin.getLangMessage("commands.delhome.home-not-found");
-                homeNotFoundMessage = homeNotFoundMessage.replace("%home%", args[1]);
-                homeNotFoundMessage = homeNotFoundMessage.replace("%player%", targetPlayer.getName());
-                sender.sendMessage(pluginPrefix + homeNotFoundMessage);
-                return true;
-            }
-            // Delete the home
-            homeManager.removeHome(targetPlayer, home.getName());
-            // Send a success message
-            String homeDeletedMessage = plugin.getLangMessage("commands.delhome.home-deleted");
-            homeDeletedMessage = homeDeletedMessage.replace("%home%", home.getName());
-            homeDeletedMessage = homeDeletedMessage.replace("%player%", targetPlayer.getName());
-            sender.sendMessage(pluginPrefix + homeDeletedMessage);
         }
         else{
             // If only one argument is provided, the sender is the target player
-            targetPlayer = (Player) sender;
-            // Get the home to be deleted
-            Home home = homeManager.getHome(targetPlayer, args[0]);
+            targetPlayer = PlayerNameIndex.KnownPlayer.of((Player) sender);
+        }
+
+        // Get the home to be deleted; the homes of an offline target are read in the background
+        String homeName = args[args.length - 1];
+        MainThreadReply.whenComplete(plugin, homeManager.getHomeAsync(targetPlayer.getUniqueId(), homeName), (home, error) -> {
+            if (error != null) {
+                plugin.getLogger().warning("Could not read the homes of " + targetPlayer.getName() + ": " + error.getMessage());
+                sender.sendMessage(plugin.getMessage("commands.homes-unreadable").renderPrefixed(pluginPrefix, "player", targetPlayer.getName()));
+                plugin.getMetrics().recordCommand("delhome", CommandOutcome.FAILED);
+                return;
+            }
             if (home == null) {
                 // Check if the home exists
-                String homeNotFoundMessage = plugin.getLangMessage("commands.delhome.home-not-found");
-                homeNotFoundMessage = homeNotFoundMessage.replace("%home%", args[0]);
-                homeNotFoundMessage = homeNotFoundMessage.replace("%player%", targetPlayer.getName());
-                sender.sendMessage(pluginPrefix + homeNotFoundMessage);
-                return true;
+                sender.sendMessage(plugin.getMessage("commands.delhome.home-not-found").renderPrefixed(pluginPrefix,
+                        "home", homeName, "player", targetPlayer.getName()));
+                plugin.getMetrics().recordCommand("delhome", CommandOutcome.NOT_FOUND);
+                return;
             }
-            // Delete the home
-            homeManager.removeHome(targetPlayer, home.getName());
+            // Delete the home, whose player is now in memory
+            homeManager.removeHome(targetPlayer.getUniqueId(), home.getName());
 
             // Send a success message
-            String homeDeletedMessage = plugin.getLangMessage("commands.delhome.home-deleted");
-            homeDeletedMessage = homeDeletedMessage.replace("%home%", home.getName());
-            homeDeletedMessage = homeDeletedMessage.replace("%player%", targetPlayer.getName());
-            sender.sendMessage(pluginPrefix + homeDeletedMessage);
-        }
-
+            sender.sendMessage(plugin.getMessage("commands.delhome.home-deleted").renderPrefixed(pluginPrefix,
+                    "home", home.getName(), "player", targetPlayer.getName()));
+            plugin.getMetrics().recordCommand("delhome", CommandOutcome.SUCCESS);
+        });
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * This method is called when the player presses tab while typing the command.
+     *
+     * @param sender The command sender.
+     * @param command The command.
+     * @param alias The alias used.
+     * @param args The command arguments, the last one being completed.
+     * @return The completions.
+     */
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        return completions.completeHomeOrPlayer(sender, args, "enhancedhomes.delhome.other");
+    }
+}
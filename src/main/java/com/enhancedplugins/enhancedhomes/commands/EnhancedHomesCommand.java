@@ -0,0 +1,410 @@
+package com.enhancedplugins.enhancedhomes.commands;
+
+import com.enhancedplugins.enhancedhomes.EnhancedHomes;
+import com.enhancedplugins.enhancedhomes.managers.BulkHomeJob;
+import com.enhancedplugins.enhancedhomes.managers.HomeSpatialIndex;
+import com.enhancedplugins.enhancedhomes.managers.PlayerNameIndex;
+import com.enhancedplugins.enhancedhomes.metrics.LatencyHistogram;
+import com.enhancedplugins.enhancedhomes.metrics.PluginMetrics;
+import com.enhancedplugins.enhancedhomes.models.Home;
+import com.enhancedplugins.enhancedhomes.transfer.HomeFormat;
+import com.enhancedplugins.enhancedhomes.transfer.HomeManagerSink;
+import com.enhancedplugins.enhancedhomes.transfer.HomeSink;
+import com.enhancedplugins.enhancedhomes.transfer.HomeSource;
+import com.enhancedplugins.enhancedhomes.transfer.HomeTransfer;
+import com.enhancedplugins.enhancedhomes.utils.MessageTemplate;
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * The EnhancedHomesCommand class implements the /enhancedhomes administration command.
+ * Its first argument selects a subcommand:
+ * - region &lt;world&gt; &lt;x1&gt; &lt;z1&gt; &lt;x2&gt; &lt;z2&gt;: lists the homes of every player inside a region.
+ * - stats: shows the metrics collected since the plugin was enabled.
+ * - export &lt;format&gt; &lt;file&gt;: streams every stored home to a file of the plugin folder.
+ * - import &lt;format&gt; &lt;file&gt;: streams the homes of a file of the plugin folder into the storage, replacing the homes of its players.
+ * - delworld &lt;world&gt;: deletes every home of a world.
+ * - moveworld &lt;from&gt; &lt;to&gt;: moves every home of a world to another world name, at the same coordinates.
+ * - delregion &lt;world&gt; &lt;x1&gt; &lt;z1&gt; &lt;x2&gt; &lt;z2&gt;: deletes every home inside a region.
+ * - job [cancel]: shows the progress of the running bulk job, or cancels it.
+ * Exports and imports run one at a time on their own thread and report their progress to the sender.
+ * Bulk jobs also run one at a time, a few players per tick (see BulkHomeJob).
+ */
+public class EnhancedHomesCommand implements CommandExecutor {
+    private static final int MAX_LISTED_HOMES = 20;
+    private static final long TRANSFER_PROGRESS_INTERVAL_MILLIS = 5000;
+    private static final String EXPORTS_FOLDER = "exports";
+    private final EnhancedHomes plugin;
+    private final AtomicBoolean transferRunning = new AtomicBoolean();
+    private BulkHomeJob bulkJob;
+    private CommandSender bulkJobSender;
+
+    /**
+     * Constructor for the EnhancedHomesCommand class.
+     *
+     * @param plugin The EnhancedHomes plugin.
+     */
+    public EnhancedHomesCommand(EnhancedHomes plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * This method is called when the /enhancedhomes command is executed.
+     *
+     * @param sender The sender of the command.
+     * @param command The command.
+     * @param label The alias of the command.
+     * @param args The arguments of the command.
+     * @return true if the command was executed successfully, false otherwise.
+     */
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        String pluginPrefix = plugin.getPrefix();
+
+        if (!sender.hasPermission("enhancedhomes.admin")) {
+            sender.sendMessage(plugin.getMessage("commands.no-permission").renderPrefixed(pluginPrefix));
+            return true;
+        }
+
+        if (args.length == 6 && args[0].equalsIgnoreCase("region")) {
+            return listHomesInRegion(sender, args, pluginPrefix);
+        }
+        if (args.length == 1 && args[0].equalsIgnoreCase("stats")) {
+            return showStats(sender, pluginPrefix);
+        }
+        if ((args.length == 3 && (args[0].equalsIgnoreCase("export") || args[0].equalsIgnoreCase("import")))
+                || (args.length == 4 && args[0].equalsIgnoreCase("export") && args[3].equalsIgnoreCase("overwrite"))) {
+            return transferHomes(sender, args, pluginPrefix);
+        }
+        if ((args.length == 2 && args[0].equalsIgnoreCase("delworld")) || (args.length == 3 && args[0].equalsIgnoreCase("moveworld"))
+                || (args.length == 6 && args[0].equalsIgnoreCase("delregion"))) {
+            return startBulkJob(sender, args, pluginPrefix);
+        }
+        if (args.length >= 1 && args.length <= 2 && args[0].equalsIgnoreCase("job")
+                && (args.length == 1 || args[1].equalsIgnoreCase("cancel"))) {
+            return showBulkJob(sender, args.length == 2, pluginPrefix);
+        }
+
+        sender.sendMessage(plugin.getMessage("commands.enhancedhomes.usage").renderPrefixed(pluginPrefix));
+        return true;
+    }
+
+    /**
+     * Lists the homes inside a region of a world, using the spatial index.
+     *
+     * @param sender The sender of the command.
+     * @param args The command arguments: "region", the world name and the X and Z coordinates of two opposite corners.
+     * @param pluginPrefix The prefix to put before messages.
+     * @return true, as the usage is handled by this method.
+     */
+    private boolean listHomesInRegion(CommandSender sender, String[] args, String pluginPrefix) {
+        double[] corners = parseCorners(sender, args, pluginPrefix);
+        if (corners == null) {
+            return true;
+        }
+        double minX = Math.min(corners[0], corners[2]);
+        double minZ = Math.min(corners[1], corners[3]);
+        double maxX = Math.max(corners[0], corners[2]);
+        double maxZ = Math.max(corners[1], corners[3]);
+
+        if (!plugin.getHomeManager().isSpatialIndexLoaded()) {
+            sender.sendMessage(plugin.getMessage("commands.homes.index-loading").renderPrefixed(pluginPrefix));
+        } else if (!plugin.getHomeManager().isSpatialIndexComplete()) {
+            sender.sendMessage(plugin.getMessage("commands.homes.index-online-only").renderPrefixed(pluginPrefix));
+        }
+        long start = System.nanoTime();
+        List<HomeSpatialIndex.IndexedHome> homes = plugin.getHomeManager().getSpatialIndex().findInRegion(args[1], minX, minZ, maxX, maxZ);
+        double elapsedMillis = (System.nanoTime() - start) / 1_000_000.0;
+
+        sender.sendMessage(plugin.getMessage("commands.enhancedhomes.region-title").renderPrefixed(pluginPrefix,
+                "world", args[1], "x1", formatCoordinate(minX), "z1", formatCoordinate(minZ),
+                "x2", formatCoordinate(maxX), "z2", formatCoordinate(maxZ),
+                "count", String.valueOf(homes.size()), "time", String.format("%.3f", elapsedMillis)));
+        MessageTemplate regionItem = plugin.getMessage("commands.enhancedhomes.region-item");
+        PlayerNameIndex playerNameIndex = plugin.getPlayerNameIndex();
+        for (HomeSpatialIndex.IndexedHome indexedHome : homes.subList(0, Math.min(homes.size(), MAX_LISTED_HOMES))) {
+            Home home = indexedHome.getHome();
+            sender.sendMessage(regionItem.render("home", home.getName(), "player", playerNameIndex.getName(indexedHome.getOwnerId()),
+                    "x", formatCoordinate(home.getX()), "y", formatCoordinate(home.getY()), "z", formatCoordinate(home.getZ())));
+        }
+        if (homes.size() > MAX_LISTED_HOMES) {
+            sender.sendMessage(plugin.getMessage("commands.homes.more").render("count", String.valueOf(homes.size() - MAX_LISTED_HOMES)));
+        }
+        return true;
+    }
+
+    /**
+     * Parses the X and Z coordinates of the two opposite corners of a region.
+     *
+     * @param sender The sender of the command, told about an invalid number.
+     * @param args The command arguments: the subcommand, the world name and the four coordinates.
+     * @param pluginPrefix The prefix to put before messages.
+     * @return The coordinates x1, z1, x2, z2, or null if one is not a number.
+     */
+    private double[] parseCorners(CommandSender sender, String[] args, String pluginPrefix) {
+        double[] corners = new double[4];
+        for (int i = 0; i < corners.length; i++) {
+            try {
+                corners[i] = Double.parseDouble(args[i + 2]);
+            } catch (NumberFormatException e) {
+                sender.sendMessage(plugin.getMessage("commands.enhancedhomes.invalid-number").renderPrefixed(pluginPrefix, "value", args[i + 2]));
+                return null;
+            }
+        }
+        return corners;
+    }
+
+    /**
+     * Starts a bulk job deleting the homes of a world or region, or moving the homes of a world to another world name.
+     * The players to edit are found in the spatial index, so the job needs every home indexed and waits for the index to be filled.
+     *
+     * @param sender The sender of the command, told about the progress of the job.
+     * @param args The command arguments: "delworld" and the world, "moveworld" and both world names,
+     *             or "delregion", the world and the X and Z coordinates of two opposite corners.
+     * @param pluginPrefix The prefix to put before messages.
+     * @return true, as the usage is handled by this method.
+     */
+    private boolean startBulkJob(CommandSender sender, String[] args, String pluginPrefix) {
+        if (bulkJob != null && !bulkJob.isDone()) {
+            sender.sendMessage(plugin.getMessage("commands.enhancedhomes.job-running").renderPrefixed(pluginPrefix,
+                    "job", bulkJob.getDescription()));
+            return true;
+        }
+        if (!plugin.getHomeManager().isSpatialIndexComplete()) {
+            // Players missing from the index would be skipped without a word
+            sender.sendMessage(plugin.getMessage("commands.enhancedhomes.job-index-online-only").renderPrefixed(pluginPrefix));
+            return true;
+        }
+        if (!plugin.getHomeManager().isSpatialIndexLoaded()) {
+            sender.sendMessage(plugin.getMessage("commands.enhancedhomes.job-index-loading").renderPrefixed(pluginPrefix));
+            return true;
+        }
+        String description = args[0].toLowerCase(Locale.ROOT) + " " + String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+        Consumer<BulkHomeJob> progressListener = job -> {
+            reportBulkJob(sender, job, pluginPrefix);
+            if (job.isDone()) {
+                plugin.getLogger().info("Bulk job " + job.getDescription() + (job.isCancelled() ? " cancelled" : " done") + ": "
+                        + job.getChangedHomes() + " homes of " + job.getEditedPlayers() + " players changed, "
+                        + job.getProcessedPlayers() + " of " + job.getPlayers() + " players checked, "
+                        + job.getFailedPlayers() + " failed, in " + job.getElapsedMillis() + " ms");
+            }
+        };
+        BulkHomeJob job;
+        if (args[0].equalsIgnoreCase("delworld")) {
+            job = BulkHomeJob.deleteWorld(plugin, description, args[1], progressListener);
+        } else if (args[0].equalsIgnoreCase("moveworld")) {
+            if (args[1].equals(args[2])) {
+                sender.sendMessage(plugin.getMessage("commands.enhancedhomes.same-world").renderPrefixed(pluginPrefix, "world", args[1]));
+                return true;
+            }
+            job = BulkHomeJob.moveWorld(plugin, description, args[1], args[2], progressListener);
+        } else {
+            double[] corners = parseCorners(sender, args, pluginPrefix);
+            if (corners == null) {
+                return true;
+            }
+            job = BulkHomeJob.deleteRegion(plugin, description, args[1], Math.min(corners[0], corners[2]), Math.min(corners[1], corners[3]),
+                    Math.max(corners[0], corners[2]), Math.max(corners[1], corners[3]), progressListener);
+        }
+        bulkJob = job;
+        bulkJobSender = sender;
+        sender.sendMessage(plugin.getMessage("commands.enhancedhomes.job-started").renderPrefixed(pluginPrefix,
+                "job", description, "players", String.valueOf(job.getPlayers())));
+        job.start();
+        return true;
+    }
+
+    /**
+     * Shows the progress of the running bulk job, or cancels it.
+     *
+     * @param sender The sender of the command.
+     * @param cancel Whether to cancel the job.
+     * @param pluginPrefix The prefix to put before messages.
+     * @return true, as the usage is handled by this method.
+     */
+    private boolean showBulkJob(CommandSender sender, boolean cancel, String pluginPrefix) {
+        if (bulkJob == null || bulkJob.isDone()) {
+            sender.sendMessage(plugin.getMessage("commands.enhancedhomes.job-none").renderPrefixed(pluginPrefix));
+        } else if (cancel) {
+            bulkJob.cancel();
+            if (sender != bulkJobSender) {
+                reportBulkJob(sender, bulkJob, pluginPrefix);
+            }
+        } else {
+            reportBulkJob(sender, bulkJob, pluginPrefix);
+        }
+        return true;
+    }
+
+    /**
+     * Tells a command sender how far a bulk job got.
+     *
+     * @param sender The sender of the command.
+     * @param job The job.
+     * @param pluginPrefix The prefix to put before messages.
+     */
+    private void reportBulkJob(CommandSender sender, BulkHomeJob job, String pluginPrefix) {
+        String path = !job.isDone() ? "commands.enhancedhomes.job-progress"
+                : job.isCancelled() ? "commands.enhancedhomes.job-cancelled" : "commands.enhancedhomes.job-done";
+        sender.sendMessage(plugin.getMessage(path).renderPrefixed(pluginPrefix, "job", job.getDescription(),
+                "checked", String.valueOf(job.getProcessedPlayers()), "players", String.valueOf(job.getPlayers()),
+                "edited", String.valueOf(job.getEditedPlayers()), "homes", String.valueOf(job.getChangedHomes()),
+                "failed", String.valueOf(job.getFailedPlayers()), "time", String.format("%.1f", job.getElapsedMillis() / 1000.0)));
+    }
+
+    /**
+     * Shows the metrics collected since the plugin was enabled.
+     *
+     * @param sender The sender of the command.
+     * @param pluginPrefix The prefix to put before messages.
+     * @return true, as the usage is handled by this method.
+     */
+    private boolean showStats(CommandSender sender, String pluginPrefix) {
+        PluginMetrics metrics = plugin.getMetrics();
+        sender.sendMessage(plugin.getMessage("commands.enhancedhomes.stats-title").renderPrefixed(pluginPrefix));
+        sendLatency(sender, "commands.enhancedhomes.stats-player-loads", metrics.getPlayerLoadLatency());
+        sendLatency(sender, "commands.enhancedhomes.stats-full-loads", metrics.getFullLoadLatency());
+        sendLatency(sender, "commands.enhancedhomes.stats-saves", metrics.getSaveLatency());
+        sendLatency(sender, "commands.enhancedhomes.stats-teleports-loaded", metrics.getLoadedChunkTeleportLatency());
+        sendLatency(sender, "commands.enhancedhomes.stats-teleports-unloaded", metrics.getUnloadedChunkTeleportLatency());
+        sender.sendMessage(plugin.getMessage("commands.enhancedhomes.stats-storage").render(
+                "read", formatBytes(metrics.getBytesRead()), "written", formatBytes(metrics.getBytesWritten()),
+                "failures", String.valueOf(metrics.getSaveFailures()), "retrying", String.valueOf(metrics.getPlayersAwaitingSaveRetry())));
+        sender.sendMessage(plugin.getMessage("commands.enhancedhomes.stats-memory").render(
+                "homes", String.valueOf(metrics.getHomesInMemory()), "players", String.valueOf(metrics.getPlayersInMemory()),
+                "indexed", String.valueOf(metrics.getIndexedHomes())));
+        sender.sendMessage(plugin.getMessage("commands.enhancedhomes.stats-caches").render(
+                "homes", formatRate(metrics.getHomeCacheHitRate()), "limits", formatRate(metrics.getLimitCacheHitRate())));
+        sender.sendMessage(plugin.getMessage("commands.enhancedhomes.stats-warmups").render(
+                "count", String.valueOf(metrics.getPendingWarmups())));
+
+        MessageTemplate commandLine = plugin.getMessage("commands.enhancedhomes.stats-command");
+        metrics.getOutcomesByCommand().forEach((commandName, outcomes) -> {
+            StringJoiner counts = new StringJoiner(", ");
+            outcomes.forEach((outcome, count) -> counts.add(outcome.name().toLowerCase(Locale.ROOT).replace('_', ' ') + " " + count));
+            sender.sendMessage(commandLine.render("command", commandName, "outcomes", counts.toString()));
+        });
+        return true;
+    }
+
+    /**
+     * Exports every stored home to a file, or imports the homes of a file, on a dedicated thread.
+     * The file must be inside the exports folder of the plugin folder, so an export cannot replace the configuration
+     * or the stored homes; an existing file is only replaced by an export with the overwrite flag.
+     *
+     * @param sender The sender of the command.
+     * @param args The command arguments: "export" or "import", the format, the file, relative to the exports folder,
+     *             and "overwrite" to let an export replace an existing file.
+     * @param pluginPrefix The prefix to put before messages.
+     * @return true, as the usage is handled by this method.
+     */
+    private boolean transferHomes(CommandSender sender, String[] args, String pluginPrefix) {
+        boolean export = args[0].equalsIgnoreCase("export");
+        HomeFormat format = HomeFormat.fromName(args[1]);
+        if (format == null) {
+            sender.sendMessage(plugin.getMessage("commands.enhancedhomes.unknown-format").renderPrefixed(pluginPrefix,
+                    "format", args[1], "formats", HomeFormat.names()));
+            return true;
+        }
+        Path dataFolder = plugin.getDataFolder().toPath().toAbsolutePath().normalize();
+        Path exportsFolder = dataFolder.resolve(EXPORTS_FOLDER);
+        Path file = exportsFolder.resolve(args[2]).normalize();
+        if (!file.startsWith(exportsFolder) || file.equals(exportsFolder)) {
+            sender.sendMessage(plugin.getMessage("commands.enhancedhomes.invalid-file").renderPrefixed(pluginPrefix, "file", args[2]));
+            return true;
+        }
+        if (!export && !Files.exists(file)) {
+            sender.sendMessage(plugin.getMessage("commands.enhancedhomes.file-not-found").renderPrefixed(pluginPrefix, "file", args[2]));
+            return true;
+        }
+        if (export && args.length < 4 && Files.exists(file)) {
+            sender.sendMessage(plugin.getMessage("commands.enhancedhomes.file-exists").renderPrefixed(pluginPrefix, "file", args[2]));
+            return true;
+        }
+        if (!transferRunning.compareAndSet(false, true)) {
+            sender.sendMessage(plugin.getMessage("commands.enhancedhomes.transfer-running").renderPrefixed(pluginPrefix));
+            return true;
+        }
+
+        String fileName = dataFolder.relativize(file).toString();
+        sender.sendMessage(plugin.getMessage(export ? "commands.enhancedhomes.export-started" : "commands.enhancedhomes.import-started")
+                .renderPrefixed(pluginPrefix, "file", fileName));
+        Thread transferThread = new Thread(() -> {
+            try (HomeSource source = export ? plugin.getHomeManager().openExportSource() : format.openSource(file);
+                 HomeSink sink = export ? format.openSink(file) : new HomeManagerSink(plugin.getHomeManager())) {
+                HomeTransfer.Progress result = HomeTransfer.copy(source, sink, TRANSFER_PROGRESS_INTERVAL_MILLIS, progress -> {
+                    if (!progress.done()) {
+                        sendLater(sender, plugin.getMessage("commands.enhancedhomes.transfer-progress").render(
+                                "players", String.valueOf(progress.players()), "homes", String.valueOf(progress.homes()),
+                                "rate", String.valueOf(progress.playersPerSecond())));
+                    }
+                });
+                plugin.getLogger().info((export ? "Exported " : "Imported ") + result.homes() + " homes of " + result.players()
+                        + " players " + (export ? "to " : "from ") + file + " in " + result.elapsedMillis() + " ms");
+                sendLater(sender, plugin.getMessage(export ? "commands.enhancedhomes.export-done" : "commands.enhancedhomes.import-done")
+                        .renderPrefixed(pluginPrefix, "file", fileName, "players", String.valueOf(result.players()),
+                                "homes", String.valueOf(result.homes()), "time", String.format("%.1f", result.elapsedMillis() / 1000.0)));
+            } catch (IOException | RuntimeException e) {
+                plugin.getLogger().severe("Could not " + (export ? "export homes to " : "import homes from ") + file + ": " + e.getMessage());
+                sendLater(sender, plugin.getMessage("commands.enhancedhomes.transfer-failed").renderPrefixed(pluginPrefix,
+                        "error", String.valueOf(e.getMessage())));
+            } finally {
+                transferRunning.set(false);
+            }
+        }, "EnhancedHomes Transfer");
+        transferThread.setDaemon(true);
+        transferThread.start();
+        return true;
+    }
+
+    /**
+     * Sends a message to a command sender on the main thread, unless the plugin was disabled in the meantime.
+     *
+     * @param sender The sender of the command.
+     * @param message The message.
+     */
+    private void sendLater(CommandSender sender, String message) {
+        if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, () -> sender.sendMessage(message));
+        }
+    }
+
+    private void sendLatency(CommandSender sender, String path, LatencyHistogram.Snapshot latency) {
+        sender.sendMessage(plugin.getMessage(path).render("count", String.valueOf(latency.getCount()),
+                "mean", formatMillis(latency.getMeanMillis()), "p50", formatMillis(latency.getP50Millis()),
+                "p99", formatMillis(latency.getP99Millis()), "max", formatMillis(latency.getMaxMillis())));
+    }
+
+    private static String formatMillis(double millis) {
+        return String.format("%.2f", millis);
+    }
+
+    private static String formatRate(double rate) {
+        return String.format("%.1f%%", rate * 100);
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        } else if (bytes < 1024 * 1024) {
+            return String.format("%.1f KiB", bytes / 1024.0);
+        }
+        return String.format("%.1f MiB", bytes / (1024.0 * 1024.0));
+    }
+
+    private static String formatCoordinate(double coordinate) {
+        return String.valueOf((long) Math.floor(coordinate));
+    }
+}
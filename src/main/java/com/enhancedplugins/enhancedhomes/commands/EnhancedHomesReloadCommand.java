@@ -1,7 +1,6 @@
 package com.enhancedplugins.enhancedhomes.commands;
 
 import com.enhancedplugins.enhancedhomes.EnhancedHomes;
-import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -15,25 +14,20 @@ public class EnhancedHomesReloadCommand implements CommandExecutor {
 
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
-        String pluginPrefix;
-        if (plugin.getPluginConfig().getBoolean("show-prefix")) {
-            pluginPrefix = plugin.getLangMessage("prefix") + ChatColor.RESET + " ";
-        } else {
-            pluginPrefix = "";
-        }
+        String pluginPrefix = plugin.getPrefix();
 
         if (!sender.hasPermission("enhancedhomes.enhancedhomesreload")) {
-            String noPermissionMessage = plugin.getLangMessage("commands.no-permission");
-            sender.sendMessage(pluginPrefix + noPermissionMessage);
+            sender.sendMessage(plugin.getMessage("commands.no-permission").renderPrefixed(pluginPrefix));
             return true;
         }
 
         plugin.reloadPluginConfig();
         plugin.reloadLangFile();
-        plugin.getHomeManager().reloadHomes();
-
-        String reloadMessage = plugin.getLangMessage("commands.reload");
-        sender.sendMessage(pluginPrefix + reloadMessage);
+        // Homes are reloaded in the background, the sender is told once they are in use
+        plugin.getHomeManager().reloadHomes().whenComplete((ignored, error) -> {
+            String path = error == null ? "commands.reload" : "commands.reload-failed";
+            sender.sendMessage(plugin.getMessage(path).renderPrefixed(plugin.getPrefix()));
+        });
 
         return true;
     }
@@ -1,29 +1,32 @@
 package com.enhancedplugins.enhancedhomes.commands;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import com.enhancedplugins.enhancedhomes.models.Home;
+import com.enhancedplugins.enhancedhomes.models.Settings;
 import com.enhancedplugins.enhancedhomes.EnhancedHomes;
+import com.enhancedplugins.enhancedhomes.metrics.CommandOutcome;
+import com.enhancedplugins.enhancedhomes.managers.ChunkPreloader;
 import com.enhancedplugins.enhancedhomes.managers.HomeManager;
+import com.enhancedplugins.enhancedhomes.managers.PlayerNameIndex;
+import com.enhancedplugins.enhancedhomes.managers.WarmupManager;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
-import org.bukkit.Bukkit;
-import org.bukkit.ChatColor;
 import org.bukkit.Location;
-import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.World;
+
+import java.util.List;
 
 /**
  * This class handles the /home command in the EnhancedHomes plugin.
  * It implements the CommandExecutor interface, which means it provides
  * the onCommand method that is called when the /home command is executed.
  */
-public class HomeCommand implements CommandExecutor {
+public class HomeCommand implements CommandExecutor, TabCompleter {
     private final EnhancedHomes plugin;
     private final HomeManager homeManager;
-    private final Map<Player, BukkitTask> teleportTasks = new HashMap<>();
+    private final HomeCompletions completions;
 
     /**
      * Constructor for the HomeCommand class.
@@ -33,6 +36,7 @@ public class HomeCommand implements CommandExecutor {
     public HomeCommand(EnhancedHomes plugin) {
         this.plugin = plugin;
         this.homeManager = plugin.getHomeManager();
+        this.completions = new HomeCompletions(plugin);
     }
 
     /**
@@ -47,130 +51,161 @@ public class HomeCommand implements CommandExecutor {
      */
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
-        String pluginPrefix;
-        if (plugin.getPluginConfig().getBoolean("show-prefix")) {
-            pluginPrefix = plugin.getLangMessage("prefix") + ChatColor.RESET + " ";
-        } else {
-            pluginPrefix = "";
-        }
+        String pluginPrefix = plugin.getPrefix();
 
         // Check if the sender is a player
         if (!(sender instanceof Player senderPlayer)) {
-            String playerOnlyMessage = plugin.getLangMessage("commands.player-only");
-            sender.sendMessage(pluginPrefix + playerOnlyMessage);
+            sender.sendMessage(plugin.getMessage("commands.player-only").renderPrefixed(pluginPrefix));
+            plugin.getMetrics().recordCommand("home", CommandOutcome.INVALID);
             return true;
         }
 
         // Check if not enough arguments are provided
         if (args.length == 0 || args.length > 2) {
-            String usageMessage = plugin.getLangMessage("commands.home.usage");
-            sender.sendMessage(pluginPrefix + usageMessage);
+            sender.sendMessage(plugin.getMessage("commands.home.usage").renderPrefixed(pluginPrefix));
+            plugin.getMetrics().recordCommand("home", CommandOutcome.INVALID);
             return true;
         }
 
-        Player targetPlayer;
+        // The owner of the home, who may be offline; the sender is always the one teleported
+        PlayerNameIndex.KnownPlayer targetPlayer;
 
         // Check if the command is being used to teleport to another player's home
         if (args.length == 2) {
             if (!sender.hasPermission("enhancedhomes.home.other") && !sender.getName().equalsIgnoreCase(args[0])) {
-                String noPermissionMessage = plugin.getLangMessage("commands.home.other-error");
-                sender.sendMessage(pluginPrefix + noPermissionMessage);
+                sender.sendMessage(plugin.getMessage("commands.home.other-error").renderPrefixed(pluginPrefix));
+                plugin.getMetrics().recordCommand("home", CommandOutcome.DENIED);
                 return true;
             }
 
-            targetPlayer = Bukkit.getPlayer(args[0]);
+            targetPlayer = plugin.getPlayerNameIndex().find(args[0]);
             if (targetPlayer == null) {
-                String playerNotFoundMessage = plugin.getLangMessage("commands.player-not-found");
-                playerNotFoundMessage = playerNotFoundMessage.replace("%player%", args[0]);
-                sender.sendMessage(pluginPrefix + playerNotFoundMessage);
+                sender.sendMessage(plugin.getMessage("commands.player-not-found").renderPrefixed(pluginPrefix, "player", args[0]));
+                plugin.getMetrics().recordCommand("home", CommandOutcome.NOT_FOUND);
                 return true;
             }
         } else {
-            targetPlayer = senderPlayer;
+            targetPlayer = PlayerNameIndex.KnownPlayer.of(senderPlayer);
         }
 
         // Check if the player is already teleporting to a home
-        if (teleportTasks.containsKey(targetPlayer)) {
-            String alreadyTeleportingMessage = plugin.getLangMessage("commands.home.already-teleporting");
-            sender.sendMessage(pluginPrefix + alreadyTeleportingMessage);
+        WarmupManager warmupManager = plugin.getWarmupManager();
+        if (warmupManager.isWarmingUp(senderPlayer.getUniqueId())) {
+            sender.sendMessage(plugin.getMessage("commands.home.already-teleporting").renderPrefixed(pluginPrefix));
+            plugin.getMetrics().recordCommand("home", CommandOutcome.INVALID);
             return true;
         }
 
-        // Get the home from the HomeManager
-        Home home = homeManager.getHome(targetPlayer, args[args.length - 1]);
-        if (home == null) {
-            String noHomeFoundMessage = plugin.getLangMessage("commands.home.home-not-found");
-            noHomeFoundMessage = noHomeFoundMessage.replace("%home%", args[args.length - 1]);
-            noHomeFoundMessage = noHomeFoundMessage.replace("%player%", targetPlayer.getName());
-            sender.sendMessage(pluginPrefix + noHomeFoundMessage);
-            return true;
+        // Get the home from the HomeManager; the homes of an offline owner are read in the background
+        String homeName = args[args.length - 1];
+        MainThreadReply.whenComplete(plugin, homeManager.getHomeAsync(targetPlayer.getUniqueId(), homeName), (home, error) -> {
+            if (error != null) {
+                plugin.getLogger().warning("Could not read the homes of " + targetPlayer.getName() + ": " + error.getMessage());
+                sender.sendMessage(plugin.getMessage("commands.homes-unreadable").renderPrefixed(pluginPrefix, "player", targetPlayer.getName()));
+                plugin.getMetrics().recordCommand("home", CommandOutcome.FAILED);
+            } else if (home == null) {
+                sender.sendMessage(plugin.getMessage("commands.home.home-not-found").renderPrefixed(pluginPrefix,
+                        "home", homeName, "player", targetPlayer.getName()));
+                plugin.getMetrics().recordCommand("home", CommandOutcome.NOT_FOUND);
+            } else if (senderPlayer.isOnline()) {
+                teleportHome(senderPlayer, targetPlayer, home, pluginPrefix);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Teleports the sender to a home, after the warmup if one is required.
+     *
+     * @param senderPlayer The player who ran the command, who is teleported.
+     * @param targetPlayer The owner of the home.
+     * @param home The home.
+     * @param pluginPrefix The prefix to put before messages.
+     */
+    private void teleportHome(Player senderPlayer, PlayerNameIndex.KnownPlayer targetPlayer, Home home, String pluginPrefix) {
+        Settings settings = plugin.getSettings();
+
+        // Check again, a teleport may have started while the homes were read
+        WarmupManager warmupManager = plugin.getWarmupManager();
+        if (warmupManager.isWarmingUp(senderPlayer.getUniqueId())) {
+            senderPlayer.sendMessage(plugin.getMessage("commands.home.already-teleporting").renderPrefixed(pluginPrefix));
+            plugin.getMetrics().recordCommand("home", CommandOutcome.INVALID);
+            return;
         }
 
         // Check if the player is trying to teleport to a home in another world
-        if (!targetPlayer.getWorld().getName().equals(home.getWorldName())) {
-            if (!plugin.getConfig().getBoolean("cross-world-tp") && !sender.hasPermission("enhancedhomes.crossworldtp.bypass")) {
-                String crossWorldErrorMessage = plugin.getLangMessage("commands.home.cross-world-error");
-                sender.sendMessage(pluginPrefix + crossWorldErrorMessage);
-                return true;
+        World homeWorld = home.getWorld();
+        if (senderPlayer.getWorld() != homeWorld) {
+            if (!settings.isCrossWorldTp() && !senderPlayer.hasPermission("enhancedhomes.crossworldtp.bypass")) {
+                senderPlayer.sendMessage(plugin.getMessage("commands.home.cross-world-error").renderPrefixed(pluginPrefix));
+                plugin.getMetrics().recordCommand("home", CommandOutcome.DENIED);
+                return;
             }
         }
 
-        // Check si le monde existe sur le serveur
-        if (Bukkit.getWorld(home.getWorldName()) == null) {
-            String worldNotFoundMessage = plugin.getLangMessage("commands.home.world-not-found");
-            worldNotFoundMessage = worldNotFoundMessage.replace("%world%", home.getWorldName());
-            sender.sendMessage(pluginPrefix + worldNotFoundMessage);
-            return true;
+        // Check if the world of the home is loaded on the server
+        if (homeWorld == null) {
+            senderPlayer.sendMessage(plugin.getMessage("commands.home.world-not-found").renderPrefixed(pluginPrefix, "world", home.getWorldName()));
+            plugin.getMetrics().recordCommand("home", CommandOutcome.NOT_FOUND);
+            return;
         }
 
         // Get the location of the home
-        Location homeLocation = new Location(Bukkit.getWorld(home.getWorldName()), home.getX(), home.getY(), home.getZ());
+        Location homeLocation = home.getLocation();
+        ChunkPreloader chunkPreloader = plugin.getChunkPreloader();
 
         // Check if a warmup is required before teleporting
-        if (plugin.getConfig().getBoolean("warmup") && !sender.hasPermission("enhancedhomes.warmup.bypass")) {
-            int warmupTime = plugin.getConfig().getInt("warmup-time");
-            String warmupMessage = plugin.getLangMessage("commands.home.warmup-message");
-            warmupMessage = warmupMessage.replace("%time%", String.valueOf(warmupTime));
-            warmupMessage = warmupMessage.replace("%home%", home.getName());
-            warmupMessage = warmupMessage.replace("%player%", targetPlayer.getName());
-            sender.sendMessage(pluginPrefix + warmupMessage);
-            Location playerLocation = senderPlayer.getLocation();
-            BukkitTask task = Bukkit.getScheduler().runTaskLater(plugin, () -> {
-                if (playerLocation.distanceSquared(senderPlayer.getLocation()) < 1) {
-                    targetPlayer.teleport(homeLocation);
-
-                    // Play a sound effect when teleporting
-                    if (plugin.getConfig().getBoolean("teleport-sound"))
-                        targetPlayer.playSound(targetPlayer.getLocation(), "entity.enderman.teleport", 1.0f, 1.0f);
-
-                    String teleportMessage = plugin.getLangMessage("commands.home.teleported-message");
-                    teleportMessage = teleportMessage.replace("%home%", home.getName());
-                    teleportMessage = teleportMessage.replace("%player%", targetPlayer.getName());
-                    teleportMessage = teleportMessage.replace("%world%", home.getWorldName());
-                    sender.sendMessage(pluginPrefix + teleportMessage);
-                } else {
-                    String movementCancelledMessage = plugin.getLangMessage("commands.home.movement-cancelled");
-                    sender.sendMessage(pluginPrefix + movementCancelledMessage);
+        if (settings.isWarmup() && !senderPlayer.hasPermission("enhancedhomes.warmup.bypass")) {
+            int warmupTime = settings.getWarmupTime();
+            senderPlayer.sendMessage(plugin.getMessage("commands.home.warmup-message").renderPrefixed(pluginPrefix,
+                    "time", String.valueOf(warmupTime), "home", home.getName(), "player", targetPlayer.getName()));
+            ChunkPreloader.Preload preload = chunkPreloader.preload(homeLocation);
+            warmupManager.start(senderPlayer, senderPlayer.getUniqueId(), warmupTime * 20L, () -> {
+                chunkPreloader.teleport(senderPlayer, homeLocation);
+                chunkPreloader.release(preload);
+
+                // Play a sound effect when teleporting
+                if (settings.isTeleportSound())
+                    senderPlayer.playSound(senderPlayer.getLocation(), "entity.enderman.teleport", 1.0f, 1.0f);
+
+                senderPlayer.sendMessage(plugin.getMessage("commands.home.teleported-message").renderPrefixed(pluginPrefix,
+                        "home", home.getName(), "player", targetPlayer.getName(), "world", home.getWorldName()));
+                plugin.getMetrics().recordCommand("home", CommandOutcome.SUCCESS);
+            }, reason -> {
+                chunkPreloader.release(preload);
+                plugin.getMetrics().recordCommand("home", CommandOutcome.CANCELLED);
+                if (reason == WarmupManager.CancelReason.MOVED) {
+                    senderPlayer.sendMessage(plugin.getMessage("commands.home.movement-cancelled").renderPrefixed(pluginPrefix));
+                } else if (reason == WarmupManager.CancelReason.DAMAGED) {
+                    senderPlayer.sendMessage(plugin.getMessage("commands.home.damage-cancelled").renderPrefixed(pluginPrefix));
                 }
-                teleportTasks.remove(targetPlayer); // Remove the task from the HashMap once it's done
-            }, warmupTime * 20L);
-            teleportTasks.put(targetPlayer, task);
+            });
         } else {
             // Teleport the player immediately if no warmup is required
-            targetPlayer.teleport(homeLocation);
+            chunkPreloader.teleport(senderPlayer, homeLocation);
 
             // Play a sound effect when teleporting
-            if (plugin.getConfig().getBoolean("teleport-sound"))
-                targetPlayer.playSound(targetPlayer.getLocation(), "entity.enderman.teleport", 1.0f, 1.0f);
+            if (settings.isTeleportSound())
+                senderPlayer.playSound(senderPlayer.getLocation(), "entity.enderman.teleport", 1.0f, 1.0f);
 
             // Send a message to the sender
-            String teleportMessage = plugin.getLangMessage("commands.home.teleported-message");
-            teleportMessage = teleportMessage.replace("%home%", home.getName());
-            teleportMessage = teleportMessage.replace("%player%", targetPlayer.getName());
-            teleportMessage = teleportMessage.replace("%world%", home.getWorldName());
-            sender.sendMessage(pluginPrefix + teleportMessage);
+            senderPlayer.sendMessage(plugin.getMessage("commands.home.teleported-message").renderPrefixed(pluginPrefix,
+                    "home", home.getName(), "player", targetPlayer.getName(), "world", home.getWorldName()));
+            plugin.getMetrics().recordCommand("home", CommandOutcome.SUCCESS);
         }
+    }
 
-        return true;
+    /**
+     * This method is called when the player presses tab while typing the command.
+     *
+     * @param sender The command sender.
+     * @param command The command.
+     * @param alias The alias used.
+     * @param args The command arguments, the last one being completed.
+     * @return The completions.
+     */
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        return completions.completeHomeOrPlayer(sender, args, "enhancedhomes.home.other");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,85 @@
+package com.enhancedplugins.enhancedhomes.commands;
+
+import com.enhancedplugins.enhancedhomes.EnhancedHomes;
+import com.enhancedplugins.enhancedhomes.managers.PlayerNameIndex;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The HomeCompletions class builds the tab completions shared by the home commands.
+ * Home names come from the sorted index of each player's homes and player names from the player name index,
+ * so only the names matching what was typed are visited.
+ */
+class HomeCompletions {
+    private final EnhancedHomes plugin;
+
+    /**
+     * Constructor for the HomeCompletions class.
+     *
+     * @param plugin The EnhancedHomes plugin.
+     */
+    HomeCompletions(EnhancedHomes plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Completes commands of the form "[player] &lt;home&gt;", such as /home and /delhome.
+     * The first argument completes to the sender's homes and, with the permission, to player names.
+     * The second argument completes to the homes of the player named by the first one.
+     *
+     * @param sender The command sender.
+     * @param args The command arguments, the last one being completed.
+     * @param otherPermission The permission needed to use the command on other players.
+     * @return The completions.
+     */
+    List<String> completeHomeOrPlayer(CommandSender sender, String[] args, String otherPermission) {
+        if (!(sender instanceof Player player)) {
+            return Collections.emptyList();
+        }
+        if (args.length == 1) {
+            List<String> completions = plugin.getHomeManager().completeHomeNames(player.getUniqueId(), args[0]);
+            if (sender.hasPermission(otherPermission)) {
+                List<String> playerNames = plugin.getPlayerNameIndex().complete(args[0]);
+                if (!playerNames.isEmpty()) {
+                    completions = new ArrayList<>(completions);
+                    completions.addAll(playerNames);
+                }
+            }
+            return completions;
+        }
+        if (args.length == 2) {
+            if (!sender.getName().equalsIgnoreCase(args[0]) && !sender.hasPermission(otherPermission)) {
+                return Collections.emptyList();
+            }
+            PlayerNameIndex.KnownPlayer targetPlayer = plugin.getPlayerNameIndex().find(args[0]);
+            if (targetPlayer == null) {
+                return Collections.emptyList();
+            }
+            return plugin.getHomeManager().completeHomeNames(targetPlayer.getUniqueId(), args[1]);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Completes commands of the form "[player]", such as /homes.
+     *
+     * @param sender The command sender.
+     * @param args The command arguments, the last one being completed.
+     * @param otherPermission The permission needed to use the command on other players.
+     * @return The completions.
+     */
+    List<String> completePlayer(CommandSender sender, String[] args, String otherPermission) {
+        if (args.length != 1 || !(sender instanceof Player)) {
+            return Collections.emptyList();
+        }
+        if (!sender.hasPermission(otherPermission)) {
+            return sender.getName().regionMatches(true, 0, args[0], 0, args[0].length())
+                    ? Collections.singletonList(sender.getName()) : Collections.emptyList();
+        }
+        return plugin.getPlayerNameIndex().complete(args[0]);
+    }
+}
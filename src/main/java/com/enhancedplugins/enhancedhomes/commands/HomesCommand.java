@@ -1,24 +1,34 @@
 package com.enhancedplugins.enhancedhomes.commands;
 
 import com.enhancedplugins.enhancedhomes.EnhancedHomes;
+import com.enhancedplugins.enhancedhomes.metrics.CommandOutcome;
 import com.enhancedplugins.enhancedhomes.managers.HomeManager;
+import com.enhancedplugins.enhancedhomes.managers.HomeSpatialIndex;
+import com.enhancedplugins.enhancedhomes.managers.PlayerNameIndex;
 import com.enhancedplugins.enhancedhomes.models.Home;
-import org.bukkit.ChatColor;
+import com.enhancedplugins.enhancedhomes.models.Settings;
+import com.enhancedplugins.enhancedhomes.utils.MessageTemplate;
+import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
-import org.bukkit.permissions.PermissionAttachmentInfo;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * The HomesCommand class implements the /homes command.
  * This command allows a player to list their homes or the homes of another player.
  */
-public class HomesCommand implements CommandExecutor {
+public class HomesCommand implements CommandExecutor, TabCompleter {
     private final EnhancedHomes plugin;
     private final HomeManager homeManager;
+    private final HomeCompletions completions;
+    private static final int MAX_LISTED_HOMES = 20;
 
     /**
      * Constructor for the HomesCommand class.
@@ -28,6 +38,7 @@ public class HomesCommand implements CommandExecutor {
     public HomesCommand(EnhancedHomes plugin) {
         this.plugin = plugin;
         this.homeManager = plugin.getHomeManager();
+        this.completions = new HomeCompletions(plugin);
     }
 
     /**
@@ -43,53 +54,71 @@ public class HomesCommand implements CommandExecutor {
      */
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
-        String pluginPrefix;
-        if (plugin.getPluginConfig().getBoolean("show-prefix")) {
-            pluginPrefix = plugin.getLangMessage("prefix") + ChatColor.RESET + " ";
-        } else {
-            pluginPrefix = "";
-        }
+        String pluginPrefix = plugin.getPrefix();
 
         // Check if the sender is a player
         if (!(sender instanceof Player)) {
-            String playerOnlyMessage = plugin.getLangMessage("commands.player-only");
-            sender.sendMessage(pluginPrefix + playerOnlyMessage);
+            sender.sendMessage(plugin.getMessage("commands.player-only").renderPrefixed(pluginPrefix));
+            plugin.getMetrics().recordCommand("homes", CommandOutcome.INVALID);
             return true;
         }
 
+        // List the homes around the sender
+        if (args.length >= 1 && args[0].equalsIgnoreCase("near")) {
+            return listNearbyHomes((Player) sender, args, pluginPrefix);
+        }
+
         if (args.length > 1) {
-            String usageMessage = plugin.getLangMessage("commands.homes.usage");
-            sender.sendMessage(pluginPrefix + usageMessage);
+            sender.sendMessage(plugin.getMessage("commands.homes.usage").renderPrefixed(pluginPrefix));
+            plugin.getMetrics().recordCommand("homes", CommandOutcome.INVALID);
             return true;
         }
 
         // Determine the target player
-        Player targetPlayer;
+        PlayerNameIndex.KnownPlayer targetPlayer;
         if (args.length == 0) {
-            targetPlayer = (Player) sender;
+            targetPlayer = PlayerNameIndex.KnownPlayer.of((Player) sender);
         } else {
             // Check if the sender has the necessary permissions
             if (!sender.getName().equalsIgnoreCase(args[0]) && !sender.hasPermission("enhancedhomes.homes.other")) {
-                String noPermissionMessage = plugin.getLangMessage("commands.no-permission");
-                sender.sendMessage(pluginPrefix + noPermissionMessage);
+                sender.sendMessage(plugin.getMessage("commands.no-permission").renderPrefixed(pluginPrefix));
+                plugin.getMetrics().recordCommand("homes", CommandOutcome.DENIED);
                 return true;
             }
-            targetPlayer = plugin.getServer().getPlayer(args[0]);
+            targetPlayer = plugin.getPlayerNameIndex().find(args[0]);
             if (targetPlayer == null) {
-                String playerNotFoundMessage = plugin.getLangMessage("commands.player-not-found");
-                String formattedMessage = playerNotFoundMessage.replace("%player%", args[0]);
-                sender.sendMessage(pluginPrefix + formattedMessage);
+                sender.sendMessage(plugin.getMessage("commands.player-not-found").renderPrefixed(pluginPrefix, "player", args[0]));
+                plugin.getMetrics().recordCommand("homes", CommandOutcome.NOT_FOUND);
                 return true;
             }
         }
 
-        // Retrieve the homes of the target player
-        List<Home> homes = homeManager.getHomes(targetPlayer);
+        // Retrieve the homes of the target player, who may be offline, without reading them on the main thread
+        MainThreadReply.whenComplete(plugin, homeManager.getHomesAsync(targetPlayer.getUniqueId()), (homes, error) -> {
+            if (error != null) {
+                plugin.getLogger().warning("Could not list the homes of " + targetPlayer.getName() + ": " + error.getMessage());
+                sender.sendMessage(plugin.getMessage("commands.homes-unreadable").renderPrefixed(pluginPrefix, "player", targetPlayer.getName()));
+                plugin.getMetrics().recordCommand("homes", CommandOutcome.FAILED);
+            } else if (((Player) sender).isOnline()) {
+                listHomes((Player) sender, targetPlayer, homes, pluginPrefix);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Sends the list of the homes of a player to the sender.
+     *
+     * @param sender The player.
+     * @param targetPlayer The player whose homes are listed.
+     * @param homes The homes of the target player.
+     * @param pluginPrefix The prefix to put before messages.
+     */
+    private void listHomes(Player sender, PlayerNameIndex.KnownPlayer targetPlayer, List<Home> homes, String pluginPrefix) {
         if (homes.isEmpty()) {
-            String noHomesFoundMessage = plugin.getLangMessage("commands.homes.homes-not-found");
-            String formattedMessage = noHomesFoundMessage.replace("%player%", targetPlayer.getName());
-            sender.sendMessage(pluginPrefix + formattedMessage);
-            return true;
+            sender.sendMessage(plugin.getMessage("commands.homes.homes-not-found").renderPrefixed(pluginPrefix, "player", targetPlayer.getName()));
+            plugin.getMetrics().recordCommand("homes", CommandOutcome.NOT_FOUND);
+            return;
         }
 
         // Check if cross-world teleportation is enabled
@@ -97,50 +126,116 @@ public class HomesCommand implements CommandExecutor {
         if (sender.hasPermission("enhancedhomes.crossworldtp.bypass")) {
             isCrossWorldTpEnabled = true;
         } else {
-            isCrossWorldTpEnabled = plugin.getPluginConfig().getBoolean("cross-world-tp");
+            isCrossWorldTpEnabled = plugin.getSettings().isCrossWorldTp();
         }
 
         // Determine the maximum number of homes
-        boolean isHomeLimitEnabled = plugin.getPluginConfig().getBoolean("homes-limit");
-        int maxHomes = isHomeLimitEnabled ? plugin.getPluginConfig().getInt("max-homes") : 100;
-
-        if (sender.hasPermission("enhancedhomes.sethome.unlimited")) {
-            maxHomes = 100;
-        } else {
-            List<String> sortedPermissions = sender.getEffectivePermissions().stream()
-                    .map(PermissionAttachmentInfo::getPermission)
-                    .filter(perm -> perm.startsWith("enhancedhomes.sethome.max"))
-                    .sorted()
-                    .toList();
-
-            maxHomes = sortedPermissions.stream()
-                    .map(perm -> Integer.parseInt(perm.replace("enhancedhomes.sethome.max.", "")))
-                    .max(Integer::compareTo)
-                    .orElse(maxHomes);
-        }
+        int maxHomes = plugin.getHomeLimitResolver().getHomeLimit(sender);
 
         // Send a message to the sender with the list of homes
-        String homesListTitle = plugin.getLangMessage("commands.homes.list-title");
-        String formattedTitle;
-        formattedTitle = homesListTitle.replace("%player%", targetPlayer.getName());
-        formattedTitle = formattedTitle.replace("%current%", String.valueOf(homes.size()));
-        formattedTitle = formattedTitle.replace("%max%", String.valueOf(maxHomes));
-        sender.sendMessage(pluginPrefix + formattedTitle);
+        sender.sendMessage(plugin.getMessage("commands.homes.list-title").renderPrefixed(pluginPrefix,
+                "player", targetPlayer.getName(), "current", String.valueOf(homes.size()), "max", String.valueOf(maxHomes)));
 
+        MessageTemplate listItem = plugin.getMessage("commands.homes.list-item");
+        String accessibleColor = plugin.getLangMessage("commands.homes.accessible-world");
+        String inaccessibleColor = plugin.getLangMessage("commands.homes.inaccessible-world");
+        World senderWorld = sender.getWorld();
         homes.forEach(home -> {
-            String worldName = home.getWorldName();
-            String homeName = home.getName();
-            String homesListItem = plugin.getLangMessage("commands.homes.list-item");
-            String formattedItem = homesListItem.replace("%home%", homeName);
-            formattedItem = formattedItem.replace("%world%", worldName);
-            if (isCrossWorldTpEnabled) {
-                formattedItem = formattedItem.replace("%world-color%", plugin.getLangMessage("commands.homes.accessible-world"));
-            } else {
-                formattedItem = formattedItem.replace("%world-color%", worldName.equalsIgnoreCase(((Player) sender).getWorld().getName()) ? plugin.getLangMessage("commands.homes.accessible-world") : plugin.getLangMessage("commands.homes.inaccessible-world"));
-            }
-            sender.sendMessage(formattedItem);
+            // Homes in worlds that are not loaded are never accessible
+            World homeWorld = home.getWorld();
+            boolean isAccessible = homeWorld != null && (isCrossWorldTpEnabled || homeWorld == senderWorld);
+            sender.sendMessage(listItem.render("home", home.getName(), "world", home.getWorldName(),
+                    "world-color", isAccessible ? accessibleColor : inaccessibleColor));
         });
 
+        plugin.getMetrics().recordCommand("homes", CommandOutcome.SUCCESS);
+    }
+
+    /**
+     * Lists the homes within a radius of the sender, nearest first, using the spatial index.
+     * Players see their own homes, and the homes of every player with the enhancedhomes.homes.other permission;
+     * with lazy loading, offline players are only listed if every home is indexed.
+     *
+     * @param sender The player.
+     * @param args The command arguments: "near" and an optional radius.
+     * @param pluginPrefix The prefix to put before messages.
+     * @return true, as the usage is handled by this method.
+     */
+    private boolean listNearbyHomes(Player sender, String[] args, String pluginPrefix) {
+        Settings settings = plugin.getSettings();
+        if (args.length > 2) {
+            sender.sendMessage(plugin.getMessage("commands.homes.usage").renderPrefixed(pluginPrefix));
+            plugin.getMetrics().recordCommand("homes", CommandOutcome.INVALID);
+            return true;
+        }
+        int radius = settings.getNearRadius();
+        if (args.length == 2) {
+            try {
+                radius = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                radius = -1;
+            }
+            if (radius < 1 || radius > settings.getNearMaxRadius()) {
+                sender.sendMessage(plugin.getMessage("commands.homes.invalid-radius").renderPrefixed(pluginPrefix,
+                        "max", String.valueOf(settings.getNearMaxRadius())));
+                plugin.getMetrics().recordCommand("homes", CommandOutcome.INVALID);
+                return true;
+            }
+        }
+
+        boolean seesOtherHomes = sender.hasPermission("enhancedhomes.homes.other");
+        if (!homeManager.isSpatialIndexLoaded()) {
+            sender.sendMessage(plugin.getMessage("commands.homes.index-loading").renderPrefixed(pluginPrefix));
+        } else if (seesOtherHomes && !homeManager.isSpatialIndexComplete()) {
+            // The sender's own homes are always indexed, only the homes of offline players are missing
+            sender.sendMessage(plugin.getMessage("commands.homes.index-online-only").renderPrefixed(pluginPrefix));
+        }
+        Location location = sender.getLocation();
+        List<HomeSpatialIndex.IndexedHome> nearbyHomes = homeManager.getSpatialIndex()
+                .findNear(location.getWorld().getName(), location.getX(), location.getZ(), radius);
+        if (!seesOtherHomes) {
+            nearbyHomes.removeIf(indexedHome -> !indexedHome.getOwnerId().equals(sender.getUniqueId()));
+        }
+        if (nearbyHomes.isEmpty()) {
+            sender.sendMessage(plugin.getMessage("commands.homes.near-not-found").renderPrefixed(pluginPrefix, "radius", String.valueOf(radius)));
+            plugin.getMetrics().recordCommand("homes", CommandOutcome.NOT_FOUND);
+            return true;
+        }
+
+        sender.sendMessage(plugin.getMessage("commands.homes.near-title").renderPrefixed(pluginPrefix,
+                "radius", String.valueOf(radius), "count", String.valueOf(nearbyHomes.size())));
+        MessageTemplate nearItem = plugin.getMessage("commands.homes.near-item");
+        PlayerNameIndex playerNameIndex = plugin.getPlayerNameIndex();
+        for (HomeSpatialIndex.IndexedHome indexedHome : nearbyHomes.subList(0, Math.min(nearbyHomes.size(), MAX_LISTED_HOMES))) {
+            long distance = Math.round(Math.sqrt(indexedHome.distanceSquared(location.getX(), location.getZ())));
+            sender.sendMessage(nearItem.render("home", indexedHome.getHome().getName(),
+                    "player", playerNameIndex.getName(indexedHome.getOwnerId()), "distance", String.valueOf(distance)));
+        }
+        if (nearbyHomes.size() > MAX_LISTED_HOMES) {
+            sender.sendMessage(plugin.getMessage("commands.homes.more").render("count", String.valueOf(nearbyHomes.size() - MAX_LISTED_HOMES)));
+        }
+        plugin.getMetrics().recordCommand("homes", CommandOutcome.SUCCESS);
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * This method is called when the player presses tab while typing the command.
+     *
+     * @param sender The command sender.
+     * @param command The command.
+     * @param alias The alias used.
+     * @param args The command arguments, the last one being completed.
+     * @return The completions.
+     */
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        List<String> playerCompletions = completions.completePlayer(sender, args, "enhancedhomes.homes.other");
+        if (args.length == 1 && "near".startsWith(args[0].toLowerCase(Locale.ROOT))) {
+            List<String> allCompletions = new ArrayList<>(playerCompletions.size() + 1);
+            allCompletions.add("near");
+            allCompletions.addAll(playerCompletions);
+            return allCompletions;
+        }
+        return playerCompletions;
+    }
+}
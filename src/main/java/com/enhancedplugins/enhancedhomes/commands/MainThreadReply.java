@@ -0,0 +1,46 @@
+package com.enhancedplugins.enhancedhomes.commands;
+
+import com.enhancedplugins.enhancedhomes.EnhancedHomes;
+import org.bukkit.Bukkit;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
+
+/**
+ * The MainThreadReply class finishes commands that wait for homes read in the background, such as the homes of offline players.
+ * The rest of the command runs on the main thread: right away if the homes were in memory, or on the tick after they are read.
+ */
+final class MainThreadReply {
+
+    private MainThreadReply() {
+    }
+
+    /**
+     * Runs the rest of a command on the main thread once a future completes. Must be called on the main thread.
+     * Nothing runs if the plugin is disabled before the future completes.
+     *
+     * @param plugin The EnhancedHomes plugin.
+     * @param future The future the command waits for.
+     * @param reply Called on the main thread with the result, or with null and the error if the future failed.
+     * @param <T> The type of the result.
+     */
+    static <T> void whenComplete(EnhancedHomes plugin, CompletableFuture<T> future, BiConsumer<T, Throwable> reply) {
+        if (!future.isDone()) {
+            future.whenComplete((result, error) -> {
+                if (plugin.isEnabled()) {
+                    Bukkit.getScheduler().runTask(plugin, () -> whenComplete(plugin, future, reply));
+                }
+            });
+            return;
+        }
+        T result;
+        try {
+            result = future.join();
+        } catch (CompletionException e) {
+            reply.accept(null, e.getCause());
+            return;
+        }
+        reply.accept(result, null);
+    }
+}
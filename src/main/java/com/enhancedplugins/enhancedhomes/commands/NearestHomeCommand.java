@@ -0,0 +1,60 @@
+package com.enhancedplugins.enhancedhomes.commands;
+
+import com.enhancedplugins.enhancedhomes.EnhancedHomes;
+import com.enhancedplugins.enhancedhomes.metrics.CommandOutcome;
+import com.enhancedplugins.enhancedhomes.models.Home;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+/**
+ * The NearestHomeCommand class implements the /nearesthome command.
+ * This command teleports a player to their nearest home in their current world,
+ * with the same warmup and checks as /home.
+ */
+public class NearestHomeCommand implements CommandExecutor {
+    private final EnhancedHomes plugin;
+    private final HomeCommand homeCommand;
+
+    /**
+     * Constructor for the NearestHomeCommand class.
+     *
+     * @param plugin The EnhancedHomes plugin.
+     * @param homeCommand The /home command, which performs the teleportation.
+     */
+    public NearestHomeCommand(EnhancedHomes plugin, HomeCommand homeCommand) {
+        this.plugin = plugin;
+        this.homeCommand = homeCommand;
+    }
+
+    /**
+     * This method is called when the /nearesthome command is executed.
+     *
+     * @param sender The sender of the command.
+     * @param command The command.
+     * @param label The alias of the command.
+     * @param args The arguments of the command.
+     * @return true if the command was executed successfully, false otherwise.
+     */
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        String pluginPrefix = plugin.getPrefix();
+
+        // Check if the sender is a player
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage(plugin.getMessage("commands.player-only").renderPrefixed(pluginPrefix));
+            plugin.getMetrics().recordCommand("nearesthome", CommandOutcome.INVALID);
+            return true;
+        }
+
+        Home nearestHome = plugin.getHomeManager().getNearestHome(player);
+        if (nearestHome == null) {
+            sender.sendMessage(plugin.getMessage("commands.nearesthome.no-home").renderPrefixed(pluginPrefix));
+            plugin.getMetrics().recordCommand("nearesthome", CommandOutcome.NOT_FOUND);
+            return true;
+        }
+
+        return homeCommand.onCommand(sender, command, label, new String[]{nearestHome.getName()});
+    }
+}
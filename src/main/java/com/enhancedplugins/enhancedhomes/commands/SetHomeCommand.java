@@ -1,6 +1,7 @@
 package com.enhancedplugins.enhancedhomes.commands;
 
 import com.enhancedplugins.enhancedhomes.EnhancedHomes;
+import com.enhancedplugins.enhancedhomes.metrics.CommandOutcome;
 import com.enhancedplugins.enhancedhomes.managers.HomeManager;
 import com.enhancedplugins.enhancedhomes.models.Home;
 import org.bukkit.Bukkit;
@@ -9,12 +10,9 @@ import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
-import org.bukkit.ChatColor;
-import org.bukkit.permissions.PermissionAttachmentInfo;
 import org.bukkit.scheduler.BukkitRunnable;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -47,37 +45,30 @@ public class SetHomeCommand implements CommandExecutor {
      */
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
-        String pluginPrefix;
-        if (plugin.getPluginConfig().getBoolean("show-prefix")) {
-            pluginPrefix = plugin.getLangMessage("prefix") + ChatColor.RESET + " ";
-        } else {
-            pluginPrefix = "";
-        }
+        String pluginPrefix = plugin.getPrefix();
 
         // Check if the sender is a player
         if (!(sender instanceof Player player)) {
-            String playerOnlyMessage = plugin.getLangMessage("commands.player-only");
-            sender.sendMessage(pluginPrefix + playerOnlyMessage);
+            sender.sendMessage(plugin.getMessage("commands.player-only").renderPrefixed(pluginPrefix));
+            plugin.getMetrics().recordCommand("sethome", CommandOutcome.INVALID);
             return true;
         }
 
         // Check if the correct number of arguments was given
         if (args.length != 1) {
-            String usageMessage = plugin.getLangMessage("commands.sethome.usage");
-            sender.sendMessage(pluginPrefix + usageMessage);
+            sender.sendMessage(plugin.getMessage("commands.sethome.usage").renderPrefixed(pluginPrefix));
+            plugin.getMetrics().recordCommand("sethome", CommandOutcome.INVALID);
             return true;
         }
 
         Player targetPlayer = player;
         Home home = homeManager.getHome(player, args[0]);
-        boolean isHomeInReplaceHome = replaceHome.containsKey(player) && replaceHome.get(player).equals(args[0]);
+        boolean isHomeInReplaceHome = replaceHome.containsKey(player) && replaceHome.get(player).equalsIgnoreCase(args[0]);
 
         // Check if the home already exists
         if (home != null && !isHomeInReplaceHome) {
             replaceHome.put(player, args[0]);
-            String homeExistsMessage = plugin.getLangMessage("commands.sethome.home-exists");
-            homeExistsMessage = homeExistsMessage.replace("%home%", args[0]);
-            sender.sendMessage(pluginPrefix + homeExistsMessage);
+            sender.sendMessage(plugin.getMessage("commands.sethome.home-exists").renderPrefixed(pluginPrefix, "home", args[0]));
 
             // Remove the home from the replaceHome map after 5 minutes
             new BukkitRunnable() {
@@ -87,42 +78,29 @@ public class SetHomeCommand implements CommandExecutor {
                 }
             }.runTaskLater(plugin, 20 * 60 * 5);
 
+            plugin.getMetrics().recordCommand("sethome", CommandOutcome.CONFIRMATION);
             return true;
         }
 
-        // If the home is in the replaceHome map, remove it
-        if (isHomeInReplaceHome) {
-            assert home != null;
-            homeManager.removeHome(player, home.getName());
+        // If the home is in the replaceHome map, move it to the player's current location, keeping its place in the list
+        if (home != null) {
+            Location targetLocation = targetPlayer.getLocation();
+            homeManager.updateHome(player, home.getName(), targetLocation.getWorld().getName(),
+                    targetLocation.getBlockX(), targetLocation.getBlockY(), targetLocation.getBlockZ());
             replaceHome.remove(player);
+
+            sender.sendMessage(plugin.getMessage("commands.sethome.home-set").renderPrefixed(pluginPrefix, "home", home.getName()));
+            plugin.getMetrics().recordCommand("sethome", CommandOutcome.SUCCESS);
+            return true;
         }
 
         // Check if the player has reached their home limit
-        boolean isHomeLimitEnabled = plugin.getPluginConfig().getBoolean("homes-limit");
-        int maxHomes = isHomeLimitEnabled ? plugin.getPluginConfig().getInt("max-homes") : 100;
-
-        if (sender.hasPermission("enhancedhomes.sethome.unlimited")) {
-            maxHomes = 100;
-        } else {
-            List<String> sortedPermissions = sender.getEffectivePermissions().stream()
-                    .map(PermissionAttachmentInfo::getPermission)
-                    .filter(perm -> perm.startsWith("enhancedhomes.sethome.max"))
-                    .sorted()
-                    .toList();
-
-            maxHomes = sortedPermissions.stream()
-                    .map(perm -> Integer.parseInt(perm.replace("enhancedhomes.sethome.max.", "")))
-                    .max(Integer::compareTo)
-                    .orElse(maxHomes);
-        }
+        int maxHomes = plugin.getHomeLimitResolver().getHomeLimit(player);
 
         if (homeManager.getHomes(player).size() >= maxHomes) {
-            String homeLimitReachedMessage = plugin.getLangMessage("commands.sethome.home-limit-reached");
-            homeLimitReachedMessage = homeLimitReachedMessage.replace("%home%", args[0]);
-            homeLimitReachedMessage = homeLimitReachedMessage.replace("%homes%", String.valueOf(homeManager.getHomes(player).size()));
-            homeLimitReachedMessage = homeLimitReachedMessage.replace("%current%", String.valueOf(maxHomes));
-            homeLimitReachedMessage = homeLimitReachedMessage.replace("%max%", String.valueOf(maxHomes));
-            sender.sendMessage(pluginPrefix + homeLimitReachedMessage);
+            sender.sendMessage(plugin.getMessage("commands.sethome.home-limit-reached").renderPrefixed(pluginPrefix,
+                    "home", args[0], "current", String.valueOf(homeManager.getHomes(player).size()), "max", String.valueOf(maxHomes)));
+            plugin.getMetrics().recordCommand("sethome", CommandOutcome.DENIED);
             return true;
         }
 
@@ -135,9 +113,8 @@ public class SetHomeCommand implements CommandExecutor {
         home = new Home(args[0], worldName, targetX, targetY, targetZ);
         homeManager.addHome(targetPlayer, home);
 
-        String homeSetMessage = plugin.getLangMessage("commands.sethome.home-set");
-        homeSetMessage = homeSetMessage.replace("%home%", args[0]);
-        sender.sendMessage(pluginPrefix + homeSetMessage);
+        sender.sendMessage(plugin.getMessage("commands.sethome.home-set").renderPrefixed(pluginPrefix, "home", args[0]));
+        plugin.getMetrics().recordCommand("sethome", CommandOutcome.SUCCESS);
         return true;
     }
 }
\ No newline at end of file
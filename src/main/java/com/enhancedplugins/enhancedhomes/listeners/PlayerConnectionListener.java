@@ -0,0 +1,61 @@
+package com.enhancedplugins.enhancedhomes.listeners;
+
+import com.enhancedplugins.enhancedhomes.EnhancedHomes;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * The PlayerConnectionListener class keeps the homes of online players in memory.
+ * Homes are loaded in the background while the player logs in, and evicted some time after they quit.
+ */
+public class PlayerConnectionListener implements Listener {
+    private final EnhancedHomes plugin;
+
+    /**
+     * Constructor for the PlayerConnectionListener class.
+     *
+     * @param plugin The EnhancedHomes plugin.
+     */
+    public PlayerConnectionListener(EnhancedHomes plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Starts loading the homes of a player as soon as their login is allowed.
+     * The eviction is scheduled right away in case the player never finishes joining, and cancelled on join.
+     *
+     * @param event The pre-login event.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+        plugin.getHomeManager().loadPlayer(event.getUniqueId());
+        plugin.getHomeManager().scheduleUnload(event.getUniqueId());
+    }
+
+    /**
+     * Keeps the homes of a joining player in memory, loading them if the pre-login load did not happen.
+     *
+     * @param event The join event.
+     */
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        plugin.getHomeManager().loadPlayer(event.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Schedules the eviction of the homes of a player who quit.
+     *
+     * @param event The quit event.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        plugin.getHomeManager().scheduleUnload(event.getPlayer().getUniqueId());
+    }
+}
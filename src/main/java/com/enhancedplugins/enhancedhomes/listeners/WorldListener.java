@@ -0,0 +1,34 @@
+package com.enhancedplugins.enhancedhomes.listeners;
+
+import com.enhancedplugins.enhancedhomes.models.Home;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * The WorldListener class invalidates the worlds cached by homes whenever a world is loaded or unloaded.
+ */
+public class WorldListener implements Listener {
+
+    /**
+     * Invalidates the cached worlds when a world is loaded.
+     *
+     * @param event The world load event.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(WorldLoadEvent event) {
+        Home.invalidateWorlds();
+    }
+
+    /**
+     * Invalidates the cached worlds when a world is unloaded.
+     *
+     * @param event The world unload event.
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        Home.invalidateWorlds();
+    }
+}
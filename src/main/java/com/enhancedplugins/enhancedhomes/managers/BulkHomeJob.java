@@ -0,0 +1,273 @@
+package com.enhancedplugins.enhancedhomes.managers;
+
+import com.enhancedplugins.enhancedhomes.EnhancedHomes;
+import com.enhancedplugins.enhancedhomes.models.Home;
+import com.enhancedplugins.enhancedhomes.models.Settings;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * The BulkHomeJob class edits the homes of many players on the main thread without stalling it, for admin commands
+ * such as deleting every home of a reset world. The players to edit are found up front in the spatial index,
+ * which must hold every home, then edited a few at a time: each tick stops after bulk-players-per-tick players
+ * or bulk-tick-budget milliseconds, whichever comes first. Both settings are read on every tick, so a config reload applies to a running job.
+ * With lazy loading, the homes of the next players are read ahead on a loader thread, one window at a time,
+ * so a tick does not wait for the storage. Edited players are written behind by the home manager, in batches.
+ * Each edit checks every home of the player again when it is applied, so homes changed since the job started are handled;
+ * homes set after the job started by players who were not found then are left alone.
+ * All methods must be called on the main thread.
+ */
+public class BulkHomeJob implements Runnable {
+    private static final int MAX_PREFETCH_WINDOW = 1000;
+    private static final long PROGRESS_INTERVAL_MILLIS = 5000;
+    private final EnhancedHomes plugin;
+    private final String description;
+    private final UUID[] playerIds;
+    private final UnaryOperator<Home> edit;
+    private final Consumer<BulkHomeJob> progressListener;
+    private BukkitTask task;
+    private CompletableFuture<Void> prefetch;
+    private int cursor;
+    private int readyEnd;
+    private int prefetchedEnd;
+    private int editedPlayers;
+    private int changedHomes;
+    private int failedPlayers;
+    private long startMillis;
+    private long lastProgressMillis;
+    private boolean done;
+    private boolean cancelled;
+
+    /**
+     * Constructor for the BulkHomeJob class.
+     *
+     * @param plugin The EnhancedHomes plugin.
+     * @param description The description of the job, e.g. the command that started it.
+     * @param playerIds The UUIDs of the players whose homes may be edited.
+     * @param edit Returns the home itself to keep it, another home with the same name to replace it, or null to delete it.
+     * @param progressListener Called with the job every few seconds while it runs, and once when it is done or cancelled.
+     */
+    public BulkHomeJob(EnhancedHomes plugin, String description, Collection<UUID> playerIds, UnaryOperator<Home> edit,
+                       Consumer<BulkHomeJob> progressListener) {
+        this.plugin = plugin;
+        this.description = description;
+        // Sorted, so players are read from the storage in a stable order
+        this.playerIds = playerIds.stream().sorted().toArray(UUID[]::new);
+        this.edit = edit;
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Creates a job deleting every home of a world, e.g. before the world is reset.
+     *
+     * @param plugin The EnhancedHomes plugin.
+     * @param description The description of the job.
+     * @param worldName The name of the world.
+     * @param progressListener Called with the job while it runs and when it is done.
+     * @return The job, to start.
+     */
+    public static BulkHomeJob deleteWorld(EnhancedHomes plugin, String description, String worldName, Consumer<BulkHomeJob> progressListener) {
+        return new BulkHomeJob(plugin, description, plugin.getHomeManager().getSpatialIndex().findOwnersInWorld(worldName),
+                home -> worldName.equals(home.getWorldName()) ? null : home, progressListener);
+    }
+
+    /**
+     * Creates a job moving every home of a world to another world name, at the same coordinates, e.g. after the world was renamed.
+     *
+     * @param plugin The EnhancedHomes plugin.
+     * @param description The description of the job.
+     * @param fromWorldName The current name of the world.
+     * @param toWorldName The new name of the world.
+     * @param progressListener Called with the job while it runs and when it is done.
+     * @return The job, to start.
+     */
+    public static BulkHomeJob moveWorld(EnhancedHomes plugin, String description, String fromWorldName, String toWorldName,
+                                        Consumer<BulkHomeJob> progressListener) {
+        return new BulkHomeJob(plugin, description, plugin.getHomeManager().getSpatialIndex().findOwnersInWorld(fromWorldName),
+                home -> fromWorldName.equals(home.getWorldName()) ? home.withLocation(toWorldName, home.getX(), home.getY(), home.getZ()) : home,
+                progressListener);
+    }
+
+    /**
+     * Creates a job deleting every home inside a region of a world, bounds included.
+     *
+     * @param plugin The EnhancedHomes plugin.
+     * @param description The description of the job.
+     * @param worldName The name of the world.
+     * @param minX The minimum X coordinate.
+     * @param minZ The minimum Z coordinate.
+     * @param maxX The maximum X coordinate.
+     * @param maxZ The maximum Z coordinate.
+     * @param progressListener Called with the job while it runs and when it is done.
+     * @return The job, to start.
+     */
+    public static BulkHomeJob deleteRegion(EnhancedHomes plugin, String description, String worldName, double minX, double minZ,
+                                           double maxX, double maxZ, Consumer<BulkHomeJob> progressListener) {
+        Set<UUID> owners = new HashSet<>();
+        for (HomeSpatialIndex.IndexedHome indexedHome : plugin.getHomeManager().getSpatialIndex().findInRegion(worldName, minX, minZ, maxX, maxZ)) {
+            owners.add(indexedHome.getOwnerId());
+        }
+        return new BulkHomeJob(plugin, description, owners, home -> worldName.equals(home.getWorldName())
+                && home.getX() >= minX && home.getX() <= maxX && home.getZ() >= minZ && home.getZ() <= maxZ ? null : home, progressListener);
+    }
+
+    /**
+     * Starts the job on the next tick.
+     */
+    public void start() {
+        startMillis = System.currentTimeMillis();
+        lastProgressMillis = startMillis;
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this, 1L, 1L);
+    }
+
+    /**
+     * Stops the job. Players already edited keep their changes.
+     */
+    public void cancel() {
+        if (done) {
+            return;
+        }
+        cancelled = true;
+        finish();
+    }
+
+    /**
+     * Edits the next players, within the budget of the tick.
+     */
+    @Override
+    public void run() {
+        Settings settings = plugin.getSettings();
+        HomeManager homeManager = plugin.getHomeManager();
+        if (prefetch != null && prefetch.isDone()) {
+            readyEnd = prefetchedEnd;
+            prefetch = null;
+        }
+        if (prefetch == null && prefetchedEnd < playerIds.length) {
+            prefetchNext(homeManager, settings);
+        }
+
+        long deadline = System.nanoTime() + settings.getBulkTickBudget() * 1_000_000L;
+        int playersThisTick = 0;
+        while (cursor < readyEnd && playersThisTick < settings.getBulkPlayersPerTick() && System.nanoTime() < deadline) {
+            UUID playerId = playerIds[cursor++];
+            playersThisTick++;
+            try {
+                int changed = homeManager.editHomes(playerId, edit);
+                if (changed > 0) {
+                    editedPlayers++;
+                    changedHomes += changed;
+                }
+            } catch (UncheckedIOException e) {
+                failedPlayers++;
+                plugin.getLogger().warning("Skipping player " + playerId + " in the bulk job " + description + ": " + e.getMessage());
+            }
+        }
+
+        if (cursor >= playerIds.length) {
+            finish();
+        } else if (System.currentTimeMillis() - lastProgressMillis >= PROGRESS_INTERVAL_MILLIS) {
+            lastProgressMillis = System.currentTimeMillis();
+            progressListener.accept(this);
+        }
+    }
+
+    /**
+     * Reads the homes of the next window of players ahead. The window fits twice in the offline cache,
+     * so the window being edited stays cached while the next one is read; without a usable cache, players are read when edited.
+     *
+     * @param homeManager The home manager.
+     * @param settings The settings.
+     */
+    private void prefetchNext(HomeManager homeManager, Settings settings) {
+        int window = Math.min(MAX_PREFETCH_WINDOW, settings.getOfflineCacheSize() / 2);
+        if (window < 1) {
+            prefetchedEnd = playerIds.length;
+            readyEnd = playerIds.length;
+            return;
+        }
+        int end = Math.min(playerIds.length, prefetchedEnd + window);
+        prefetch = homeManager.prefetchHomes(Arrays.asList(playerIds).subList(prefetchedEnd, end));
+        prefetchedEnd = end;
+    }
+
+    private void finish() {
+        done = true;
+        if (task != null) {
+            task.cancel();
+        }
+        progressListener.accept(this);
+    }
+
+    /**
+     * Retrieves the description of the job.
+     *
+     * @return The description.
+     */
+    public String getDescription() { return description; }
+
+    /**
+     * Retrieves the number of players whose homes may be edited.
+     *
+     * @return The number of players.
+     */
+    public int getPlayers() { return playerIds.length; }
+
+    /**
+     * Retrieves the number of players checked so far.
+     *
+     * @return The number of players.
+     */
+    public int getProcessedPlayers() { return cursor; }
+
+    /**
+     * Retrieves the number of players whose homes were changed so far.
+     *
+     * @return The number of players.
+     */
+    public int getEditedPlayers() { return editedPlayers; }
+
+    /**
+     * Retrieves the number of homes replaced or deleted so far.
+     *
+     * @return The number of homes.
+     */
+    public int getChangedHomes() { return changedHomes; }
+
+    /**
+     * Retrieves the number of players skipped because their homes could not be read.
+     *
+     * @return The number of players.
+     */
+    public int getFailedPlayers() { return failedPlayers; }
+
+    /**
+     * Retrieves the time since the job started.
+     *
+     * @return The elapsed time, in milliseconds.
+     */
+    public long getElapsedMillis() { return System.currentTimeMillis() - startMillis; }
+
+    /**
+     * Retrieves whether the job is over, either done or cancelled.
+     *
+     * @return Whether the job is over.
+     */
+    public boolean isDone() { return done; }
+
+    /**
+     * Retrieves whether the job was cancelled before every player was checked.
+     *
+     * @return Whether the job was cancelled.
+     */
+    public boolean isCancelled() { return cancelled; }
+}
@@ -0,0 +1,191 @@
+package com.enhancedplugins.enhancedhomes.managers;
+
+import com.enhancedplugins.enhancedhomes.EnhancedHomes;
+import com.enhancedplugins.enhancedhomes.metrics.LatencyHistogram;
+import com.enhancedplugins.enhancedhomes.metrics.PluginMetrics;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The ChunkPreloader class loads the destination chunk of a teleportation while its warmup runs,
+ * so the teleportation itself does not stall the main thread loading or generating the chunk.
+ * On servers with an asynchronous chunk API (Paper's World#getChunkAtAsync), the chunk is loaded off the main thread.
+ * On plain Spigot, the chunk is loaded on the tick after the warmup starts instead of during the teleportation.
+ * In both cases, a plugin chunk ticket keeps the chunk loaded until the preload is released.
+ * Plugin tickets are not counted by the server, so preloads of the same chunk share one ticket and count its users.
+ * It also times teleportations into the plugin metrics, split by whether the destination chunk was already loaded.
+ * All methods must be called on the main thread.
+ */
+public class ChunkPreloader {
+    private static final Method GET_CHUNK_AT_ASYNC = findAsyncChunkMethod();
+    private final EnhancedHomes plugin;
+    private final Set<Preload> activePreloads = new HashSet<>();
+    private final Map<ChunkKey, Integer> ticketUsers = new HashMap<>();
+
+    /**
+     * Constructor for the ChunkPreloader class.
+     *
+     * @param plugin The EnhancedHomes plugin.
+     */
+    public ChunkPreloader(EnhancedHomes plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Starts loading the chunk of a location and keeps it loaded until the returned preload is released.
+     *
+     * @param location The destination of the teleportation.
+     * @return The preload, to release once the teleportation is done or cancelled.
+     */
+    public Preload preload(Location location) {
+        Preload preload = new Preload(location.getWorld(), location.getBlockX() >> 4, location.getBlockZ() >> 4);
+        activePreloads.add(preload);
+        if (preload.world.isChunkLoaded(preload.chunkX, preload.chunkZ)) {
+            preload.addTicket();
+        } else if (GET_CHUNK_AT_ASYNC != null) {
+            loadAsync(preload);
+        } else {
+            Bukkit.getScheduler().runTask(plugin, preload::addTicket);
+        }
+        return preload;
+    }
+
+    /**
+     * Releases a preload, letting the server unload the chunk again.
+     *
+     * @param preload The preload.
+     */
+    public void release(Preload preload) {
+        if (activePreloads.remove(preload)) {
+            preload.release();
+        }
+    }
+
+    /**
+     * Teleports a player and records how long the teleportation took on the main thread.
+     *
+     * @param player The player to teleport.
+     * @param location The destination.
+     */
+    public void teleport(Player player, Location location) {
+        World world = location.getWorld();
+        boolean chunkLoaded = world != null && world.isChunkLoaded(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+        long start = System.nanoTime();
+        player.teleport(location);
+        plugin.getMetrics().recordTeleport(System.nanoTime() - start, chunkLoaded);
+    }
+
+    /**
+     * Summarizes the teleportation timings, e.g. "12 into loaded chunks (avg 0.41 ms), 3 into unloaded chunks (avg 18.20 ms)".
+     *
+     * @return The summary.
+     */
+    public String getTimingsSummary() {
+        LatencyHistogram.Snapshot loaded = plugin.getMetrics().getLoadedChunkTeleportLatency();
+        LatencyHistogram.Snapshot unloaded = plugin.getMetrics().getUnloadedChunkTeleportLatency();
+        return loaded.getCount() + " into loaded chunks (avg " + String.format("%.2f", loaded.getMeanMillis()) + " ms), "
+                + unloaded.getCount() + " into unloaded chunks (avg " + String.format("%.2f", unloaded.getMeanMillis()) + " ms)";
+    }
+
+    /**
+     * Releases every active preload.
+     * This method is called when the plugin is disabled.
+     */
+    public void shutdown() {
+        activePreloads.forEach(Preload::release);
+        activePreloads.clear();
+        PluginMetrics metrics = plugin.getMetrics();
+        if (metrics.getLoadedChunkTeleportLatency().getCount() + metrics.getUnloadedChunkTeleportLatency().getCount() > 0) {
+            plugin.getLogger().info("Teleportations: " + getTimingsSummary());
+        }
+    }
+
+    /**
+     * Loads the chunk of a preload with the asynchronous chunk API and adds the ticket once it is loaded.
+     *
+     * @param preload The preload.
+     */
+    private void loadAsync(Preload preload) {
+        CompletableFuture<?> future;
+        try {
+            future = (CompletableFuture<?>) GET_CHUNK_AT_ASYNC.invoke(preload.world, preload.chunkX, preload.chunkZ);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            Bukkit.getScheduler().runTask(plugin, preload::addTicket);
+            return;
+        }
+        future.whenComplete((chunk, error) -> {
+            if (Bukkit.isPrimaryThread()) {
+                preload.addTicket();
+            } else {
+                Bukkit.getScheduler().runTask(plugin, preload::addTicket);
+            }
+        });
+    }
+
+    private static Method findAsyncChunkMethod() {
+        try {
+            return World.class.getMethod("getChunkAtAsync", int.class, int.class);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The Preload class holds the chunk ticket of a pending teleportation.
+     */
+    public final class Preload {
+        private final World world;
+        private final int chunkX;
+        private final int chunkZ;
+        private boolean ticketAdded;
+        private boolean released;
+
+        private Preload(World world, int chunkX, int chunkZ) {
+            this.world = world;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        private void addTicket() {
+            if (released || ticketAdded) {
+                return;
+            }
+            ticketAdded = true;
+            if (ticketUsers.merge(key(), 1, Integer::sum) == 1) {
+                world.addPluginChunkTicket(chunkX, chunkZ, plugin);
+            }
+        }
+
+        private void release() {
+            released = true;
+            if (!ticketAdded) {
+                return;
+            }
+            ticketAdded = false;
+            if (ticketUsers.merge(key(), -1, Integer::sum) == 0) {
+                ticketUsers.remove(key());
+                world.removePluginChunkTicket(chunkX, chunkZ, plugin);
+            }
+        }
+
+        private ChunkKey key() {
+            return new ChunkKey(world.getUID(), chunkX, chunkZ);
+        }
+    }
+
+    /**
+     * The ChunkKey record identifies a chunk of a world.
+     */
+    private record ChunkKey(UUID worldId, int chunkX, int chunkZ) {
+    }
+}
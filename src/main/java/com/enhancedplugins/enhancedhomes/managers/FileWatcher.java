@@ -0,0 +1,258 @@
+package com.enhancedplugins.enhancedhomes.managers;
+
+import com.enhancedplugins.enhancedhomes.EnhancedHomes;
+import com.enhancedplugins.enhancedhomes.models.Settings;
+import com.enhancedplugins.enhancedhomes.storage.HomesFolder;
+import org.bukkit.Bukkit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The FileWatcher class watches the plugin folder for files edited outside of the game, such as homes files changed
+ * by a web panel or a script, and applies only what changed: the edited player files, config.yml or lang.yml.
+ * Events are collected on a dedicated thread and debounced: they are applied once no event was seen for the debounce delay,
+ * or at the latest after ten times the delay, so a burst of writes is applied once.
+ * The plugin's own writes are ignored by comparing the modification time and size of each file with the ones
+ * recorded when the plugin last read or wrote it, so saving homes never triggers a reload.
+ * When player files are spread over sub-folders of the homes folder, every sub-folder is watched as well,
+ * including the ones created later, and so is the homes folder if it is created once the watcher runs;
+ * on Linux, each folder uses one inotify watch.
+ */
+public class FileWatcher {
+    private static final String CONFIG_FILE = "config.yml";
+    private static final String LANG_FILE = "lang.yml";
+    private static final int MAX_DEBOUNCE_FACTOR = 10;
+    private final EnhancedHomes plugin;
+    private final Path dataFolder;
+    private final Path homesDir;
+    private final long debounceMillis;
+    private final WatchService watchService;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private long configStamp;
+    private long langStamp;
+
+    /**
+     * Constructor for the FileWatcher class.
+     * It registers the plugin folder, the homes folder and its sub-folders, and starts the watcher thread.
+     *
+     * @param plugin The EnhancedHomes plugin.
+     * @param debounceMillis The time without events to wait for before applying changes, in milliseconds.
+     * @throws IOException If the folders could not be watched.
+     */
+    public FileWatcher(EnhancedHomes plugin, long debounceMillis) throws IOException {
+        this.plugin = plugin;
+        this.dataFolder = plugin.getDataFolder().toPath();
+        this.homesDir = dataFolder.resolve("homes");
+        this.debounceMillis = debounceMillis;
+        this.watchService = dataFolder.getFileSystem().newWatchService();
+        try {
+            register(dataFolder);
+            registerHomesFolders(homesDir, null);
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
+        this.configStamp = stamp(CONFIG_FILE);
+        this.langStamp = stamp(LANG_FILE);
+        this.thread = new Thread(this::run, "EnhancedHomes Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Retrieves the debounce delay the watcher was started with.
+     *
+     * @return The debounce delay, in milliseconds.
+     */
+    public long getDebounceMillis() { return debounceMillis; }
+
+    /**
+     * Stops the watcher thread. Changes seen but not applied yet are dropped.
+     */
+    public void shutdown() {
+        running = false;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not close the file watcher: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Collects the events of the watched folders and applies them once they stop coming.
+     */
+    private void run() {
+        Set<UUID> changedPlayers = new HashSet<>();
+        boolean homesOverflow = false;
+        boolean configChanged = false;
+        boolean langChanged = false;
+        long firstEventMillis = 0;
+        while (running) {
+            boolean pending = homesOverflow || configChanged || langChanged || !changedPlayers.isEmpty();
+            WatchKey key;
+            try {
+                if (!pending) {
+                    key = watchService.take();
+                    firstEventMillis = System.currentTimeMillis();
+                } else {
+                    long maxWait = firstEventMillis + debounceMillis * MAX_DEBOUNCE_FACTOR - System.currentTimeMillis();
+                    key = maxWait > 0 ? watchService.poll(Math.min(debounceMillis, maxWait), TimeUnit.MILLISECONDS) : null;
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            if (key == null) {
+                try {
+                    apply(changedPlayers, homesOverflow, configChanged, langChanged);
+                } catch (RuntimeException e) {
+                    plugin.getLogger().severe("Could not apply the changed files: " + e.getMessage());
+                }
+                changedPlayers = new HashSet<>();
+                homesOverflow = false;
+                configChanged = false;
+                langChanged = false;
+                continue;
+            }
+
+            Path watchedFolder = (Path) key.watchable();
+            boolean inHomesDir = watchedFolder.startsWith(homesDir);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // Events were lost, so everything the folder holds may have changed
+                    if (inHomesDir) {
+                        homesOverflow = true;
+                    } else {
+                        configChanged = true;
+                        langChanged = true;
+                    }
+                    continue;
+                }
+                String fileName = ((Path) event.context()).getFileName().toString();
+                if (inHomesDir) {
+                    UUID playerId = HomesFolder.parsePlayerId(fileName);
+                    if (playerId != null) {
+                        changedPlayers.add(playerId);
+                    } else if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        Path createdFolder = watchedFolder.resolve(fileName);
+                        if (Files.isDirectory(createdFolder) && createdFolder.getNameCount() - homesDir.getNameCount() <= Settings.MAX_SHARD_LEVELS) {
+                            try {
+                                // Files may have been written to the folder before it was registered
+                                registerHomesFolders(createdFolder, changedPlayers);
+                            } catch (IOException e) {
+                                plugin.getLogger().warning("Could not watch the homes folder " + createdFolder + ": " + e.getMessage());
+                            }
+                        }
+                    }
+                } else if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && homesDir.getFileName().toString().equals(fileName)) {
+                    if (Files.isDirectory(homesDir)) {
+                        try {
+                            // The homes folder was created, or deleted and created again, after the watcher started
+                            registerHomesFolders(homesDir, changedPlayers);
+                        } catch (IOException e) {
+                            plugin.getLogger().warning("Could not watch the homes folder " + homesDir + ": " + e.getMessage());
+                        }
+                    }
+                } else if (CONFIG_FILE.equals(fileName)) {
+                    configChanged = true;
+                } else if (LANG_FILE.equals(fileName)) {
+                    langChanged = true;
+                }
+            }
+            key.reset();
+        }
+    }
+
+    /**
+     * Applies the changes seen since the last time.
+     * Player files are read on this thread and swapped in on the main thread; the plugin's own writes are left out by the storage.
+     * config.yml is applied on the main thread, since the home limits and settings are read there.
+     * lang.yml is compiled on this thread and the new messages replace the old ones at once.
+     *
+     * @param changedPlayers The UUIDs of the players whose file changed.
+     * @param homesOverflow Whether events of the homes folder were lost.
+     * @param configChanged Whether config.yml may have changed.
+     * @param langChanged Whether lang.yml may have changed.
+     */
+    private void apply(Set<UUID> changedPlayers, boolean homesOverflow, boolean configChanged, boolean langChanged) {
+        HomeManager homeManager = plugin.getHomeManager();
+        if (homesOverflow) {
+            Bukkit.getScheduler().runTask(plugin, homeManager::reloadHomes);
+        } else if (!changedPlayers.isEmpty()) {
+            homeManager.reloadPlayers(changedPlayers);
+        }
+
+        long newConfigStamp = stamp(CONFIG_FILE);
+        if (configChanged && newConfigStamp != configStamp) {
+            configStamp = newConfigStamp;
+            plugin.getLogger().info("config.yml changed, applying it");
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                plugin.reloadPluginConfig();
+                plugin.getHomeManager().applySettings();
+            });
+        }
+        long newLangStamp = stamp(LANG_FILE);
+        if (langChanged && newLangStamp != langStamp) {
+            langStamp = newLangStamp;
+            plugin.getLogger().info("lang.yml changed, applying it");
+            plugin.reloadLangFile();
+        }
+    }
+
+    private void register(Path folder) throws IOException {
+        folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    /**
+     * Registers a folder of the homes folder and its sub-folders, down to the deepest layout of player files.
+     *
+     * @param folder The homes folder or one of its sub-folders.
+     * @param foundPlayers The set to add the players whose file is already in the folders to, or null to ignore them.
+     * @throws IOException If a folder could not be registered.
+     */
+    private void registerHomesFolders(Path folder, Set<UUID> foundPlayers) throws IOException {
+        int maxDepth = Settings.MAX_SHARD_LEVELS - (folder.getNameCount() - homesDir.getNameCount()) + 1;
+        Files.walkFileTree(folder, EnumSet.noneOf(FileVisitOption.class), maxDepth, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                register(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                UUID playerId = HomesFolder.parsePlayerId(file.getFileName().toString());
+                if (playerId != null && foundPlayers != null) {
+                    foundPlayers.add(playerId);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Combines the modification time and size of a file of the plugin folder, to tell whether it changed.
+     *
+     * @param fileName The name of the file.
+     * @return The stamp of the file, or 0 if it does not exist.
+     */
+    private long stamp(String fileName) {
+        File file = dataFolder.resolve(fileName).toFile();
+        return file.lastModified() * 31 + file.length();
+    }
+}
@@ -0,0 +1,123 @@
+package com.enhancedplugins.enhancedhomes.managers;
+
+import com.enhancedplugins.enhancedhomes.EnhancedHomes;
+import com.enhancedplugins.enhancedhomes.models.Settings;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.permissions.PermissionAttachmentInfo;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The HomeLimitResolver class resolves the maximum number of homes of a player from the configuration and their permissions.
+ * The limit is computed once and cached until the player joins, changes world, or the plugin is reloaded.
+ * Bukkit has no event for permission changes, so cached limits also expire after a short time.
+ */
+public class HomeLimitResolver implements Listener {
+    private static final String MAX_PERMISSION_PREFIX = "enhancedhomes.sethome.max.";
+    private static final long CACHE_DURATION_MILLIS = 60_000;
+    private final EnhancedHomes plugin;
+    private final Map<UUID, CachedLimit> cachedLimits = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for the HomeLimitResolver class.
+     *
+     * @param plugin The EnhancedHomes plugin.
+     */
+    public HomeLimitResolver(EnhancedHomes plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Retrieves the maximum number of homes of a player.
+     *
+     * @param player The player.
+     * @return The maximum number of homes.
+     */
+    public int getHomeLimit(Player player) {
+        long now = System.currentTimeMillis();
+        CachedLimit cachedLimit = cachedLimits.get(player.getUniqueId());
+        boolean hit = cachedLimit != null && cachedLimit.expiresAt >= now;
+        if (!hit) {
+            cachedLimit = new CachedLimit(computeHomeLimit(player), now + CACHE_DURATION_MILLIS);
+            cachedLimits.put(player.getUniqueId(), cachedLimit);
+        }
+        plugin.getMetrics().recordLimitLookup(hit);
+        return cachedLimit.limit;
+    }
+
+    /**
+     * Forgets the cached limit of a player, so it is computed again on the next check.
+     * Permission plugins can call this after changing a player's permissions.
+     *
+     * @param playerId The UUID of the player.
+     */
+    public void invalidate(UUID playerId) {
+        cachedLimits.remove(playerId);
+    }
+
+    /**
+     * Forgets every cached limit.
+     * This method is called when the plugin is reloaded.
+     */
+    public void invalidateAll() {
+        cachedLimits.clear();
+    }
+
+    /**
+     * Computes the maximum number of homes of a player.
+     * The highest enhancedhomes.sethome.max.N permission wins over the configured limit; malformed permissions are ignored.
+     *
+     * @param player The player.
+     * @return The maximum number of homes.
+     */
+    private int computeHomeLimit(Player player) {
+        if (player.hasPermission("enhancedhomes.sethome.unlimited")) {
+            return Settings.MAX_HOMES_LIMIT;
+        }
+        Settings settings = plugin.getSettings();
+        int maxHomes = settings.isHomesLimit() ? settings.getMaxHomes() : Settings.MAX_HOMES_LIMIT;
+
+        int permissionLimit = -1;
+        for (PermissionAttachmentInfo permission : player.getEffectivePermissions()) {
+            String node = permission.getPermission();
+            if (!permission.getValue() || !node.startsWith(MAX_PERMISSION_PREFIX)) {
+                continue;
+            }
+            try {
+                permissionLimit = Math.max(permissionLimit, Integer.parseInt(node.substring(MAX_PERMISSION_PREFIX.length())));
+            } catch (NumberFormatException e) {
+                // Malformed node such as enhancedhomes.sethome.max.* or enhancedhomes.sethome.max.ten
+            }
+        }
+        return permissionLimit >= 0 ? permissionLimit : maxHomes;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        invalidate(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        invalidate(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        invalidate(event.getPlayer().getUniqueId());
+    }
+
+    /**
+     * The CachedLimit record holds a resolved limit and when it expires.
+     */
+    private record CachedLimit(int limit, long expiresAt) {
+    }
+}
@@ -1,52 +1,142 @@
 package com.enhancedplugins.enhancedhomes.managers;
 
+import com.enhancedplugins.enhancedhomes.EnhancedHomes;
+import com.enhancedplugins.enhancedhomes.metrics.PluginMetrics;
 import com.enhancedplugins.enhancedhomes.models.Home;
-import org.bukkit.configuration.file.YamlConfiguration;
+import com.enhancedplugins.enhancedhomes.models.PlayerHomes;
+import com.enhancedplugins.enhancedhomes.models.Settings;
+import com.enhancedplugins.enhancedhomes.storage.HomeStorage;
+import com.enhancedplugins.enhancedhomes.storage.JournalHomeStorage;
+import com.enhancedplugins.enhancedhomes.storage.SaveFailedException;
+import com.enhancedplugins.enhancedhomes.storage.SqlHomeStorage;
+import com.enhancedplugins.enhancedhomes.storage.YamlHomeStorage;
+import com.enhancedplugins.enhancedhomes.sync.HomeSync;
+import com.enhancedplugins.enhancedhomes.transfer.HomeFormat;
+import com.enhancedplugins.enhancedhomes.transfer.HomeSource;
+import com.enhancedplugins.enhancedhomes.utils.MessageTemplate;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
 import org.bukkit.entity.Player;
-import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.UnaryOperator;
 
 /**
  * The HomeManager class manages the homes of players.
  * It provides methods to add, update, remove, and retrieve homes.
- * It also handles the loading and saving of homes to and from disk.
+ * Home names are case-insensitive, and each player's homes are indexed by name (see PlayerHomes).
+ * It also handles the loading and saving of homes through the configured HomeStorage.
+ * Changes are written behind: mutations only mark the player as dirty, and a background
+ * writer coalesces them into a single write per player. Players whose write fails stay dirty and are retried
+ * with an exponential backoff, and admins are alerted while writes keep failing.
+ * With lazy loading enabled, only the homes of online players are kept in memory; the homes
+ * of offline players are read on demand through a size-bounded LRU cache.
+ * With eager loading, every home is loaded in the background at startup,
+ * and callers wait for the load to be published before reading homes.
+ * In both modes, a spatial index of every home is filled in the background and kept up to date by every change.
+ * When several servers share the storage, each change is published through HomeSync and the other servers patch
+ * only the changed player in memory (see applyRemoteHomes).
+ * The HomeManager is thread-safe: the homes of each player are guarded by their PlayerHomes instance,
+ * loads of the same player are serialized by a striped lock, and the homes handed out are immutable snapshots.
  */
 public class HomeManager {
-    private final JavaPlugin plugin;
-    private final Map<UUID, List<Home>> homesMap = new HashMap<>();
+    private static final int LOADER_THREADS = 2;
+    private static final int LOAD_LOCK_STRIPES = 64;
+    private static final long FIRST_RETRY_DELAY_MILLIS = 1000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 5 * 60 * 1000;
+    private static final long ALERT_INTERVAL_MILLIS = 60 * 1000;
+    private static final int SHUTDOWN_SAVE_ATTEMPTS = 3;
+    private static final String ADMIN_PERMISSION = "enhancedhomes.admin";
+    private final EnhancedHomes plugin;
+    private final PluginMetrics metrics;
+    private final ExecutorService loaderExecutor = Executors.newFixedThreadPool(LOADER_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "EnhancedHomes Loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Map<UUID, PlayerHomes> homesMap = new ConcurrentHashMap<>();
+    private volatile CompletableFuture<Void> eagerLoad = CompletableFuture.completedFuture(null);
+    private volatile HomeSpatialIndex spatialIndex = new HomeSpatialIndex();
+    private volatile CompletableFuture<Void> spatialIndexLoad = CompletableFuture.completedFuture(null);
+    private final Map<UUID, CompletableFuture<PlayerHomes>> loadingHomes = new ConcurrentHashMap<>();
+    private final Map<UUID, BukkitTask> pendingUnloads = new ConcurrentHashMap<>();
+    private final Map<UUID, DirtyEntry> dirtyPlayers = new ConcurrentHashMap<>();
+    private final Map<UUID, PlayerHomes> savingHomes = new ConcurrentHashMap<>();
+    private final Object[] loadLocks = new Object[LOAD_LOCK_STRIPES];
+    private volatile HomeStorage storage;
+    private volatile Map<UUID, PlayerHomes> offlineCache;
+    private BukkitTask writerTask;
+    private volatile long flushIntervalMillis;
+    private volatile long maxDirtyAgeMillis;
+    private volatile boolean lazyLoading;
+    private volatile boolean fullSpatialIndex;
+    private volatile long unloadDelayTicks;
+    private volatile long closedStorageBytesRead;
+    private volatile long closedStorageBytesWritten;
+    private volatile StorageSettings storageSettings;
+    private int failedSaveStreak;
+    private long lastAlertMillis;
+    private CompletableFuture<PreparedReload> reloadPreparation = CompletableFuture.completedFuture(null);
+    private volatile CompletableFuture<Void> reload = CompletableFuture.completedFuture(null);
+    private volatile boolean closed;
+    private final Set<UUID> reloadingPlayers = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, Long> remoteChanges = new ConcurrentHashMap<>();
 
     /**
      * Constructor for the HomeManager class.
      *
-     * @param plugin The JavaPlugin instance.
+     * @param plugin The EnhancedHomes plugin.
      */
-    public HomeManager(JavaPlugin plugin) {
+    public HomeManager(EnhancedHomes plugin) {
         this.plugin = plugin;
+        this.metrics = plugin.getMetrics();
+        for (int i = 0; i < loadLocks.length; i++) {
+            loadLocks[i] = new Object();
+        }
+        Settings settings = plugin.getSettings();
+        loadSettings(settings);
+        this.storageSettings = StorageSettings.of(settings);
+        this.storage = createStorage(settings);
+        storage.startMaintenance();
         loadHomes();
+        startWriter();
     }
 
     /**
      * Retrieves a specific home of a player.
      *
      * @param player The player.
-     * @param homeName The name of the home.
+     * @param homeName The name of the home, ignoring case.
      * @return The home, or null if the home does not exist.
      */
     public Home getHome(Player player, String homeName) {
-        UUID playerId = player.getUniqueId();
-        List<Home> playerHomes = homesMap.get(playerId);
-        if (playerHomes == null) {
-            playerHomes = new ArrayList<>();
-            homesMap.put(playerId, playerHomes);
-            saveHomes(player);
-        }
-        return playerHomes.stream()
-                .filter(home -> home.getName().equals(homeName))
-                .findFirst()
-                .orElse(null);
+        return getHome(player.getUniqueId(), homeName);
+    }
+
+    /**
+     * Retrieves a specific home of a player, who does not need to be online.
+     * The homes of offline players are loaded from storage on demand and kept in the offline cache;
+     * the calling thread waits for the read, so commands use getHomeAsync instead.
+     *
+     * @param playerId The UUID of the player.
+     * @param homeName The name of the home, ignoring case.
+     * @return The home, or null if the home does not exist.
+     */
+    public Home getHome(UUID playerId, String homeName) {
+        PlayerHomes playerHomes = resolveHomes(playerId);
+        return playerHomes != null ? playerHomes.get(homeName) : null;
     }
 
     /**
@@ -56,105 +146,1460 @@ public class HomeManager {
      * @return A list of the player's homes.
      */
     public List<Home> getHomes(Player player) {
-        return homesMap.getOrDefault(player.getUniqueId(), Collections.emptyList());
+        return getHomes(player.getUniqueId());
+    }
+
+    /**
+     * Retrieves all homes of a player, who does not need to be online.
+     * The homes of offline players are served from the offline cache, or read on the calling thread; see getHomesAsync.
+     *
+     * @param playerId The UUID of the player.
+     * @return A list of the player's homes.
+     */
+    public List<Home> getHomes(UUID playerId) {
+        PlayerHomes playerHomes = resolveHomes(playerId);
+        return playerHomes != null ? playerHomes.list() : Collections.emptyList();
+    }
+
+    /**
+     * Retrieves a specific home of a player who may be offline, without reading the storage on the calling thread,
+     * for commands run on the main thread. See getHomesAsync.
+     *
+     * @param playerId The UUID of the player.
+     * @param homeName The name of the home, ignoring case.
+     * @return A future completed with the home, or null if the home does not exist.
+     */
+    public CompletableFuture<Home> getHomeAsync(UUID playerId, String homeName) {
+        return resolveHomesAsync(playerId).thenApply(playerHomes -> playerHomes != null ? playerHomes.get(homeName) : null);
+    }
+
+    /**
+     * Retrieves all homes of a player who may be offline, without reading the storage on the calling thread,
+     * for commands run on the main thread. Homes in memory complete the future at once; the homes of other players
+     * are read on a loader thread and kept in the offline cache, so acting on them right after does not read them again.
+     *
+     * @param playerId The UUID of the player.
+     * @return A future completed with a list of the player's homes, or exceptionally if they could not be read.
+     */
+    public CompletableFuture<List<Home>> getHomesAsync(UUID playerId) {
+        return resolveHomesAsync(playerId).thenApply(playerHomes -> playerHomes != null ? playerHomes.list() : Collections.emptyList());
+    }
+
+    /**
+     * Retrieves the names of a player's homes starting with a prefix, for tab completion.
+     * Only homes already in memory are used, so completing never reads from disk.
+     *
+     * @param playerId The UUID of the player.
+     * @param prefix The prefix typed so far, ignoring case.
+     * @return The matching home names, in alphabetical order.
+     */
+    public List<String> completeHomeNames(UUID playerId, String prefix) {
+        PlayerHomes playerHomes = homesMap.get(playerId);
+        if (playerHomes == null && lazyLoading) {
+            playerHomes = offlineCache.get(playerId);
+        }
+        return playerHomes != null ? playerHomes.complete(prefix) : Collections.emptyList();
     }
 
     /**
      * Adds a home for a player.
+     * If the player already has a home with the same name, it is replaced in place.
      *
      * @param player The player.
      * @param home The home to add.
      */
     public void addHome(Player player, Home home) {
-        homesMap.get(player.getUniqueId()).add(home);
-        saveHomes(player);
+        PlayerHomes playerHomes = getOrCreateHomes(player.getUniqueId());
+        playerHomes.put(home);
+        indexHomes(player.getUniqueId(), playerHomes);
+        markDirty(player.getUniqueId(), playerHomes);
     }
 
     /**
      * Updates a specific home of a player.
      *
      * @param player The player.
-     * @param homeName The name of the home to update.
+     * @param homeName The name of the home to update, ignoring case.
      * @param newWorldName The new world name of the home.
      * @param newX The new X coordinate of the home.
      * @param newY The new Y coordinate of the home.
      * @param newZ The new Z coordinate of the home.
      */
     public void updateHome(Player player, String homeName, String newWorldName, double newX, double newY, double newZ) {
-        List<Home> playerHomes = homesMap.get(player.getUniqueId());
-        for (Home home : playerHomes) {
-            if (home.getName().equals(homeName)) {
-                home.setWorldName(newWorldName);
-                home.setX(newX);
-                home.setY(newY);
-                home.setZ(newZ);
-                break;
-            }
+        PlayerHomes playerHomes = getOrCreateHomes(player.getUniqueId());
+        Home home = playerHomes.get(homeName);
+        if (home == null) {
+            return;
         }
-        saveHomes(player);
+        playerHomes.put(home.withLocation(newWorldName, newX, newY, newZ));
+        indexHomes(player.getUniqueId(), playerHomes);
+        markDirty(player.getUniqueId(), playerHomes);
     }
 
     /**
      * Removes a specific home of a player.
      *
      * @param player The player.
-     * @param homeName The name of the home to remove.
+     * @param homeName The name of the home to remove, ignoring case.
      */
     public void removeHome(Player player, String homeName) {
-        homesMap.get(player.getUniqueId()).removeIf(home -> home.getName().equals(homeName));
-        saveHomes(player);
+        removeHome(player.getUniqueId(), homeName);
+    }
+
+    /**
+     * Removes a specific home of a player, who does not need to be online.
+     *
+     * @param playerId The UUID of the player.
+     * @param homeName The name of the home to remove, ignoring case.
+     */
+    public void removeHome(UUID playerId, String homeName) {
+        PlayerHomes playerHomes = resolveHomes(playerId);
+        if (playerHomes != null && playerHomes.remove(homeName) != null) {
+            indexHomes(playerId, playerHomes);
+            markDirty(playerId, playerHomes);
+        }
+    }
+
+    /**
+     * Edits every home of a player at once, e.g. for a bulk admin job. The player does not need to be online.
+     * The change is written behind like any other, so the players of a bulk job are saved in batches.
+     *
+     * @param playerId The UUID of the player.
+     * @param edit Returns the home itself to keep it, another home with the same name to replace it, or null to delete it.
+     * @return The number of homes replaced or deleted.
+     */
+    public int editHomes(UUID playerId, UnaryOperator<Home> edit) {
+        PlayerHomes playerHomes = resolveHomes(playerId);
+        if (playerHomes == null) {
+            return 0;
+        }
+        int changed = playerHomes.replaceAll(edit);
+        if (changed > 0) {
+            indexHomes(playerId, playerHomes);
+            markDirty(playerId, playerHomes);
+        }
+        return changed;
+    }
+
+    /**
+     * Reads the homes of offline players into the offline cache on a loader thread, so editing them right after
+     * does not read the storage on the calling thread. With eager loading, every home is already in memory.
+     * Players whose homes cannot be read are skipped; the error is raised again when they are edited.
+     *
+     * @param playerIds The UUIDs of the players, fewer than the offline cache holds.
+     * @return A future completed once the homes are read.
+     */
+    public CompletableFuture<Void> prefetchHomes(Collection<UUID> playerIds) {
+        if (!lazyLoading) {
+            return eagerLoad;
+        }
+        List<UUID> prefetchedPlayers = List.copyOf(playerIds);
+        return CompletableFuture.runAsync(() -> {
+            for (UUID playerId : prefetchedPlayers) {
+                if (closed) {
+                    return;
+                }
+                try {
+                    // Not resolveHomes: waiting here for a load queued behind this task could stall every loader thread
+                    resolveOfflineHomes(playerId);
+                } catch (UncheckedIOException e) {
+                    // Reported by the edit
+                }
+            }
+        }, loaderExecutor);
+    }
+
+    /**
+     * Retrieves the home of a player nearest to their current position, in their current world.
+     *
+     * @param player The player.
+     * @return The nearest home, or null if the player has no home in their world.
+     */
+    public Home getNearestHome(Player player) {
+        Location location = player.getLocation();
+        String worldName = location.getWorld().getName();
+        Home nearestHome = null;
+        double nearestDistance = Double.MAX_VALUE;
+        for (Home home : getHomes(player)) {
+            if (!worldName.equals(home.getWorldName())) {
+                continue;
+            }
+            double dx = home.getX() - location.getX();
+            double dy = home.getY() - location.getY();
+            double dz = home.getZ() - location.getZ();
+            double distance = dx * dx + dy * dy + dz * dz;
+            if (distance < nearestDistance) {
+                nearestDistance = distance;
+                nearestHome = home;
+            }
+        }
+        return nearestHome;
+    }
+
+    /**
+     * Retrieves the number of players whose homes are in memory, online or in the offline cache.
+     *
+     * @return The number of players.
+     */
+    public int getPlayersInMemory() {
+        return homesMap.size() + (lazyLoading ? offlineCache.size() : 0);
+    }
+
+    /**
+     * Counts the homes in memory, online or in the offline cache.
+     * Every player in memory is visited, so this is meant for statistics, not for hot paths.
+     *
+     * @return The number of homes.
+     */
+    public int getHomesInMemory() {
+        int homeCount = 0;
+        for (PlayerHomes playerHomes : homesMap.values()) {
+            homeCount += playerHomes.size();
+        }
+        if (lazyLoading) {
+            Map<UUID, PlayerHomes> cache = offlineCache;
+            synchronized (cache) {
+                for (PlayerHomes playerHomes : cache.values()) {
+                    homeCount += playerHomes.size();
+                }
+            }
+        }
+        return homeCount;
+    }
+
+    /**
+     * Retrieves the number of bytes read from storage since the plugin was enabled, including previous storages.
+     *
+     * @return The number of bytes read, not counting storages that cannot tell.
+     */
+    public long getBytesRead() { return closedStorageBytesRead + storage.getBytesRead(); }
+
+    /**
+     * Retrieves the number of bytes written to storage since the plugin was enabled, including previous storages.
+     *
+     * @return The number of bytes written, not counting storages that cannot tell.
+     */
+    public long getBytesWritten() { return closedStorageBytesWritten + storage.getBytesWritten(); }
+
+    /**
+     * Retrieves the spatial index of the homes, for proximity and region queries.
+     * It holds every home, filled in the background after a (re)load, or only the homes of the players in memory;
+     * see isSpatialIndexLoaded and isSpatialIndexComplete.
+     *
+     * @return The spatial index.
+     */
+    public HomeSpatialIndex getSpatialIndex() { return spatialIndex; }
+
+    /**
+     * Checks whether the spatial index holds the homes of every player, rather than only the players in memory,
+     * so offline homes stay on disk with lazy loading unless index-all-homes is set.
+     *
+     * @return true if every home is indexed once the index is loaded, false if only the players in memory are.
+     */
+    public boolean isSpatialIndexComplete() { return fullSpatialIndex; }
+
+    /**
+     * Checks whether the spatial index holds every stored home yet.
+     *
+     * @return true if the background fill of the index is done, false otherwise.
+     */
+    public boolean isSpatialIndexLoaded() { return spatialIndexLoad.isDone(); }
+
+    /**
+     * Starts loading the homes of a player in the background and keeps them in memory until the player quits.
+     * If the homes are already loaded or loading, the existing result is returned.
+     *
+     * @param playerId The UUID of the player.
+     * @return A future completed with the player's homes.
+     */
+    public CompletableFuture<PlayerHomes> loadPlayer(UUID playerId) {
+        BukkitTask pendingUnload = pendingUnloads.remove(playerId);
+        if (pendingUnload != null) {
+            pendingUnload.cancel();
+        }
+        if (!lazyLoading) {
+            return eagerLoad.thenApply(ignored -> homesMap.get(playerId));
+        }
+        PlayerHomes playerHomes = homesMap.get(playerId);
+        if (playerHomes != null) {
+            return CompletableFuture.completedFuture(playerHomes);
+        }
+
+        CompletableFuture<PlayerHomes> future = new CompletableFuture<>();
+        CompletableFuture<PlayerHomes> existing = loadingHomes.putIfAbsent(playerId, future);
+        if (existing != null) {
+            return existing;
+        }
+        // Not the Bukkit async scheduler: it only dispatches on the main thread heartbeat,
+        // so a command joining this load on the main thread could never see it start
+        loaderExecutor.execute(() -> {
+            try {
+                PlayerHomes loadedHomes;
+                synchronized (loadLock(playerId)) {
+                    // Read outside of the map, so the storage is never read while holding a bin of homesMap
+                    loadedHomes = homesMap.get(playerId);
+                    if (loadedHomes == null) {
+                        PlayerHomes readHomes = readOrCachedHomes(playerId);
+                        loadedHomes = homesMap.putIfAbsent(playerId, readHomes);
+                        if (loadedHomes == null) {
+                            loadedHomes = readHomes;
+                        }
+                    }
+                    if (!fullSpatialIndex) {
+                        spatialIndex.update(playerId, loadedHomes);
+                    }
+                }
+                future.complete(loadedHomes);
+            } catch (Throwable e) {
+                plugin.getLogger().severe("Could not load homes for player " + playerId + ": " + e.getMessage());
+                future.completeExceptionally(e);
+            } finally {
+                loadingHomes.remove(playerId, future);
+            }
+        });
+        return future;
     }
 
     /**
-     * Loads all homes from disk.
+     * Schedules the homes of a player to be evicted from memory after the unload delay.
+     * The eviction is cancelled if the player comes back before the delay expires.
+     *
+     * @param playerId The UUID of the player.
+     */
+    public void scheduleUnload(UUID playerId) {
+        if (!lazyLoading) {
+            return;
+        }
+        BukkitTask task = Bukkit.getScheduler().runTaskLater(plugin, () -> {
+            pendingUnloads.remove(playerId);
+            if (Bukkit.getPlayer(playerId) != null) {
+                return;
+            }
+            synchronized (loadLock(playerId)) {
+                PlayerHomes playerHomes = homesMap.remove(playerId);
+                if (playerHomes != null) {
+                    // Keep the evicted homes around as offline homes, they are still the freshest copy
+                    offlineCache.put(playerId, playerHomes);
+                    if (!fullSpatialIndex) {
+                        spatialIndex.remove(playerId);
+                    }
+                }
+            }
+        }, unloadDelayTicks);
+        BukkitTask previous = pendingUnloads.put(playerId, task);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    /**
+     * Resolves the homes of a player from memory, from an in-flight load, or from the offline cache.
+     * With eager loading, every stored home is already in memory.
+     *
+     * @param playerId The UUID of the player.
+     * @return The player's homes, or null if eager loading is used and the player has no homes.
+     * @throws UncheckedIOException If the homes could not be loaded.
+     */
+    private PlayerHomes resolveHomes(UUID playerId) {
+        if (!lazyLoading) {
+            try {
+                eagerLoad.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof UncheckedIOException loadError ? loadError : e;
+            }
+            metrics.recordHomeLookup(true);
+            return homesMap.get(playerId);
+        }
+        PlayerHomes playerHomes = homesMap.get(playerId);
+        if (playerHomes != null) {
+            metrics.recordHomeLookup(true);
+            return playerHomes;
+        }
+        CompletableFuture<PlayerHomes> loading = loadingHomes.get(playerId);
+        if (loading != null) {
+            metrics.recordHomeLookup(false);
+            return loading.join();
+        }
+        return resolveOfflineHomes(playerId);
+    }
+
+    /**
+     * Resolves the homes of a player without blocking the calling thread: from memory or an in-flight load,
+     * or else from the offline cache or the storage on a loader thread.
+     *
+     * @param playerId The UUID of the player.
+     * @return A future completed with the player's homes, or null if eager loading is used and the player has no homes.
+     */
+    private CompletableFuture<PlayerHomes> resolveHomesAsync(UUID playerId) {
+        if (!lazyLoading) {
+            return eagerLoad.thenApply(ignored -> {
+                metrics.recordHomeLookup(true);
+                return homesMap.get(playerId);
+            });
+        }
+        PlayerHomes playerHomes = homesMap.get(playerId);
+        if (playerHomes == null) {
+            playerHomes = offlineCache.get(playerId);
+        }
+        if (playerHomes != null) {
+            metrics.recordHomeLookup(true);
+            return CompletableFuture.completedFuture(playerHomes);
+        }
+        CompletableFuture<PlayerHomes> loading = loadingHomes.get(playerId);
+        if (loading != null) {
+            metrics.recordHomeLookup(false);
+            return loading;
+        }
+        return CompletableFuture.supplyAsync(() -> resolveOfflineHomes(playerId), loaderExecutor);
+    }
+
+    /**
+     * Resolves the homes of a player who is not in memory from the offline cache, or reads them into it.
+     * Loads of the player hold the same lock, so the homes are read once however they are requested.
+     *
+     * @param playerId The UUID of the player.
+     * @return The player's homes.
+     * @throws UncheckedIOException If the homes could not be loaded.
+     */
+    private PlayerHomes resolveOfflineHomes(UUID playerId) {
+        PlayerHomes playerHomes;
+        synchronized (loadLock(playerId)) {
+            playerHomes = homesMap.get(playerId);
+            if (playerHomes != null) {
+                metrics.recordHomeLookup(true);
+                return playerHomes;
+            }
+            playerHomes = offlineCache.get(playerId);
+            metrics.recordHomeLookup(playerHomes != null);
+            if (playerHomes == null) {
+                playerHomes = readOrCachedHomes(playerId);
+                offlineCache.put(playerId, playerHomes);
+            }
+        }
+        return playerHomes;
+    }
+
+    /**
+     * Resolves the homes of a player, creating them if the player has none yet.
+     *
+     * @param playerId The UUID of the player.
+     * @return The player's homes.
+     */
+    private PlayerHomes getOrCreateHomes(UUID playerId) {
+        PlayerHomes playerHomes = resolveHomes(playerId);
+        if (playerHomes == null) {
+            playerHomes = homesMap.computeIfAbsent(playerId, id -> new PlayerHomes(Collections.emptyList()));
+        }
+        return playerHomes;
+    }
+
+    /**
+     * Updates the homes of a player in the spatial index. When only the players in memory are indexed,
+     * the homes of other players, e.g. offline players edited by an admin, are left out.
+     *
+     * @param playerId The UUID of the player.
+     * @param playerHomes The player's homes.
+     */
+    private void indexHomes(UUID playerId, PlayerHomes playerHomes) {
+        if (fullSpatialIndex) {
+            spatialIndex.update(playerId, playerHomes);
+            return;
+        }
+        // Under the load lock, so an eviction cannot leave the homes of an unloaded player in the index
+        synchronized (loadLock(playerId)) {
+            if (homesMap.get(playerId) == playerHomes) {
+                spatialIndex.update(playerId, playerHomes);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the lock serializing the loads and evictions of a player.
+     * Locks are striped, so unrelated players rarely wait for each other and the number of locks stays bounded.
+     *
+     * @param playerId The UUID of the player.
+     * @return The lock.
+     */
+    private Object loadLock(UUID playerId) {
+        return loadLocks[(playerId.hashCode() & Integer.MAX_VALUE) % LOAD_LOCK_STRIPES];
+    }
+
+    /**
+     * Reads the homes of a player, preferring changes that are still waiting to be written or being written.
+     * The caller must hold the load lock of the player.
+     *
+     * @param playerId The UUID of the player.
+     * @return The player's homes.
+     */
+    private PlayerHomes readOrCachedHomes(UUID playerId) {
+        DirtyEntry dirty = dirtyPlayers.get(playerId);
+        if (dirty != null) {
+            return dirty.homes;
+        }
+        // Until the write completes, the storage still holds the previous homes
+        PlayerHomes savedHomes = savingHomes.get(playerId);
+        if (savedHomes != null) {
+            return savedHomes;
+        }
+        PlayerHomes cachedHomes = offlineCache.remove(playerId);
+        if (cachedHomes != null) {
+            return cachedHomes;
+        }
+        long start = System.nanoTime();
+        try {
+            return wrapStoredHomes(playerId, storage.loadHomes(playerId));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load homes for player " + playerId, e);
+        } finally {
+            metrics.recordPlayerLoad(start);
+        }
+    }
+
+    /**
+     * Wraps the stored homes of a player, keeping homes whose names only differ by case under a new name, see PlayerHomes.
+     * The new names are written with the next save of the player.
+     *
+     * @param playerId The UUID of the player.
+     * @param homes The stored homes.
+     * @return The player's homes.
+     */
+    private PlayerHomes wrapStoredHomes(UUID playerId, Collection<Home> homes) {
+        return new PlayerHomes(homes, (home, renamedHome) -> plugin.getLogger().warning("Player " + playerId + " has several homes named "
+                + home.getName() + " ignoring case, keeping this one as " + renamedHome.getName()));
+    }
+
+    /**
+     * Loads the homes settings from the configuration.
+     * The homes of the previous offline cache, if any, are kept in the new one as far as its size allows.
+     *
+     * @param settings The settings.
+     */
+    private void loadSettings(Settings settings) {
+        this.lazyLoading = settings.isLazyLoading();
+        this.fullSpatialIndex = indexesAllHomes(settings);
+        this.unloadDelayTicks = settings.getUnloadDelay() * 20L;
+        int offlineCacheSize = settings.getOfflineCacheSize();
+        Map<UUID, PlayerHomes> cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, PlayerHomes> eldest) {
+                return size() > offlineCacheSize;
+            }
+        });
+        Map<UUID, PlayerHomes> previousCache = offlineCache;
+        if (previousCache != null) {
+            synchronized (previousCache) {
+                cache.putAll(previousCache);
+            }
+        }
+        this.offlineCache = cache;
+    }
+
+    /**
+     * Creates the storage selected by the storage setting.
+     * The YAML storage is used if the selected storage cannot be opened; unknown values are rejected when the settings are loaded.
+     *
+     * @param settings The settings.
+     * @return The storage.
+     */
+    private HomeStorage createStorage(Settings settings) {
+        String storageType = settings.getStorage();
+        if ("journal".equals(storageType)) {
+            try {
+                return new JournalHomeStorage(plugin, settings.getJournalCompactionInterval());
+            } catch (IOException e) {
+                plugin.getLogger().severe("Could not open the homes journal, falling back to YAML storage: " + e.getMessage());
+            }
+        } else if ("sqlite".equals(storageType)) {
+            try {
+                return new SqlHomeStorage(plugin);
+            } catch (IOException e) {
+                plugin.getLogger().severe("Could not open the homes database, falling back to YAML storage: " + e.getMessage());
+            }
+        }
+        return new YamlHomeStorage(plugin, settings.getHomesShardLevels());
+    }
+
+    /**
+     * Closes a storage once every pending change has been written.
+     *
+     * @param closedStorage The storage to close.
+     */
+    private void closeStorage(HomeStorage closedStorage) {
+        closedStorageBytesRead += closedStorage.getBytesRead();
+        closedStorageBytesWritten += closedStorage.getBytesWritten();
+        try {
+            closedStorage.close();
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not close the homes storage: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads homes from the storage.
      * This method is called when the HomeManager is instantiated.
+     * With eager loading, the homes of every player are loaded in the background and published at once when complete;
+     * with lazy loading, only the homes of online players are loaded.
+     * If the homes cannot be loaded eagerly, nothing is published and the plugin is disabled, so the stored homes
+     * are never replaced by the empty homes of a failed load.
      */
     private void loadHomes() {
-        File homesDir = new File(plugin.getDataFolder(), "homes");
-        if (!homesDir.exists()) {
-            homesDir.mkdirs();
-        }
-        for (File file : Objects.requireNonNull(homesDir.listFiles())) {
-            UUID playerId = UUID.fromString(file.getName().replace(".yml", ""));
-            YamlConfiguration yamlFile = YamlConfiguration.loadConfiguration(file);
-            List<Home> homes = new ArrayList<>();
-            if(yamlFile.getConfigurationSection("homes") != null) {
-                yamlFile.getConfigurationSection("homes").getKeys(false).forEach(homeName -> {
-                    String world = yamlFile.getString("homes." + homeName + ".world");
-                    double x = yamlFile.getDouble("homes." + homeName + ".x");
-                    double y = yamlFile.getDouble("homes." + homeName + ".y");
-                    double z = yamlFile.getDouble("homes." + homeName + ".z");
-                    homes.add(new Home(homeName, world, x, y, z));
+        if (lazyLoading) {
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                loadPlayer(player.getUniqueId());
+            }
+            if (fullSpatialIndex) {
+                fillSpatialIndex(new HomeSpatialIndex());
+            }
+            return;
+        }
+        this.eagerLoad = CompletableFuture.runAsync(() -> {
+            Map<UUID, PlayerHomes> loadedHomes = new ConcurrentHashMap<>();
+            HomeSpatialIndex index = new HomeSpatialIndex();
+            long start = System.nanoTime();
+            try {
+                storage.loadAllHomes().forEach((playerId, homes) -> {
+                    PlayerHomes playerHomes = wrapStoredHomes(playerId, homes);
+                    loadedHomes.put(playerId, playerHomes);
+                    index.addIfAbsent(playerId, playerHomes.list());
                 });
-                homesMap.put(playerId, homes);
+            } catch (IOException e) {
+                plugin.getLogger().severe("Could not load homes, disabling the plugin to keep the stored homes intact: " + e.getMessage());
+                Bukkit.getScheduler().runTask(plugin, () -> Bukkit.getPluginManager().disablePlugin(plugin));
+                throw new UncheckedIOException("Could not load homes", e);
+            } finally {
+                metrics.recordFullLoad(start);
+            }
+            this.spatialIndex = index;
+            this.homesMap = loadedHomes;
+        }, loaderExecutor);
+        this.spatialIndexLoad = eagerLoad;
+    }
+
+    /**
+     * Publishes a spatial index and fills it with every stored home in the background.
+     * The index is published right away so changes made while it fills are not lost;
+     * players already in the index are not overwritten by the fill.
+     *
+     * @param index The new spatial index.
+     */
+    private void fillSpatialIndex(HomeSpatialIndex index) {
+        HomeStorage indexedStorage = storage;
+        this.spatialIndex = index;
+        this.spatialIndexLoad = CompletableFuture.runAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                indexedStorage.loadAllHomes().forEach(index::addIfAbsent);
+            } catch (IOException e) {
+                plugin.getLogger().severe("Could not index homes: " + e.getMessage());
+            } finally {
+                metrics.recordFullLoad(start);
+            }
+        }, loaderExecutor);
+    }
+
+    /**
+     * Marks the homes of a player as changed, so the background writer persists them, and publishes them to the other servers.
+     * Repeated changes before the next write are coalesced into a single write.
+     *
+     * @param playerId The UUID of the player.
+     * @param homes The player's homes.
+     */
+    private void markDirty(UUID playerId, PlayerHomes homes) {
+        long now = System.currentTimeMillis();
+        dirtyPlayers.compute(playerId, (id, entry) -> {
+            if (entry == null || entry.homes != homes) {
+                DirtyEntry dirty = new DirtyEntry(homes, now);
+                if (entry != null) {
+                    // Keep backing off if the previous homes could not be written
+                    dirty.failedAttempts = entry.failedAttempts;
+                    dirty.nextAttempt = entry.nextAttempt;
+                }
+                return dirty;
             }
+            entry.lastChange = now;
+            return entry;
+        });
+        HomeSync homeSync = plugin.getHomeSync();
+        if (homeSync != null) {
+            homeSync.publishHomes(playerId, homes.list(), now);
+        }
+    }
+
+    /**
+     * Starts the background writer using the save-interval and max-dirty-age settings.
+     */
+    private void startWriter() {
+        Settings settings = plugin.getSettings();
+        this.flushIntervalMillis = settings.getSaveInterval() * 1000L;
+        this.maxDirtyAgeMillis = settings.getMaxDirtyAge() * 1000L;
+        long periodTicks = flushIntervalMillis / 50;
+        this.writerTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> flush(false), periodTicks, periodTicks);
+    }
+
+    /**
+     * Writes the homes of dirty players to disk.
+     * A player is written once their homes have not changed for a whole flush interval,
+     * or once their oldest unsaved change is older than the maximum dirty age.
+     * Players whose last write failed wait for their retry delay first, and players being reloaded wait for the reload.
+     *
+     * @param force Whether to write every dirty player regardless of age.
+     */
+    private synchronized void flush(boolean force) {
+        long now = System.currentTimeMillis();
+        Map<UUID, DirtyEntry> batch = new LinkedHashMap<>();
+        for (Map.Entry<UUID, DirtyEntry> entry : dirtyPlayers.entrySet()) {
+            DirtyEntry dirty = entry.getValue();
+            boolean quiet = now - dirty.lastChange >= flushIntervalMillis;
+            boolean tooOld = now - dirty.firstChange >= maxDirtyAgeMillis;
+            boolean due = force || ((quiet || tooOld) && now >= dirty.nextAttempt && !reloadingPlayers.contains(entry.getKey()));
+            if (due) {
+                // Published before the entry leaves the dirty map, so a load never falls through to the storage mid-write
+                savingHomes.put(entry.getKey(), dirty.homes);
+                if (dirtyPlayers.remove(entry.getKey(), dirty)) {
+                    batch.put(entry.getKey(), dirty);
+                } else {
+                    savingHomes.remove(entry.getKey(), dirty.homes);
+                }
+            }
+        }
+        try {
+            saveHomes(batch);
+        } finally {
+            batch.forEach((playerId, dirty) -> savingHomes.remove(playerId, dirty.homes));
+        }
+        remoteChanges.values().removeIf(changeTime -> now - changeTime >= remoteChangeWindow());
+    }
+
+    /**
+     * Stops the background writer and the loader, writes every pending change and closes the storage.
+     * Failed writes are retried a few times before giving up, since the changes are lost once the plugin is disabled.
+     * This method is called when the plugin is disabled.
+     */
+    public void shutdown() {
+        closed = true;
+        PreparedReload preparedReload = reloadPreparation.handle((prepared, error) -> prepared).join();
+        if (preparedReload != null && preparedReload.storage != null && preparedReload.storage != storage && !reload.isDone()) {
+            // The reload was prepared but will never be applied
+            closeStorage(preparedReload.storage);
+        }
+        stopWriter();
+        for (int attempt = 1; attempt < SHUTDOWN_SAVE_ATTEMPTS && !dirtyPlayers.isEmpty(); attempt++) {
+            try {
+                Thread.sleep(retryDelay(attempt));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            flush(true);
+        }
+        if (!dirtyPlayers.isEmpty()) {
+            plugin.getLogger().severe("Giving up saving the homes of " + dirtyPlayers.size()
+                    + " players, their changes since the last save are lost: " + dirtyPlayers.keySet());
+        }
+        closeStorage(storage);
+        loaderExecutor.shutdown();
+    }
+
+    /**
+     * Stops the background writer and writes every pending change to disk.
+     */
+    private void stopWriter() {
+        if (writerTask != null) {
+            writerTask.cancel();
+            writerTask = null;
         }
+        flush(true);
     }
 
     /**
-     * Saves all homes of a player to disk.
+     * Saves all homes of a batch of players to the storage.
+     * Players who could not be saved are marked dirty again and retried after a delay that doubles with each failure.
+     * The caller must hold the writer lock.
      *
-     * @param player The player whose homes to save.
+     * @param batch The dirty entry of each player to save.
      */
-    private void saveHomes(Player player) {
-        File homesFile = new File(plugin.getDataFolder(), "homes/" + player.getUniqueId() + ".yml");
-        YamlConfiguration yamlFile = new YamlConfiguration();
-        for (Home home : homesMap.get(player.getUniqueId())) {
-            String path = "homes." + home.getName();
-            yamlFile.set(path + ".world", home.getWorldName());
-            yamlFile.set(path + ".x", home.getX());
-            yamlFile.set(path + ".y", home.getY());
-            yamlFile.set(path + ".z", home.getZ());
+    private void saveHomes(Map<UUID, DirtyEntry> batch) {
+        if (batch.isEmpty()) {
+            return;
         }
+        Map<UUID, List<Home>> homesByPlayer = new LinkedHashMap<>();
+        batch.forEach((playerId, dirty) -> homesByPlayer.put(playerId, dirty.homes.list()));
+        long start = System.nanoTime();
         try {
-            yamlFile.save(homesFile);
+            storage.saveAllHomes(homesByPlayer);
+            metrics.recordSave(start, true);
+            onSaveSucceeded();
         } catch (IOException e) {
-            plugin.getLogger().severe("Could not save homes for player " + player.getName());
+            metrics.recordSave(start, false);
+            Map<UUID, DirtyEntry> failed = batch;
+            if (e instanceof SaveFailedException saveFailed) {
+                failed = new LinkedHashMap<>(batch);
+                failed.keySet().retainAll(saveFailed.getFailedPlayers());
+            }
+            onSaveFailed(failed, e);
         }
     }
 
-    public void reloadHomes() {
-        homesMap.clear();
-        loadHomes();
+    /**
+     * Marks the players of a failed write dirty again and schedules their retry.
+     * A player who changed their homes since the batch was taken keeps their newer entry, with the retry delay applied to it.
+     *
+     * @param failed The dirty entry of each player who could not be saved.
+     * @param error The error of the write.
+     */
+    private void onSaveFailed(Map<UUID, DirtyEntry> failed, IOException error) {
+        long now = System.currentTimeMillis();
+        int attempts = 0;
+        for (Map.Entry<UUID, DirtyEntry> entry : failed.entrySet()) {
+            DirtyEntry failedEntry = entry.getValue();
+            int failedAttempts = failedEntry.failedAttempts + 1;
+            long nextAttempt = now + retryDelay(failedAttempts);
+            attempts = Math.max(attempts, failedAttempts);
+            dirtyPlayers.compute(entry.getKey(), (id, current) -> {
+                DirtyEntry retry = current != null ? current : failedEntry;
+                retry.failedAttempts = failedAttempts;
+                retry.nextAttempt = nextAttempt;
+                return retry;
+            });
+        }
+        failedSaveStreak++;
+        long retrySeconds = (retryDelay(attempts) + 999) / 1000;
+        plugin.getLogger().severe("Could not save homes for " + failed.size() + " players (attempt " + attempts
+                + "), retrying in " + retrySeconds + " s: " + error.getMessage());
+        if (failedSaveStreak == 1 || now - lastAlertMillis >= ALERT_INTERVAL_MILLIS) {
+            lastAlertMillis = now;
+            alertAdmins(plugin.getMessage("alerts.save-failed"), "count", String.valueOf(failed.size()),
+                    "error", String.valueOf(error.getMessage()), "retry", String.valueOf(retrySeconds));
+        }
+    }
+
+    /**
+     * Tells admins that homes are saved again after failed writes.
+     */
+    private void onSaveSucceeded() {
+        if (failedSaveStreak == 0 || dirtyPlayers.values().stream().anyMatch(dirty -> dirty.failedAttempts > 0)) {
+            return;
+        }
+        plugin.getLogger().info("Homes are saved again after " + failedSaveStreak + " failed writes");
+        alertAdmins(plugin.getMessage("alerts.save-recovered"), "failures", String.valueOf(failedSaveStreak));
+        failedSaveStreak = 0;
+    }
+
+    /**
+     * Sends a message to every online player with the admin permission, on the main thread.
+     * Nothing is sent while the plugin is being disabled.
+     *
+     * @param message The message.
+     * @param placeholders The placeholders of the message.
+     */
+    private void alertAdmins(MessageTemplate message, String... placeholders) {
+        if (!plugin.isEnabled()) {
+            return;
+        }
+        String text = message.renderPrefixed(plugin.getPrefix(), placeholders);
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                if (player.hasPermission(ADMIN_PERMISSION)) {
+                    player.sendMessage(text);
+                }
+            }
+        });
+    }
+
+    /**
+     * Retrieves the number of players whose last write failed and who are waiting for a retry.
+     *
+     * @return The number of players.
+     */
+    public int getPlayersAwaitingRetry() {
+        int players = 0;
+        for (DirtyEntry dirty : dirtyPlayers.values()) {
+            if (dirty.failedAttempts > 0) {
+                players++;
+            }
+        }
+        return players;
+    }
+
+    /**
+     * Computes the delay before retrying a write that failed a number of times in a row.
+     *
+     * @param failedAttempts The number of failed attempts, at least 1.
+     * @return The delay, in milliseconds.
+     */
+    private static long retryDelay(int failedAttempts) {
+        return Math.min(MAX_RETRY_DELAY_MILLIS, FIRST_RETRY_DELAY_MILLIS << Math.min(failedAttempts - 1, 20));
+    }
+
+    /**
+     * Reloads the homes settings and the homes in the background, then swaps the new state in on the main thread at once.
+     * Until then, commands keep using the current homes, so the server never waits on the reload.
+     * If the storage and the loading mode did not change, only the players whose stored homes changed outside of the plugin
+     * are read again, when the storage can tell which (see HomeStorage#loadChangedHomes).
+     * Otherwise, pending changes are written, the new storage is opened and read in full, and the old storage is closed;
+     * if the storage settings did not change, the current storage is read again instead of being opened a second time.
+     * Players with changes still waiting to be written keep their homes in memory, so the reload never overwrites them.
+     * This method must be called on the main thread; a reload requested while another one runs joins it.
+     *
+     * @return A future completed on the main thread once the new homes are in use.
+     */
+    public CompletableFuture<Void> reloadHomes() {
+        if (!reload.isDone()) {
+            return reload;
+        }
+        Settings settings = plugin.getSettings();
+        boolean fullReload = requiresFullReload(settings);
+        if (writerTask != null) {
+            // Changes made during the reload stay dirty, so the reload cannot overwrite them, and are written once it is applied
+            writerTask.cancel();
+            writerTask = null;
+        }
+        this.reloadPreparation = CompletableFuture.allOf(eagerLoad, spatialIndexLoad).thenApplyAsync(ignored -> {
+            try {
+                Map<UUID, List<Home>> changedHomes = null;
+                if (!fullReload) {
+                    // Holding the writer lock waits for a write in progress, whose players would no longer look dirty
+                    synchronized (this) {
+                        changedHomes = storage.loadChangedHomes();
+                    }
+                }
+                return changedHomes != null ? new PreparedReload(changedHomes) : prepareFullReload(settings);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, loaderExecutor);
+        Executor mainThread = runnable -> Bukkit.getScheduler().runTask(plugin, runnable);
+        this.reload = reloadPreparation.handleAsync((prepared, error) -> {
+            if (closed) {
+                return null;
+            }
+            if (error != null) {
+                plugin.getLogger().severe("Could not reload homes, keeping the current homes: " + error.getMessage());
+                if (writerTask == null) {
+                    startWriter();
+                }
+                throw new CompletionException(error);
+            }
+            if (prepared.changedHomes != null) {
+                applyIncrementalReload(prepared.changedHomes, settings);
+            } else {
+                applyFullReload(prepared, settings);
+            }
+            return null;
+        }, mainThread);
+        return reload;
+    }
+
+    /**
+     * Writes every pending change to the current storage, then opens the new storage and reads the homes to keep in memory:
+     * every home with eager loading, the homes of the players in memory with lazy loading.
+     * If the storage settings did not change, the homes are read again from the current storage instead,
+     * so two storages never use the same files at once.
+     * This method runs on a loader thread and does not change the state of the HomeManager.
+     *
+     * @param settings The new settings.
+     * @return The prepared reload.
+     * @throws IOException If the homes could not be read; the new storage is closed then.
+     */
+    private PreparedReload prepareFullReload(Settings settings) throws IOException {
+        flush(true);
+        long start = System.nanoTime();
+        boolean reuseStorage = StorageSettings.of(settings).equals(storageSettings);
+        HomeStorage newStorage = reuseStorage ? storage : createStorage(settings);
+        try {
+            Map<UUID, PlayerHomes> loadedHomes = new ConcurrentHashMap<>();
+            HomeSpatialIndex index = null;
+            if (settings.isLazyLoading()) {
+                for (UUID playerId : homesMap.keySet()) {
+                    loadedHomes.put(playerId, wrapStoredHomes(playerId, newStorage.loadHomes(playerId)));
+                }
+            } else {
+                HomeSpatialIndex loadedIndex = new HomeSpatialIndex();
+                newStorage.loadAllHomes().forEach((playerId, homes) -> {
+                    PlayerHomes playerHomes = wrapStoredHomes(playerId, homes);
+                    loadedHomes.put(playerId, playerHomes);
+                    loadedIndex.addIfAbsent(playerId, playerHomes.list());
+                });
+                index = loadedIndex;
+                metrics.recordFullLoad(start);
+            }
+            return new PreparedReload(newStorage, loadedHomes, index);
+        } catch (IOException | RuntimeException e) {
+            if (!reuseStorage) {
+                closeStorage(newStorage);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Swaps in the homes of the players changed outside of the plugin and applies the new settings.
+     * This method runs on the main thread, so no command sees a half-applied reload.
+     *
+     * @param changedHomes The stored homes of each changed player, empty for deleted players.
+     * @param settings The new settings.
+     */
+    private void applyIncrementalReload(Map<UUID, List<Home>> changedHomes, Settings settings) {
+        loadSettings(settings);
+        applyStorageSettings(settings);
+        startWriter();
+        applyChangedHomes(changedHomes, true);
+    }
+
+    /**
+     * Reads again the homes of players whose stored homes may have changed outside of the plugin, e.g. files edited by hand,
+     * and swaps them in on the main thread. Players whose stored homes did not change, such as players just saved by the plugin,
+     * are left out without being read, and players with unsaved changes keep their homes in memory.
+     * The homes are read on the calling thread, which must not be the main thread. If a reload is running,
+     * the players are read again once it is done.
+     *
+     * @param playerIds The UUIDs of the players.
+     */
+    public void reloadPlayers(Collection<UUID> playerIds) {
+        if (!reload.isDone()) {
+            reload.whenCompleteAsync((ignored, error) -> reloadPlayers(playerIds), loaderExecutor);
+            return;
+        }
+        Map<UUID, List<Home>> changedHomes;
+        // Holding the writer lock waits for a write in progress, so the file stamps of our own writes are up to date
+        synchronized (this) {
+            try {
+                changedHomes = storage.loadChangedHomes(playerIds);
+            } catch (IOException e) {
+                plugin.getLogger().severe("Could not reload the homes of " + playerIds.size() + " players: " + e.getMessage());
+                return;
+            }
+            if (changedHomes == null || changedHomes.isEmpty()) {
+                return;
+            }
+            // Until they are applied, a write of these players would make the homes just read look newer than memory
+            reloadingPlayers.addAll(changedHomes.keySet());
+        }
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            try {
+                if (!closed) {
+                    applyChangedHomes(changedHomes, true);
+                }
+            } finally {
+                reloadingPlayers.removeAll(changedHomes.keySet());
+            }
+        });
+    }
+
+    /**
+     * Applies the homes settings after config.yml changed.
+     * The homes are only read again if the storage or the loading mode changed, see reloadHomes.
+     * This method must be called on the main thread.
+     *
+     * @return A future completed on the main thread once the settings are applied.
+     */
+    public CompletableFuture<Void> applySettings() {
+        if (!reload.isDone()) {
+            return reload.handle((ignored, error) -> null).thenCompose(ignored -> applySettings());
+        }
+        Settings settings = plugin.getSettings();
+        if (requiresFullReload(settings)) {
+            return reloadHomes();
+        }
+        loadSettings(settings);
+        applyStorageSettings(settings);
+        if (writerTask != null) {
+            writerTask.cancel();
+        }
+        startWriter();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Applies the storage settings that the open storage can change without being opened again, such as the compaction interval.
+     *
+     * @param settings The new settings.
+     */
+    private void applyStorageSettings(Settings settings) {
+        if (storage instanceof JournalHomeStorage journalStorage) {
+            journalStorage.setCompactionInterval(settings.getJournalCompactionInterval());
+        }
+    }
+
+    /**
+     * Checks whether new settings change the storage, the loading mode or what the spatial index holds,
+     * so the homes must be read again in full.
+     *
+     * @param settings The new settings.
+     * @return true if a full reload is needed, false otherwise.
+     */
+    private boolean requiresFullReload(Settings settings) {
+        return settings.isLazyLoading() != lazyLoading || indexesAllHomes(settings) != fullSpatialIndex
+                || !StorageSettings.of(settings).equals(storageSettings);
+    }
+
+    /**
+     * Tells whether the spatial index holds every stored home with some settings, or only the homes of the players in memory.
+     *
+     * @param settings The settings.
+     * @return Whether every home is indexed.
+     */
+    private static boolean indexesAllHomes(Settings settings) {
+        return !settings.isLazyLoading() || settings.isIndexAllHomes();
+    }
+
+    /**
+     * Swaps in the stored homes of players changed outside of the plugin, in memory and in the spatial index.
+     * Players with unsaved changes keep their homes in memory, and so do players recently changed by another server,
+     * whose stored homes may not be written yet. This method runs on the main thread.
+     *
+     * @param changedHomes The stored homes of each changed player, empty for deleted players.
+     * @param publish Whether to tell the other servers to read the swapped players again.
+     */
+    private void applyChangedHomes(Map<UUID, List<Home>> changedHomes, boolean publish) {
+        long now = System.currentTimeMillis();
+        List<UUID> swappedPlayers = new ArrayList<>(changedHomes.size());
+        for (Map.Entry<UUID, List<Home>> entry : changedHomes.entrySet()) {
+            UUID playerId = entry.getKey();
+            Long remoteChange = remoteChanges.get(playerId);
+            if (dirtyPlayers.containsKey(playerId) || (remoteChange != null && now - remoteChange < remoteChangeWindow())) {
+                continue;
+            }
+            PlayerHomes playerHomes = wrapStoredHomes(playerId, entry.getValue());
+            if (lazyLoading) {
+                synchronized (loadLock(playerId)) {
+                    homesMap.replace(playerId, playerHomes);
+                    offlineCache.replace(playerId, playerHomes);
+                }
+            } else if (entry.getValue().isEmpty()) {
+                homesMap.remove(playerId);
+            } else {
+                homesMap.put(playerId, playerHomes);
+            }
+            indexHomes(playerId, playerHomes);
+            swappedPlayers.add(playerId);
+        }
+        int keptPlayers = changedHomes.size() - swappedPlayers.size();
+        plugin.getLogger().info("Reloaded the homes of " + swappedPlayers.size() + " changed players"
+                + (keptPlayers > 0 ? ", kept the newer homes of " + keptPlayers + " players" : ""));
+        HomeSync homeSync = plugin.getHomeSync();
+        if (publish && homeSync != null && !swappedPlayers.isEmpty()) {
+            homeSync.publishInvalidation(swappedPlayers);
+        }
+    }
+
+    /**
+     * Applies the homes of a player changed by another server sharing the storage, in memory and in the spatial index.
+     * The other server writes them, so they are not marked dirty here. Concurrent changes of the same player are resolved
+     * by keeping the latest one: if this server changed the player since, its own homes are kept and written.
+     * Offline players are patched in the offline cache, since their stored homes may not be written yet.
+     * This method must be called on the main thread.
+     *
+     * @param playerId The UUID of the player.
+     * @param homes The player's homes.
+     * @param changeTime When the other server changed the homes, in milliseconds since the epoch.
+     */
+    public void applyRemoteHomes(UUID playerId, List<Home> homes, long changeTime) {
+        if (closed) {
+            return;
+        }
+        if (!eagerLoad.isDone() || !reload.isDone()) {
+            // The homes being loaded would replace the patched ones
+            CompletableFuture.allOf(eagerLoad, reload).handle((ignored, error) -> {
+                if (!closed) {
+                    Bukkit.getScheduler().runTask(plugin, () -> applyRemoteHomes(playerId, homes, changeTime));
+                }
+                return null;
+            });
+            return;
+        }
+        DirtyEntry dirty = dirtyPlayers.get(playerId);
+        if (dirty != null) {
+            if (dirty.lastChange >= changeTime) {
+                return;
+            }
+            dirtyPlayers.remove(playerId, dirty);
+        }
+        PlayerHomes playerHomes = wrapStoredHomes(playerId, homes);
+        if (lazyLoading) {
+            synchronized (loadLock(playerId)) {
+                if (homesMap.replace(playerId, playerHomes) == null) {
+                    offlineCache.put(playerId, playerHomes);
+                }
+            }
+        } else if (homes.isEmpty()) {
+            homesMap.remove(playerId);
+        } else {
+            homesMap.put(playerId, playerHomes);
+        }
+        indexHomes(playerId, playerHomes);
+        storage.forget(playerId);
+        remoteChanges.put(playerId, System.currentTimeMillis());
+    }
+
+    /**
+     * Reads again the homes of players whose stored homes another server found changed outside of the game.
+     * Offline players are only evicted from the offline cache; the homes of players in memory are read in the background
+     * and swapped in on the main thread, except for players with unsaved changes.
+     * This method must be called on the main thread.
+     *
+     * @param playerIds The UUIDs of the players.
+     */
+    public void invalidateRemoteHomes(Collection<UUID> playerIds) {
+        if (closed) {
+            return;
+        }
+        HomeStorage readStorage = storage;
+        List<UUID> loadedPlayers = new ArrayList<>();
+        for (UUID playerId : playerIds) {
+            readStorage.forget(playerId);
+            if (lazyLoading && !homesMap.containsKey(playerId)) {
+                synchronized (loadLock(playerId)) {
+                    offlineCache.remove(playerId);
+                }
+            } else {
+                loadedPlayers.add(playerId);
+            }
+        }
+        if (loadedPlayers.isEmpty()) {
+            return;
+        }
+        CompletableFuture.supplyAsync(() -> {
+            Map<UUID, List<Home>> storedHomes = new HashMap<>();
+            for (UUID playerId : loadedPlayers) {
+                try {
+                    storedHomes.put(playerId, readStorage.loadHomes(playerId));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return storedHomes;
+        }, loaderExecutor).whenComplete((storedHomes, error) -> {
+            if (error != null) {
+                plugin.getLogger().severe("Could not read the homes changed on another server: " + error.getMessage());
+            } else if (!closed) {
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    if (!closed && storage == readStorage) {
+                        applyChangedHomes(storedHomes, false);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Writes every pending change and opens a source streaming every stored home, to export them.
+     * The YAML folder and the database are streamed player by player; the journal keeps every home in memory anyway,
+     * so its homes are copied at once. This method must not be called on the main thread.
+     *
+     * @return The source, to close once read.
+     * @throws IOException If the stored homes could not be opened.
+     */
+    public HomeSource openExportSource() throws IOException {
+        reload.handle((ignored, error) -> null).join();
+        flush(true);
+        HomeStorage exportedStorage = storage;
+        if (exportedStorage instanceof YamlHomeStorage) {
+            return HomeFormat.YAML.openSource(plugin.getDataFolder().toPath().resolve("homes"));
+        } else if (exportedStorage instanceof SqlHomeStorage) {
+            return HomeFormat.SQLITE.openSource(plugin.getDataFolder().toPath().resolve("homes.db"));
+        }
+        return HomeSource.of(exportedStorage.loadAllHomes());
+    }
+
+    /**
+     * Replaces the homes of a batch of players, e.g. imported from a dump: they are written to the storage,
+     * then swapped in memory and in the spatial index on the main thread, and the other servers are told to read them again.
+     * Unsaved changes of these players are dropped. Players of the batch without homes have their homes deleted.
+     * This method blocks until the homes are in use, so it must not be called on the main thread.
+     *
+     * @param homesByPlayer The homes of each player.
+     * @throws IOException If the homes could not be written, or the plugin is being disabled.
+     */
+    public void replaceHomes(Map<UUID, List<Home>> homesByPlayer) throws IOException {
+        reload.handle((ignored, error) -> null).join();
+        eagerLoad.join();
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("The plugin is being disabled");
+            }
+            homesByPlayer.keySet().forEach(dirtyPlayers::remove);
+            long start = System.nanoTime();
+            try {
+                storage.saveAllHomes(homesByPlayer);
+                metrics.recordSave(start, true);
+            } catch (IOException e) {
+                metrics.recordSave(start, false);
+                throw e;
+            }
+        }
+        CompletableFuture<Void> applied = new CompletableFuture<>();
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            applyReplacedHomes(homesByPlayer);
+            applied.complete(null);
+        });
+        // Waiting keeps a fast import from piling up batches for the main thread
+        while (true) {
+            try {
+                applied.get(1, TimeUnit.SECONDS);
+                return;
+            } catch (TimeoutException e) {
+                if (closed) {
+                    throw new IOException("The plugin is being disabled");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while replacing homes", e);
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Swaps in the homes of players replaced in the storage. This method runs on the main thread.
+     *
+     * @param homesByPlayer The homes of each player.
+     */
+    private void applyReplacedHomes(Map<UUID, List<Home>> homesByPlayer) {
+        for (Map.Entry<UUID, List<Home>> entry : homesByPlayer.entrySet()) {
+            UUID playerId = entry.getKey();
+            PlayerHomes playerHomes = wrapStoredHomes(playerId, entry.getValue());
+            if (lazyLoading) {
+                synchronized (loadLock(playerId)) {
+                    homesMap.replace(playerId, playerHomes);
+                    offlineCache.remove(playerId);
+                }
+            } else if (entry.getValue().isEmpty()) {
+                homesMap.remove(playerId);
+            } else {
+                homesMap.put(playerId, playerHomes);
+            }
+            indexHomes(playerId, playerHomes);
+        }
+        HomeSync homeSync = plugin.getHomeSync();
+        if (homeSync != null) {
+            homeSync.publishInvalidation(homesByPlayer.keySet());
+        }
+    }
+
+    /**
+     * Retrieves how long the homes of a player changed by another server are trusted over its stored homes,
+     * which is how long the other server may take to write them.
+     *
+     * @return The time, in milliseconds.
+     */
+    private long remoteChangeWindow() {
+        return 2 * maxDirtyAgeMillis;
+    }
+
+    /**
+     * Swaps in the new storage and the homes read from it, then applies the new settings.
+     * Players with unsaved changes keep their homes in memory, and are written to the new storage.
+     * This method runs on the main thread, so no command sees a half-applied reload.
+     *
+     * @param prepared The prepared reload.
+     * @param settings The new settings.
+     */
+    private void applyFullReload(PreparedReload prepared, Settings settings) {
+        Map<UUID, PlayerHomes> previousHomes = homesMap;
+        Map<UUID, PlayerHomes> newHomes = prepared.homes;
+        boolean lazy = settings.isLazyLoading();
+        dirtyPlayers.forEach((playerId, dirty) -> {
+            // With lazy loading, offline players stay out of memory; their unsaved homes are still served by readOrCachedHomes
+            if (!lazy || previousHomes.containsKey(playerId)) {
+                newHomes.put(playerId, dirty.homes);
+            }
+        });
+
+        HomeStorage previousStorage = storage;
+        loadSettings(settings);
+        // The offline homes were read from the previous storage
+        offlineCache.clear();
+        this.storageSettings = StorageSettings.of(settings);
+        this.storage = prepared.storage;
+        this.homesMap = newHomes;
+        this.eagerLoad = CompletableFuture.completedFuture(null);
+        if (prepared.index != null) {
+            dirtyPlayers.forEach((playerId, dirty) -> prepared.index.update(playerId, dirty.homes));
+            this.spatialIndex = prepared.index;
+            this.spatialIndexLoad = CompletableFuture.completedFuture(null);
+        } else {
+            HomeSpatialIndex index = new HomeSpatialIndex();
+            newHomes.forEach(index::update);
+            if (fullSpatialIndex) {
+                dirtyPlayers.forEach((playerId, dirty) -> index.update(playerId, dirty.homes));
+                fillSpatialIndex(index);
+            } else {
+                this.spatialIndex = index;
+                this.spatialIndexLoad = CompletableFuture.completedFuture(null);
+            }
+        }
+        if (lazy) {
+            // Players who joined while the reload was prepared are loaded from the new storage
+            for (UUID playerId : previousHomes.keySet()) {
+                if (!newHomes.containsKey(playerId)) {
+                    loadPlayer(playerId);
+                }
+            }
+        }
+        applyStorageSettings(settings);
+        startWriter();
+        HomeStorage newStorage = prepared.storage;
+        if (newStorage != previousStorage) {
+            loaderExecutor.execute(() -> {
+                closeStorage(previousStorage);
+                newStorage.startMaintenance();
+            });
+        }
+        plugin.getLogger().info("Reloaded the homes of " + newHomes.size() + " players from the " + settings.getStorage() + " storage");
+    }
+
+    /**
+     * The StorageSettings record holds the settings a storage is opened with, to tell whether a reload changes the storage.
+     * Settings the open storage can change, such as the compaction interval, are left out, see applyStorageSettings.
+     */
+    private record StorageSettings(String storage, int homesShardLevels) {
+        private static StorageSettings of(Settings settings) {
+            return new StorageSettings(settings.getStorage(), settings.getHomesShardLevels());
+        }
+    }
+
+    /**
+     * The PreparedReload class holds the state read by a reload, before it is swapped in on the main thread.
+     * An incremental reload only holds the changed homes; a full reload holds the new storage and the homes read from it.
+     */
+    private static final class PreparedReload {
+        private final Map<UUID, List<Home>> changedHomes;
+        private final HomeStorage storage;
+        private final Map<UUID, PlayerHomes> homes;
+        private final HomeSpatialIndex index;
+
+        private PreparedReload(Map<UUID, List<Home>> changedHomes) {
+            this.changedHomes = changedHomes;
+            this.storage = null;
+            this.homes = null;
+            this.index = null;
+        }
+
+        private PreparedReload(HomeStorage storage, Map<UUID, PlayerHomes> homes, HomeSpatialIndex index) {
+            this.changedHomes = null;
+            this.storage = storage;
+            this.homes = homes;
+            this.index = index;
+        }
+    }
+
+    /**
+     * The DirtyEntry class tracks the homes of a player that changed since the last write,
+     * when they first and last changed, and how many writes of them failed in a row.
+     */
+    private static final class DirtyEntry {
+        private final PlayerHomes homes;
+        private final long firstChange;
+        private volatile long lastChange;
+        private volatile int failedAttempts;
+        private volatile long nextAttempt;
+
+        private DirtyEntry(PlayerHomes homes, long now) {
+            this.homes = homes;
+            this.firstChange = now;
+            this.lastChange = now;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,274 @@
+package com.enhancedplugins.enhancedhomes.managers;
+
+import com.enhancedplugins.enhancedhomes.models.Home;
+import com.enhancedplugins.enhancedhomes.models.PlayerHomes;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The HomeSpatialIndex class indexes the homes of players by position, so proximity and region queries
+ * only visit the homes close to the queried area instead of every home on the server.
+ * Each world is divided into square cells of 64 by 64 blocks, and each cell lists the homes inside it.
+ * The homes of a player are replaced as a whole whenever they change, so the index always matches the last known homes.
+ * Reads share a lock and writes are exclusive, so the index can be used from any thread.
+ */
+public class HomeSpatialIndex {
+    private static final int CELL_SHIFT = 6;
+    private final Map<String, Map<Long, List<IndexedHome>>> worlds = new HashMap<>();
+    private final Map<UUID, List<IndexedHome>> homesByOwner = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int size;
+
+    /**
+     * Replaces the indexed homes of a player with their current homes.
+     * The homes are read while the index is locked, so concurrent updates of the same player are applied in order.
+     *
+     * @param ownerId The UUID of the player.
+     * @param playerHomes The player's homes.
+     */
+    public void update(UUID ownerId, PlayerHomes playerHomes) {
+        lock.writeLock().lock();
+        try {
+            replace(ownerId, playerHomes.list());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes the homes of a player read from storage, unless the player's homes changed since the index was created.
+     * This lets the index be filled in the background while homes keep changing.
+     *
+     * @param ownerId The UUID of the player.
+     * @param homes The player's stored homes.
+     */
+    public void addIfAbsent(UUID ownerId, List<Home> homes) {
+        lock.writeLock().lock();
+        try {
+            if (!homesByOwner.containsKey(ownerId)) {
+                replace(ownerId, homes);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the homes of a player from the index, e.g. when the player is unloaded and only the players in memory are indexed.
+     *
+     * @param ownerId The UUID of the player.
+     */
+    public void remove(UUID ownerId) {
+        lock.writeLock().lock();
+        try {
+            replace(ownerId, Collections.emptyList());
+            homesByOwner.remove(ownerId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the homes inside a rectangle of a world, bounds included.
+     *
+     * @param worldName The name of the world.
+     * @param minX The minimum X coordinate.
+     * @param minZ The minimum Z coordinate.
+     * @param maxX The maximum X coordinate.
+     * @param maxZ The maximum Z coordinate.
+     * @return The homes inside the rectangle, in no particular order.
+     */
+    public List<IndexedHome> findInRegion(String worldName, double minX, double minZ, double maxX, double maxZ) {
+        List<IndexedHome> found = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Map<Long, List<IndexedHome>> cells = worlds.get(worldName);
+            if (cells == null) {
+                return found;
+            }
+            int minCellX = cell(minX);
+            int minCellZ = cell(minZ);
+            int maxCellX = cell(maxX);
+            int maxCellZ = cell(maxZ);
+            long cellsInRegion = (long) (maxCellX - minCellX + 1) * (maxCellZ - minCellZ + 1);
+            if (cellsInRegion <= cells.size()) {
+                // Small region: look up each cell of the region
+                for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                    for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+                        List<IndexedHome> cellHomes = cells.get(key(cellX, cellZ));
+                        if (cellHomes != null) {
+                            collect(cellHomes, minX, minZ, maxX, maxZ, found);
+                        }
+                    }
+                }
+            } else {
+                // Large region: go through the occupied cells instead of the many empty ones
+                for (Map.Entry<Long, List<IndexedHome>> cell : cells.entrySet()) {
+                    int cellX = (int) (cell.getKey() >> 32);
+                    int cellZ = (int) (long) cell.getKey();
+                    if (cellX >= minCellX && cellX <= maxCellX && cellZ >= minCellZ && cellZ <= maxCellZ) {
+                        collect(cell.getValue(), minX, minZ, maxX, maxZ, found);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return found;
+    }
+
+    /**
+     * Finds the players who have at least one home in a world.
+     *
+     * @param worldName The name of the world.
+     * @return The UUIDs of the players, in no particular order.
+     */
+    public Set<UUID> findOwnersInWorld(String worldName) {
+        Set<UUID> owners = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            Map<Long, List<IndexedHome>> cells = worlds.get(worldName);
+            if (cells != null) {
+                for (List<IndexedHome> cellHomes : cells.values()) {
+                    for (IndexedHome indexedHome : cellHomes) {
+                        owners.add(indexedHome.ownerId);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return owners;
+    }
+
+    /**
+     * Finds the homes within a horizontal distance of a position, nearest first.
+     *
+     * @param worldName The name of the world.
+     * @param x The X coordinate of the position.
+     * @param z The Z coordinate of the position.
+     * @param radius The maximum distance, in blocks.
+     * @return The homes within the radius, sorted by distance.
+     */
+    public List<IndexedHome> findNear(String worldName, double x, double z, double radius) {
+        List<IndexedHome> found = findInRegion(worldName, x - radius, z - radius, x + radius, z + radius);
+        double radiusSquared = radius * radius;
+        found.removeIf(indexedHome -> indexedHome.distanceSquared(x, z) > radiusSquared);
+        found.sort(Comparator.comparingDouble(indexedHome -> indexedHome.distanceSquared(x, z)));
+        return found;
+    }
+
+    /**
+     * Retrieves the number of indexed homes.
+     *
+     * @return The number of indexed homes.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the indexed homes of a player. The caller must hold the write lock.
+     *
+     * @param ownerId The UUID of the player.
+     * @param homes The player's homes.
+     */
+    private void replace(UUID ownerId, Collection<Home> homes) {
+        List<IndexedHome> previousHomes = homesByOwner.get(ownerId);
+        if (previousHomes != null) {
+            for (IndexedHome previousHome : previousHomes) {
+                Map<Long, List<IndexedHome>> cells = worlds.get(previousHome.home.getWorldName());
+                long cellKey = key(cell(previousHome.home.getX()), cell(previousHome.home.getZ()));
+                List<IndexedHome> cellHomes = cells.get(cellKey);
+                cellHomes.remove(previousHome);
+                if (cellHomes.isEmpty()) {
+                    cells.remove(cellKey);
+                    if (cells.isEmpty()) {
+                        worlds.remove(previousHome.home.getWorldName());
+                    }
+                }
+            }
+            size -= previousHomes.size();
+        }
+
+        List<IndexedHome> ownerHomes = new ArrayList<>(homes.size());
+        for (Home home : homes) {
+            if (home.getWorldName() == null) {
+                continue;
+            }
+            IndexedHome indexedHome = new IndexedHome(ownerId, home);
+            worlds.computeIfAbsent(home.getWorldName(), worldName -> new HashMap<>())
+                    .computeIfAbsent(key(cell(home.getX()), cell(home.getZ())), cellKey -> new ArrayList<>(4))
+                    .add(indexedHome);
+            ownerHomes.add(indexedHome);
+        }
+        // An empty list still marks the player as known, so a background fill does not bring back deleted homes
+        homesByOwner.put(ownerId, ownerHomes);
+        size += ownerHomes.size();
+    }
+
+    private static void collect(List<IndexedHome> cellHomes, double minX, double minZ, double maxX, double maxZ, List<IndexedHome> found) {
+        for (IndexedHome indexedHome : cellHomes) {
+            double x = indexedHome.home.getX();
+            double z = indexedHome.home.getZ();
+            if (x >= minX && x <= maxX && z >= minZ && z <= maxZ) {
+                found.add(indexedHome);
+            }
+        }
+    }
+
+    private static int cell(double coordinate) {
+        return (int) Math.floor(coordinate) >> CELL_SHIFT;
+    }
+
+    private static long key(int cellX, int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * The IndexedHome class is a home in the index, along with its owner.
+     */
+    public static final class IndexedHome {
+        private final UUID ownerId;
+        private final Home home;
+
+        private IndexedHome(UUID ownerId, Home home) {
+            this.ownerId = ownerId;
+            this.home = home;
+        }
+
+        /**
+         * Retrieves the UUID of the owner of the home.
+         *
+         * @return The UUID of the owner.
+         */
+        public UUID getOwnerId() { return ownerId; }
+
+        /**
+         * Retrieves the home.
+         *
+         * @return The home.
+         */
+        public Home getHome() { return home; }
+
+        /**
+         * Computes the squared horizontal distance between the home and a position.
+         *
+         * @param x The X coordinate of the position.
+         * @param z The Z coordinate of the position.
+         * @return The squared distance.
+         */
+        public double distanceSquared(double x, double z) {
+            double dx = home.getX() - x;
+            double dz = home.getZ() - z;
+            return dx * dx + dz * dz;
+        }
+    }
+}
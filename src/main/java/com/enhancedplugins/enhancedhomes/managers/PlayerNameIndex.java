@@ -0,0 +1,236 @@
+package com.enhancedplugins.enhancedhomes.managers;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * The PlayerNameIndex class maps the names of every player who has joined the server to their UUID.
+ * It lets commands target offline players with a constant-time lookup, instead of Bukkit#getOfflinePlayer(String),
+ * which can block on a profile lookup, and keeps the names sorted so they can be completed by prefix.
+ * The index is updated when players join and written to player-names.txt, next to the homes directory,
+ * in the background and when the plugin is disabled.
+ */
+public class PlayerNameIndex implements Listener {
+    private static final long SAVE_PERIOD_TICKS = 60 * 20L;
+    private final JavaPlugin plugin;
+    private final File indexFile;
+    private final NavigableMap<String, KnownPlayer> playersByName = new TreeMap<>();
+    private final Map<UUID, KnownPlayer> playersById = new HashMap<>();
+    private final Object saveLock = new Object();
+    private final BukkitTask saveTask;
+    private boolean dirty;
+
+    /**
+     * Constructor for the PlayerNameIndex class.
+     * It reads the index file, or builds the index from the players known to the server the first time,
+     * and starts the background save.
+     *
+     * @param plugin The JavaPlugin instance.
+     */
+    public PlayerNameIndex(JavaPlugin plugin) {
+        this.plugin = plugin;
+        this.indexFile = new File(plugin.getDataFolder(), "player-names.txt");
+        if (indexFile.exists()) {
+            load();
+        } else {
+            for (OfflinePlayer offlinePlayer : Bukkit.getOfflinePlayers()) {
+                if (offlinePlayer.getName() != null) {
+                    put(offlinePlayer.getUniqueId(), offlinePlayer.getName());
+                }
+            }
+        }
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            put(player.getUniqueId(), player.getName());
+        }
+        this.saveTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::saveIfDirty, SAVE_PERIOD_TICKS, SAVE_PERIOD_TICKS);
+    }
+
+    /**
+     * Finds a player by name, online or not, without blocking.
+     * Online players are matched like Bukkit#getPlayer(String); offline players need their exact name, ignoring case.
+     *
+     * @param name The name of the player.
+     * @return The player, or null if no player with this name has ever joined.
+     */
+    public KnownPlayer find(String name) {
+        Player onlinePlayer = Bukkit.getPlayer(name);
+        if (onlinePlayer != null) {
+            return KnownPlayer.of(onlinePlayer);
+        }
+        synchronized (this) {
+            return playersByName.get(name.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Retrieves the last known name of a player.
+     *
+     * @param playerId The UUID of the player.
+     * @return The name of the player, or their UUID if they are not known.
+     */
+    public synchronized String getName(UUID playerId) {
+        KnownPlayer knownPlayer = playersById.get(playerId);
+        return knownPlayer != null ? knownPlayer.getName() : playerId.toString();
+    }
+
+    /**
+     * Retrieves the names of the known players starting with a prefix, ignoring case, in alphabetical order.
+     *
+     * @param prefix The prefix typed so far.
+     * @return The matching player names.
+     */
+    public synchronized List<String> complete(String prefix) {
+        String normalizedPrefix = prefix.toLowerCase(Locale.ROOT);
+        List<String> names = new ArrayList<>();
+        for (KnownPlayer knownPlayer : playersByName.subMap(normalizedPrefix, true, normalizedPrefix + Character.MAX_VALUE, false).values()) {
+            names.add(knownPlayer.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Stops the background save and writes the index a last time.
+     */
+    public void shutdown() {
+        saveTask.cancel();
+        saveIfDirty();
+    }
+
+    /**
+     * Records the name of a player, replacing their previous name if they changed it.
+     * If another player used to have this name, the name now points to the new player.
+     *
+     * @param playerId The UUID of the player.
+     * @param name The current name of the player.
+     */
+    private synchronized void put(UUID playerId, String name) {
+        KnownPlayer previous = playersById.get(playerId);
+        if (previous != null && previous.getName().equals(name)) {
+            return;
+        }
+        if (previous != null) {
+            playersByName.remove(previous.getName().toLowerCase(Locale.ROOT), previous);
+        }
+        KnownPlayer knownPlayer = new KnownPlayer(playerId, name);
+        KnownPlayer displaced = playersByName.put(name.toLowerCase(Locale.ROOT), knownPlayer);
+        if (displaced != null && !displaced.getUniqueId().equals(playerId)) {
+            playersById.remove(displaced.getUniqueId());
+        }
+        playersById.put(playerId, knownPlayer);
+        dirty = true;
+    }
+
+    /**
+     * Reads the index file, one "uuid name" entry per line.
+     * Malformed lines are skipped.
+     */
+    private void load() {
+        try (BufferedReader reader = Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(' ');
+                if (separator <= 0 || separator == line.length() - 1) {
+                    continue;
+                }
+                try {
+                    put(UUID.fromString(line.substring(0, separator)), line.substring(separator + 1));
+                } catch (IllegalArgumentException e) {
+                    // Skip the malformed line
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not read the player name index: " + e.getMessage());
+        }
+        dirty = false;
+    }
+
+    /**
+     * Writes the index file if a player name changed since the last write.
+     * The file is written to a temporary file and renamed into place, so a crash never leaves a partial index.
+     */
+    private void saveIfDirty() {
+        synchronized (saveLock) {
+            List<KnownPlayer> knownPlayers;
+            synchronized (this) {
+                if (!dirty) {
+                    return;
+                }
+                knownPlayers = new ArrayList<>(playersById.values());
+                dirty = false;
+            }
+            File tempFile = new File(indexFile.getPath() + ".tmp");
+            try {
+                try (BufferedWriter writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+                    for (KnownPlayer knownPlayer : knownPlayers) {
+                        writer.write(knownPlayer.getUniqueId() + " " + knownPlayer.getName());
+                        writer.newLine();
+                    }
+                }
+                Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                synchronized (this) {
+                    dirty = true;
+                }
+                plugin.getLogger().severe("Could not save the player name index: " + e.getMessage());
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        put(event.getPlayer().getUniqueId(), event.getPlayer().getName());
+    }
+
+    /**
+     * The KnownPlayer class holds the UUID and the last known name of a player, who may be offline.
+     */
+    public static final class KnownPlayer {
+        private final UUID uniqueId;
+        private final String name;
+
+        private KnownPlayer(UUID uniqueId, String name) {
+            this.uniqueId = uniqueId;
+            this.name = name;
+        }
+
+        /**
+         * Creates a KnownPlayer from an online player.
+         *
+         * @param player The player.
+         * @return The KnownPlayer.
+         */
+        public static KnownPlayer of(Player player) {
+            return new KnownPlayer(player.getUniqueId(), player.getName());
+        }
+
+        /**
+         * Retrieves the UUID of the player.
+         *
+         * @return The UUID of the player.
+         */
+        public UUID getUniqueId() { return uniqueId; }
+
+        /**
+         * Retrieves the last known name of the player.
+         *
+         * @return The name of the player.
+         */
+        public String getName() { return name; }
+    }
+}
@@ -0,0 +1,214 @@
+package com.enhancedplugins.enhancedhomes.managers;
+
+import com.enhancedplugins.enhancedhomes.EnhancedHomes;
+import com.enhancedplugins.enhancedhomes.models.Settings;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * The WarmupManager class runs every teleportation warmup from a single repeating task.
+ * Pending warmups are kept in a timing wheel: each warmup sits in the slot of the next tick it needs attention,
+ * either to sample the movement of the waiting player or to complete. A tick only visits its own slot,
+ * so its cost depends on the warmups due at that tick, not on the total number of pending warmups.
+ * Warmups are keyed by the UUID of the teleported player and are cancelled when that player quits or takes damage.
+ * All methods must be called on the main thread.
+ */
+public class WarmupManager implements Listener {
+    private static final int WHEEL_SIZE = 256;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private final EnhancedHomes plugin;
+    private final Map<UUID, Warmup> warmups = new HashMap<>();
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<Warmup>[] wheel = new ArrayDeque[WHEEL_SIZE];
+    private final BukkitTask tickTask;
+    private long currentTick;
+
+    /**
+     * The reasons why a warmup can be cancelled.
+     */
+    public enum CancelReason {
+        MOVED,
+        DAMAGED,
+        QUIT
+    }
+
+    /**
+     * Constructor for the WarmupManager class.
+     * It starts the repeating task that drives the timing wheel.
+     *
+     * @param plugin The EnhancedHomes plugin.
+     */
+    public WarmupManager(EnhancedHomes plugin) {
+        this.plugin = plugin;
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ArrayDeque<>();
+        }
+        this.tickTask = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    /**
+     * Starts a warmup.
+     * The waiting player must not move by a block or more until the warmup completes.
+     *
+     * @param waitingPlayer The player who must stand still, usually the teleported player.
+     * @param teleportedId The UUID of the teleported player, which identifies the warmup.
+     * @param delayTicks The duration of the warmup, in ticks.
+     * @param onComplete Called when the warmup completes.
+     * @param onCancel Called with the reason when the warmup is cancelled.
+     */
+    public void start(Player waitingPlayer, UUID teleportedId, long delayTicks, Runnable onComplete, Consumer<CancelReason> onCancel) {
+        Warmup warmup = new Warmup(waitingPlayer.getUniqueId(), teleportedId, waitingPlayer.getLocation(),
+                currentTick + Math.max(1, delayTicks), onComplete, onCancel);
+        Warmup previous = warmups.put(teleportedId, warmup);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        schedule(warmup);
+    }
+
+    /**
+     * Checks whether a player has a pending warmup.
+     *
+     * @param teleportedId The UUID of the teleported player.
+     * @return true if a warmup is pending for this player, false otherwise.
+     */
+    public boolean isWarmingUp(UUID teleportedId) {
+        return warmups.containsKey(teleportedId);
+    }
+
+    /**
+     * Retrieves the number of pending warmups.
+     * It may be called from any thread, in which case the count may be slightly out of date.
+     *
+     * @return The number of pending warmups.
+     */
+    public int getPendingCount() { return warmups.size(); }
+
+    /**
+     * Cancels the pending warmup of a player, if any.
+     *
+     * @param teleportedId The UUID of the teleported player.
+     * @param reason The reason passed to the cancellation callback.
+     */
+    public void cancel(UUID teleportedId, CancelReason reason) {
+        Warmup warmup = warmups.remove(teleportedId);
+        if (warmup != null) {
+            warmup.cancelled = true;
+            warmup.onCancel.accept(reason);
+        }
+    }
+
+    /**
+     * Stops the repeating task and drops every pending warmup without calling back.
+     */
+    public void shutdown() {
+        tickTask.cancel();
+        warmups.clear();
+        for (ArrayDeque<Warmup> slot : wheel) {
+            slot.clear();
+        }
+    }
+
+    /**
+     * Advances the wheel by one tick and handles the warmups of the current slot.
+     * Warmups that are neither complete nor cancelled are moved to the slot of their next sample.
+     */
+    private void tick() {
+        currentTick++;
+        ArrayDeque<Warmup> slot = wheel[(int) (currentTick & WHEEL_MASK)];
+        for (int remaining = slot.size(); remaining > 0; remaining--) {
+            Warmup warmup = slot.poll();
+            if (warmup.cancelled) {
+                continue;
+            }
+            if (warmup.nextTick != currentTick) {
+                slot.add(warmup);
+                continue;
+            }
+            if (hasMoved(warmup)) {
+                cancel(warmup.teleportedId, Bukkit.getPlayer(warmup.waitingId) == null ? CancelReason.QUIT : CancelReason.MOVED);
+            } else if (warmup.completeTick <= currentTick) {
+                warmups.remove(warmup.teleportedId);
+                warmup.onComplete.run();
+            } else {
+                schedule(warmup);
+            }
+        }
+    }
+
+    /**
+     * Puts a warmup in the slot of its next sample, or of its completion if it comes first.
+     *
+     * @param warmup The warmup.
+     */
+    private void schedule(Warmup warmup) {
+        int sampleInterval = Math.min(plugin.getSettings().getWarmupCheckInterval(), WHEEL_SIZE - 1);
+        warmup.nextTick = Math.min(warmup.completeTick, currentTick + sampleInterval);
+        wheel[(int) (warmup.nextTick & WHEEL_MASK)].add(warmup);
+    }
+
+    /**
+     * Checks whether the waiting player of a warmup has left, changed world or moved by a block or more.
+     *
+     * @param warmup The warmup.
+     * @return true if the warmup must be cancelled, false otherwise.
+     */
+    private static boolean hasMoved(Warmup warmup) {
+        Player waitingPlayer = Bukkit.getPlayer(warmup.waitingId);
+        if (waitingPlayer == null) {
+            return true;
+        }
+        Location location = waitingPlayer.getLocation();
+        return location.getWorld() != warmup.startLocation.getWorld() || location.distanceSquared(warmup.startLocation) >= 1;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityDamage(EntityDamageEvent event) {
+        Settings settings = plugin.getSettings();
+        if (settings.isWarmupCancelOnDamage() && event.getEntity() instanceof Player player) {
+            cancel(player.getUniqueId(), CancelReason.DAMAGED);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        cancel(event.getPlayer().getUniqueId(), CancelReason.QUIT);
+    }
+
+    /**
+     * The Warmup class holds a pending warmup.
+     */
+    private static final class Warmup {
+        private final UUID waitingId;
+        private final UUID teleportedId;
+        private final Location startLocation;
+        private final long completeTick;
+        private final Runnable onComplete;
+        private final Consumer<CancelReason> onCancel;
+        private long nextTick;
+        private boolean cancelled;
+
+        private Warmup(UUID waitingId, UUID teleportedId, Location startLocation, long completeTick,
+                       Runnable onComplete, Consumer<CancelReason> onCancel) {
+            this.waitingId = waitingId;
+            this.teleportedId = teleportedId;
+            this.startLocation = startLocation;
+            this.completeTick = completeTick;
+            this.onComplete = onComplete;
+            this.onCancel = onCancel;
+        }
+    }
+}
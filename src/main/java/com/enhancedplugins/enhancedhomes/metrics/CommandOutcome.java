@@ -0,0 +1,21 @@
+package com.enhancedplugins.enhancedhomes.metrics;
+
+/**
+ * The outcomes of a command, as counted by the PluginMetrics.
+ */
+public enum CommandOutcome {
+    /** The command did what was asked. */
+    SUCCESS,
+    /** The command was used with wrong arguments, or by a sender who cannot use it. */
+    INVALID,
+    /** The sender lacks a permission, or a limit was reached. */
+    DENIED,
+    /** The player, home or world named by the command does not exist. */
+    NOT_FOUND,
+    /** The command asks to be run again to confirm, e.g. to replace an existing home. */
+    CONFIRMATION,
+    /** The teleportation warmup was cancelled. */
+    CANCELLED,
+    /** The homes the command needed could not be read from the storage. */
+    FAILED
+}
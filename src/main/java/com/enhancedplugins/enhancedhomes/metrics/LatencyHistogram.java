@@ -0,0 +1,138 @@
+package com.enhancedplugins.enhancedhomes.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The LatencyHistogram class records durations into buckets of powers of two microseconds.
+ * Recording only increments striped counters, so it never blocks and stays cheap under contention.
+ * Percentiles are therefore approximate: they are reported as the upper bound of their bucket, within a factor of two.
+ */
+public final class LatencyHistogram {
+    private static final int BUCKETS = 40;
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Constructor for the LatencyHistogram class.
+     */
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos The duration, in nanoseconds.
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos) / 1_000;
+        // Bucket i holds durations below 2^i microseconds
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets[bucket].increment();
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * Records the time elapsed since a start time.
+     *
+     * @param startNanos The start time, from System#nanoTime.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Takes a snapshot of the histogram.
+     * Values recorded while the snapshot is taken may be partly included.
+     *
+     * @return The snapshot.
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        long samples = count.sum();
+        double meanMillis = samples == 0 ? 0 : totalNanos.sum() / (samples * 1_000_000.0);
+        return new Snapshot(samples, meanMillis, percentile(counts, total, 0.5), percentile(counts, total, 0.99), maxNanos.get() / 1_000_000.0);
+    }
+
+    private static double percentile(long[] counts, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return (1L << i) / 1_000.0;
+            }
+        }
+        return (1L << (counts.length - 1)) / 1_000.0;
+    }
+
+    /**
+     * The Snapshot class holds the statistics of a histogram at a point in time.
+     * It is exposed over JMX as composite data, one item per getter.
+     */
+    public static final class Snapshot {
+        private final long count;
+        private final double meanMillis;
+        private final double p50Millis;
+        private final double p99Millis;
+        private final double maxMillis;
+
+        private Snapshot(long count, double meanMillis, double p50Millis, double p99Millis, double maxMillis) {
+            this.count = count;
+            this.meanMillis = meanMillis;
+            this.p50Millis = p50Millis;
+            this.p99Millis = p99Millis;
+            this.maxMillis = maxMillis;
+        }
+
+        /**
+         * Retrieves the number of recorded durations.
+         *
+         * @return The number of recorded durations.
+         */
+        public long getCount() { return count; }
+
+        /**
+         * Retrieves the mean duration.
+         *
+         * @return The mean duration, in milliseconds.
+         */
+        public double getMeanMillis() { return meanMillis; }
+
+        /**
+         * Retrieves the approximate median duration.
+         *
+         * @return The median duration, in milliseconds.
+         */
+        public double getP50Millis() { return p50Millis; }
+
+        /**
+         * Retrieves the approximate 99th percentile duration.
+         *
+         * @return The 99th percentile duration, in milliseconds.
+         */
+        public double getP99Millis() { return p99Millis; }
+
+        /**
+         * Retrieves the longest recorded duration.
+         *
+         * @return The longest duration, in milliseconds.
+         */
+        public double getMaxMillis() { return maxMillis; }
+    }
+}
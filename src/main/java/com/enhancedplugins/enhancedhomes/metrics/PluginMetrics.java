@@ -0,0 +1,261 @@
+package com.enhancedplugins.enhancedhomes.metrics;
+
+import com.enhancedplugins.enhancedhomes.EnhancedHomes;
+import com.enhancedplugins.enhancedhomes.managers.HomeManager;
+import com.enhancedplugins.enhancedhomes.managers.WarmupManager;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The PluginMetrics class collects the counters and latencies of the plugin since it was enabled.
+ * Recording only increments striped counters, so the hot paths never take a lock for metrics.
+ * Gauges such as the homes in memory are read from the managers when the metrics are queried.
+ * The metrics are shown by /enhancedhomes stats and exposed over JMX (see PluginMetricsMXBean).
+ */
+public class PluginMetrics implements PluginMetricsMXBean {
+    private static final String OBJECT_NAME = "com.enhancedplugins.enhancedhomes:type=Metrics";
+    private final EnhancedHomes plugin;
+    private final LatencyHistogram playerLoadLatency = new LatencyHistogram();
+    private final LatencyHistogram fullLoadLatency = new LatencyHistogram();
+    private final LatencyHistogram saveLatency = new LatencyHistogram();
+    private final LatencyHistogram loadedChunkTeleportLatency = new LatencyHistogram();
+    private final LatencyHistogram unloadedChunkTeleportLatency = new LatencyHistogram();
+    private final LongAdder saveFailures = new LongAdder();
+    private final LongAdder homeCacheHits = new LongAdder();
+    private final LongAdder homeCacheMisses = new LongAdder();
+    private final LongAdder limitCacheHits = new LongAdder();
+    private final LongAdder limitCacheMisses = new LongAdder();
+    private final Map<String, LongAdder[]> commandOutcomes = new ConcurrentHashMap<>();
+    private ObjectName registeredName;
+
+    /**
+     * Constructor for the PluginMetrics class.
+     *
+     * @param plugin The EnhancedHomes plugin, whose managers provide the gauges.
+     */
+    public PluginMetrics(EnhancedHomes plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Records the time taken to read the homes of one player from storage.
+     *
+     * @param startNanos The start of the read, from System#nanoTime.
+     */
+    public void recordPlayerLoad(long startNanos) {
+        playerLoadLatency.recordSince(startNanos);
+    }
+
+    /**
+     * Records the time taken to read the homes of every player from storage.
+     *
+     * @param startNanos The start of the read, from System#nanoTime.
+     */
+    public void recordFullLoad(long startNanos) {
+        fullLoadLatency.recordSince(startNanos);
+    }
+
+    /**
+     * Records a write of a batch of players to storage.
+     *
+     * @param startNanos The start of the write, from System#nanoTime.
+     * @param succeeded Whether the batch was written.
+     */
+    public void recordSave(long startNanos, boolean succeeded) {
+        saveLatency.recordSince(startNanos);
+        if (!succeeded) {
+            saveFailures.increment();
+        }
+    }
+
+    /**
+     * Records the time a teleportation took on the main thread.
+     *
+     * @param nanos The duration of the teleportation, in nanoseconds.
+     * @param chunkLoaded Whether the destination chunk was already loaded.
+     */
+    public void recordTeleport(long nanos, boolean chunkLoaded) {
+        (chunkLoaded ? loadedChunkTeleportLatency : unloadedChunkTeleportLatency).record(nanos);
+    }
+
+    /**
+     * Records a lookup of a player's homes.
+     *
+     * @param hit Whether the homes were in memory, as opposed to read from storage.
+     */
+    public void recordHomeLookup(boolean hit) {
+        (hit ? homeCacheHits : homeCacheMisses).increment();
+    }
+
+    /**
+     * Records a check of a player's home limit.
+     *
+     * @param hit Whether the limit was cached, as opposed to computed from the permissions.
+     */
+    public void recordLimitLookup(boolean hit) {
+        (hit ? limitCacheHits : limitCacheMisses).increment();
+    }
+
+    /**
+     * Records the outcome of a command.
+     *
+     * @param command The name of the command, e.g. "home".
+     * @param outcome The outcome.
+     */
+    public void recordCommand(String command, CommandOutcome outcome) {
+        LongAdder[] counters = commandOutcomes.get(command);
+        if (counters == null) {
+            counters = commandOutcomes.computeIfAbsent(command, name -> {
+                LongAdder[] newCounters = new LongAdder[CommandOutcome.values().length];
+                for (int i = 0; i < newCounters.length; i++) {
+                    newCounters[i] = new LongAdder();
+                }
+                return newCounters;
+            });
+        }
+        counters[outcome.ordinal()].increment();
+    }
+
+    /**
+     * Retrieves the outcomes of each command that was run at least once, sorted by command name.
+     *
+     * @return The non-zero counts of each outcome, by command name.
+     */
+    public Map<String, Map<CommandOutcome, Long>> getOutcomesByCommand() {
+        Map<String, Map<CommandOutcome, Long>> outcomesByCommand = new TreeMap<>();
+        commandOutcomes.forEach((command, counters) -> {
+            Map<CommandOutcome, Long> outcomes = new EnumMap<>(CommandOutcome.class);
+            for (CommandOutcome outcome : CommandOutcome.values()) {
+                long count = counters[outcome.ordinal()].sum();
+                if (count > 0) {
+                    outcomes.put(outcome, count);
+                }
+            }
+            outcomesByCommand.put(command, outcomes);
+        });
+        return outcomesByCommand;
+    }
+
+    @Override
+    public Map<String, Long> getCommandOutcomes() {
+        Map<String, Long> flattened = new TreeMap<>();
+        getOutcomesByCommand().forEach((command, outcomes) -> outcomes.forEach((outcome, count) ->
+                flattened.put(command + "." + outcome.name().toLowerCase(Locale.ROOT), count)));
+        return flattened;
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getPlayerLoadLatency() { return playerLoadLatency.snapshot(); }
+
+    @Override
+    public LatencyHistogram.Snapshot getFullLoadLatency() { return fullLoadLatency.snapshot(); }
+
+    @Override
+    public LatencyHistogram.Snapshot getSaveLatency() { return saveLatency.snapshot(); }
+
+    @Override
+    public LatencyHistogram.Snapshot getLoadedChunkTeleportLatency() { return loadedChunkTeleportLatency.snapshot(); }
+
+    @Override
+    public LatencyHistogram.Snapshot getUnloadedChunkTeleportLatency() { return unloadedChunkTeleportLatency.snapshot(); }
+
+    @Override
+    public long getBytesRead() {
+        HomeManager homeManager = plugin.getHomeManager();
+        return homeManager != null ? homeManager.getBytesRead() : 0;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        HomeManager homeManager = plugin.getHomeManager();
+        return homeManager != null ? homeManager.getBytesWritten() : 0;
+    }
+
+    @Override
+    public long getSaveFailures() { return saveFailures.sum(); }
+
+    @Override
+    public int getPlayersAwaitingSaveRetry() {
+        HomeManager homeManager = plugin.getHomeManager();
+        return homeManager != null ? homeManager.getPlayersAwaitingRetry() : 0;
+    }
+
+    @Override
+    public int getPendingWarmups() {
+        WarmupManager warmupManager = plugin.getWarmupManager();
+        return warmupManager != null ? warmupManager.getPendingCount() : 0;
+    }
+
+    @Override
+    public double getHomeCacheHitRate() { return hitRate(homeCacheHits, homeCacheMisses); }
+
+    @Override
+    public double getLimitCacheHitRate() { return hitRate(limitCacheHits, limitCacheMisses); }
+
+    @Override
+    public int getPlayersInMemory() {
+        HomeManager homeManager = plugin.getHomeManager();
+        return homeManager != null ? homeManager.getPlayersInMemory() : 0;
+    }
+
+    @Override
+    public int getHomesInMemory() {
+        HomeManager homeManager = plugin.getHomeManager();
+        return homeManager != null ? homeManager.getHomesInMemory() : 0;
+    }
+
+    @Override
+    public int getIndexedHomes() {
+        HomeManager homeManager = plugin.getHomeManager();
+        return homeManager != null ? homeManager.getSpatialIndex().size() : 0;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, replacing the metrics of a previous instance of the plugin.
+     * A failure is logged and does not prevent the plugin from running.
+     */
+    public void register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            if (mBeanServer.isRegistered(name)) {
+                mBeanServer.unregisterMBean(name);
+            }
+            mBeanServer.registerMBean(this, name);
+            this.registeredName = name;
+        } catch (JMException e) {
+            plugin.getLogger().warning("Could not register the metrics MBean: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server.
+     * This method is called when the plugin is disabled.
+     */
+    public void unregister() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch (JMException e) {
+            plugin.getLogger().warning("Could not unregister the metrics MBean: " + e.getMessage());
+        }
+        registeredName = null;
+    }
+
+    private static double hitRate(LongAdder hits, LongAdder misses) {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+}
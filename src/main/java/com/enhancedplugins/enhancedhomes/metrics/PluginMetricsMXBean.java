@@ -0,0 +1,123 @@
+package com.enhancedplugins.enhancedhomes.metrics;
+
+import java.util.Map;
+
+/**
+ * The PluginMetricsMXBean interface is the management interface of the PluginMetrics, registered under
+ * com.enhancedplugins.enhancedhomes:type=Metrics so JVM monitoring tools can read the plugin's metrics.
+ * Latencies are composite data with count, meanMillis, p50Millis, p99Millis and maxMillis items.
+ */
+public interface PluginMetricsMXBean {
+
+    /**
+     * Retrieves the latency of reading the homes of one player from storage.
+     *
+     * @return The latency statistics.
+     */
+    LatencyHistogram.Snapshot getPlayerLoadLatency();
+
+    /**
+     * Retrieves the latency of reading the homes of every player from storage.
+     *
+     * @return The latency statistics.
+     */
+    LatencyHistogram.Snapshot getFullLoadLatency();
+
+    /**
+     * Retrieves the latency of writing a batch of players to storage.
+     *
+     * @return The latency statistics.
+     */
+    LatencyHistogram.Snapshot getSaveLatency();
+
+    /**
+     * Retrieves the latency of teleportations into loaded chunks, on the main thread.
+     *
+     * @return The latency statistics.
+     */
+    LatencyHistogram.Snapshot getLoadedChunkTeleportLatency();
+
+    /**
+     * Retrieves the latency of teleportations into unloaded chunks, on the main thread.
+     *
+     * @return The latency statistics.
+     */
+    LatencyHistogram.Snapshot getUnloadedChunkTeleportLatency();
+
+    /**
+     * Retrieves the number of bytes read from storage, or 0 if the storage cannot tell.
+     *
+     * @return The number of bytes read.
+     */
+    long getBytesRead();
+
+    /**
+     * Retrieves the number of bytes written to storage, or 0 if the storage cannot tell.
+     *
+     * @return The number of bytes written.
+     */
+    long getBytesWritten();
+
+    /**
+     * Retrieves the number of batches that could not be written to storage.
+     *
+     * @return The number of failed batches.
+     */
+    long getSaveFailures();
+
+    /**
+     * Retrieves the number of players whose last save failed and who are waiting for a retry.
+     *
+     * @return The number of players.
+     */
+    int getPlayersAwaitingSaveRetry();
+
+    /**
+     * Retrieves the number of commands run, by "command.outcome" key (e.g. "home.not_found").
+     *
+     * @return The command counts.
+     */
+    Map<String, Long> getCommandOutcomes();
+
+    /**
+     * Retrieves the number of pending teleportation warmups.
+     *
+     * @return The number of pending teleportation warmups.
+     */
+    int getPendingWarmups();
+
+    /**
+     * Retrieves the share of home lookups served from memory, between 0 and 1.
+     *
+     * @return The home cache hit rate.
+     */
+    double getHomeCacheHitRate();
+
+    /**
+     * Retrieves the share of home limit checks served from the cache, between 0 and 1.
+     *
+     * @return The limit cache hit rate.
+     */
+    double getLimitCacheHitRate();
+
+    /**
+     * Retrieves the number of players whose homes are in memory.
+     *
+     * @return The number of players whose homes are in memory.
+     */
+    int getPlayersInMemory();
+
+    /**
+     * Retrieves the number of homes in memory.
+     *
+     * @return The number of homes in memory.
+     */
+    int getHomesInMemory();
+
+    /**
+     * Retrieves the number of homes in the spatial index.
+     *
+     * @return The number of homes in the spatial index.
+     */
+    int getIndexedHomes();
+}
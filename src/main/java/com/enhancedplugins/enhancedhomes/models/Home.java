@@ -1,15 +1,27 @@
 package com.enhancedplugins.enhancedhomes.models;
 
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * The Home class represents a home of a player.
  * It contains the name of the home, the name of the world in which the home is located, and the coordinates of the home.
+ * Homes are immutable, so they can be shared between threads; moving a home creates a new instance.
+ * The world of a home is resolved once and cached until a world is loaded or unloaded (see invalidateWorlds).
  */
-public class Home {
-    private String name;
-    private String worldName;
-    private double x;
-    private double y;
-    private double z;
+public final class Home {
+    private static final AtomicInteger worldsGeneration = new AtomicInteger();
+    private final String name;
+    private final String worldName;
+    private final double x;
+    private final double y;
+    private final double z;
+    private volatile ResolvedWorld resolvedWorld;
 
     /**
      * Constructor for the Home class.
@@ -64,37 +76,83 @@ public class Home {
     public double getZ() { return z; }
 
     /**
-     * Sets the name of the home.
+     * Retrieves the world in which the home is located.
+     * The world is looked up by name only once per world load or unload.
      *
-     * @param name The new name of the home.
+     * @return The world, or null if the world is not loaded.
      */
-    public void setName(String name) { this.name = name; }
+    public World getWorld() {
+        return resolveWorld().world.get();
+    }
 
     /**
-     * Sets the name of the world in which the home is located.
+     * Retrieves the location of the home.
      *
-     * @param worldName The new name of the world.
+     * @return A new location, or null if the world is not loaded.
      */
-    public void setWorldName(String worldName) { this.worldName = worldName; }
+    public Location getLocation() {
+        World world = getWorld();
+        return world != null ? new Location(world, x, y, z) : null;
+    }
 
     /**
-     * Sets the X coordinate of the home.
-     *
-     * @param x The new X coordinate.
+     * Invalidates the cached world of every home.
+     * This method is called when a world is loaded or unloaded.
      */
-    public void setX(double x) { this.x = x; }
+    public static void invalidateWorlds() {
+        worldsGeneration.incrementAndGet();
+    }
 
     /**
-     * Sets the Y coordinate of the home.
+     * Resolves the world of the home, reusing the cached world if no world was loaded or unloaded since.
      *
-     * @param y The new Y coordinate.
+     * @return The resolved world.
      */
-    public void setY(double y) { this.y = y; }
+    private ResolvedWorld resolveWorld() {
+        int generation = worldsGeneration.get();
+        ResolvedWorld resolved = resolvedWorld;
+        if (resolved == null || resolved.generation != generation) {
+            World world = worldName != null ? Bukkit.getWorld(worldName) : null;
+            resolved = new ResolvedWorld(generation, new WeakReference<>(world));
+            resolvedWorld = resolved;
+        }
+        return resolved;
+    }
 
     /**
-     * Sets the Z coordinate of the home.
+     * Creates a copy of the home at another location.
      *
+     * @param worldName The name of the new world.
+     * @param x The new X coordinate.
+     * @param y The new Y coordinate.
      * @param z The new Z coordinate.
+     * @return The moved home.
+     */
+    public Home withLocation(String worldName, double x, double y, double z) {
+        return new Home(name, worldName, x, y, z);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Home home)) {
+            return false;
+        }
+        return name.equals(home.name) && Objects.equals(worldName, home.worldName)
+                && Double.compare(x, home.x) == 0 && Double.compare(y, home.y) == 0 && Double.compare(z, home.z) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, worldName, x, y, z);
+    }
+
+    /**
+     * The ResolvedWorld record caches the world of a home for a given generation of loaded worlds.
+     * The world is weakly referenced so a cached home never keeps an unloaded world in memory.
      */
-    public void setZ(double z) { this.z = z; }
-}
\ No newline at end of file
+    private record ResolvedWorld(int generation, WeakReference<World> world) {
+    }
+}
@@ -0,0 +1,166 @@
+package com.enhancedplugins.enhancedhomes.models;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * The PlayerHomes class holds the homes of a single player.
+ * Homes are indexed by their normalized (case-insensitive) name and kept in insertion order,
+ * so lookups, replacements and deletions are constant time and listings keep the order homes were set in.
+ * A sorted index of the names serves prefix completion without scanning every home.
+ * All methods are synchronized on the instance.
+ */
+public class PlayerHomes {
+    private final Map<String, Home> homes = new LinkedHashMap<>();
+    private final NavigableMap<String, String> sortedNames = new TreeMap<>();
+    private List<Home> snapshot;
+
+    /**
+     * Constructor for the PlayerHomes class.
+     *
+     * @param homes The initial homes, in listing order.
+     */
+    public PlayerHomes(Collection<Home> homes) {
+        this(homes, (home, renamedHome) -> {});
+    }
+
+    /**
+     * Constructor for the PlayerHomes class.
+     * Stored homes whose names only differ by case, such as Base and base set before names were case-insensitive,
+     * are all kept: the first one keeps its name and the next ones get a numbered suffix, such as base-2.
+     *
+     * @param homes The initial homes, in listing order.
+     * @param renameListener Called with each home renamed this way and its new version.
+     */
+    public PlayerHomes(Collection<Home> homes, BiConsumer<Home, Home> renameListener) {
+        Set<String> takenNames = null;
+        for (Home home : homes) {
+            String key = normalize(home.getName());
+            if (this.homes.containsKey(key)) {
+                if (takenNames == null) {
+                    takenNames = new HashSet<>();
+                    for (Home otherHome : homes) {
+                        takenNames.add(normalize(otherHome.getName()));
+                    }
+                }
+                String newName;
+                int suffix = 2;
+                do {
+                    newName = home.getName() + "-" + suffix++;
+                } while (!takenNames.add(normalize(newName)));
+                Home renamedHome = new Home(newName, home.getWorldName(), home.getX(), home.getY(), home.getZ());
+                renameListener.accept(home, renamedHome);
+                home = renamedHome;
+                key = normalize(newName);
+            }
+            this.homes.put(key, home);
+            this.sortedNames.put(key, home.getName());
+        }
+    }
+
+    /**
+     * Retrieves a home by name, ignoring case.
+     *
+     * @param homeName The name of the home.
+     * @return The home, or null if the player has no home with this name.
+     */
+    public synchronized Home get(String homeName) {
+        return homes.get(normalize(homeName));
+    }
+
+    /**
+     * Adds a home, or replaces the home with the same name in place.
+     *
+     * @param home The home.
+     */
+    public synchronized void put(Home home) {
+        homes.put(normalize(home.getName()), home);
+        sortedNames.put(normalize(home.getName()), home.getName());
+        snapshot = null;
+    }
+
+    /**
+     * Removes a home by name, ignoring case.
+     *
+     * @param homeName The name of the home.
+     * @return The removed home, or null if the player has no home with this name.
+     */
+    public synchronized Home remove(String homeName) {
+        Home removed = homes.remove(normalize(homeName));
+        if (removed != null) {
+            sortedNames.remove(normalize(homeName));
+            snapshot = null;
+        }
+        return removed;
+    }
+
+    /**
+     * Edits every home at once, keeping their order.
+     *
+     * @param edit Returns the home itself to keep it, another home with the same name to replace it, or null to remove it.
+     * @return The number of homes replaced or removed.
+     */
+    public synchronized int replaceAll(UnaryOperator<Home> edit) {
+        int changed = 0;
+        Iterator<Map.Entry<String, Home>> iterator = homes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Home> entry = iterator.next();
+            Home editedHome = edit.apply(entry.getValue());
+            if (editedHome == null) {
+                iterator.remove();
+                sortedNames.remove(entry.getKey());
+                changed++;
+            } else if (editedHome != entry.getValue()) {
+                entry.setValue(editedHome);
+                changed++;
+            }
+        }
+        if (changed > 0) {
+            snapshot = null;
+        }
+        return changed;
+    }
+
+    /**
+     * Retrieves the number of homes.
+     *
+     * @return The number of homes.
+     */
+    public synchronized int size() { return homes.size(); }
+
+    /**
+     * Retrieves the homes in listing order.
+     * The returned list is an unmodifiable snapshot that is reused until the homes change.
+     *
+     * @return The homes.
+     */
+    public synchronized List<Home> list() {
+        if (snapshot == null) {
+            snapshot = List.copyOf(homes.values());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Retrieves the names of the homes starting with a prefix, ignoring case, in alphabetical order.
+     * Only the matching range of the sorted index is visited.
+     *
+     * @param prefix The prefix typed so far.
+     * @return The matching home names.
+     */
+    public synchronized List<String> complete(String prefix) {
+        String normalizedPrefix = normalize(prefix);
+        return new ArrayList<>(sortedNames.subMap(normalizedPrefix, true, normalizedPrefix + Character.MAX_VALUE, false).values());
+    }
+
+    /**
+     * Normalizes a home name for lookups.
+     *
+     * @param homeName The name of the home.
+     * @return The normalized name.
+     */
+    public static String normalize(String homeName) {
+        return homeName.toLowerCase(Locale.ROOT);
+    }
+}
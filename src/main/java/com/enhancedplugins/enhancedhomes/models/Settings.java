@@ -0,0 +1,431 @@
+package com.enhancedplugins.enhancedhomes.models;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * The Settings class is an immutable, validated snapshot of config.yml.
+ * It is parsed once when the plugin is enabled or reloaded and replaced as a whole, so the hot paths read plain fields
+ * instead of looking up configuration paths, and a command always sees a consistent set of values.
+ */
+public final class Settings {
+    public static final int MAX_HOMES_LIMIT = 100;
+    public static final int MAX_SHARD_LEVELS = 2;
+    public static final Settings DEFAULTS = new Builder().build();
+    private static final List<String> STORAGE_TYPES = List.of("yaml", "journal", "sqlite");
+    private static final List<String> SYNC_TYPES = List.of("none", "socket");
+    private final boolean showPrefix;
+    private final boolean teleportSound;
+    private final boolean crossWorldTp;
+    private final boolean warmup;
+    private final int warmupTime;
+    private final int warmupCheckInterval;
+    private final boolean warmupCancelOnDamage;
+    private final boolean homesLimit;
+    private final int maxHomes;
+    private final int saveInterval;
+    private final int maxDirtyAge;
+    private final boolean lazyLoading;
+    private final int unloadDelay;
+    private final int offlineCacheSize;
+    private final String storage;
+    private final int journalCompactionInterval;
+    private final int homesShardLevels;
+    private final int nearRadius;
+    private final int nearMaxRadius;
+    private final boolean indexAllHomes;
+    private final boolean watchFiles;
+    private final int watchDebounce;
+    private final String sync;
+    private final String syncFolder;
+    private final int bulkPlayersPerTick;
+    private final int bulkTickBudget;
+
+    private Settings(Builder builder) {
+        this.showPrefix = builder.showPrefix;
+        this.teleportSound = builder.teleportSound;
+        this.crossWorldTp = builder.crossWorldTp;
+        this.warmup = builder.warmup;
+        this.warmupTime = builder.warmupTime;
+        this.warmupCheckInterval = builder.warmupCheckInterval;
+        this.warmupCancelOnDamage = builder.warmupCancelOnDamage;
+        this.homesLimit = builder.homesLimit;
+        this.maxHomes = builder.maxHomes;
+        this.saveInterval = builder.saveInterval;
+        this.maxDirtyAge = builder.maxDirtyAge;
+        this.lazyLoading = builder.lazyLoading;
+        this.unloadDelay = builder.unloadDelay;
+        this.offlineCacheSize = builder.offlineCacheSize;
+        this.storage = builder.storage;
+        this.journalCompactionInterval = builder.journalCompactionInterval;
+        this.homesShardLevels = builder.homesShardLevels;
+        this.nearRadius = builder.nearRadius;
+        this.nearMaxRadius = builder.nearMaxRadius;
+        this.indexAllHomes = builder.indexAllHomes;
+        this.watchFiles = builder.watchFiles;
+        this.watchDebounce = builder.watchDebounce;
+        this.sync = builder.sync;
+        this.syncFolder = builder.syncFolder;
+        this.bulkPlayersPerTick = builder.bulkPlayersPerTick;
+        this.bulkTickBudget = builder.bulkTickBudget;
+    }
+
+    /**
+     * Parses and validates the settings of a configuration.
+     * An invalid value is rejected with a log message and the previous value of the setting is kept.
+     *
+     * @param config The plugin configuration.
+     * @param previous The settings currently in use, or DEFAULTS when the plugin is enabled.
+     * @param logger The logger to report invalid values to.
+     * @return The new settings.
+     */
+    public static Settings load(ConfigurationSection config, Settings previous, Logger logger) {
+        Reader reader = new Reader(config, logger);
+        Builder builder = new Builder(previous);
+        builder.showPrefix = reader.getBoolean("show-prefix", previous.showPrefix);
+        builder.teleportSound = reader.getBoolean("teleport-sound", previous.teleportSound);
+        builder.crossWorldTp = reader.getBoolean("cross-world-tp", previous.crossWorldTp);
+        builder.warmup = reader.getBoolean("warmup", previous.warmup);
+        builder.warmupTime = reader.getInt("warmup-time", 0, Integer.MAX_VALUE, previous.warmupTime);
+        builder.warmupCheckInterval = reader.getInt("warmup-check-interval", 1, 200, previous.warmupCheckInterval);
+        builder.warmupCancelOnDamage = reader.getBoolean("warmup-cancel-on-damage", previous.warmupCancelOnDamage);
+        builder.homesLimit = reader.getBoolean("homes-limit", previous.homesLimit);
+        builder.maxHomes = reader.getInt("max-homes", 0, MAX_HOMES_LIMIT, previous.maxHomes);
+        builder.saveInterval = reader.getInt("save-interval", 1, Integer.MAX_VALUE, previous.saveInterval);
+        builder.maxDirtyAge = reader.getInt("max-dirty-age", builder.saveInterval, Integer.MAX_VALUE,
+                Math.max(builder.saveInterval, previous.maxDirtyAge));
+        builder.lazyLoading = reader.getBoolean("lazy-loading", previous.lazyLoading);
+        builder.unloadDelay = reader.getInt("unload-delay", 0, Integer.MAX_VALUE, previous.unloadDelay);
+        builder.offlineCacheSize = reader.getInt("offline-cache-size", 0, Integer.MAX_VALUE, previous.offlineCacheSize);
+        builder.storage = reader.getChoice("storage", STORAGE_TYPES, previous.storage);
+        builder.journalCompactionInterval = reader.getInt("journal-compaction-interval", 1, Integer.MAX_VALUE, previous.journalCompactionInterval);
+        builder.homesShardLevels = reader.getInt("homes-shard-levels", 0, MAX_SHARD_LEVELS, previous.homesShardLevels);
+        builder.nearMaxRadius = reader.getInt("near-max-radius", 1, 100_000, previous.nearMaxRadius);
+        builder.nearRadius = reader.getInt("near-radius", 1, builder.nearMaxRadius, Math.min(previous.nearRadius, builder.nearMaxRadius));
+        builder.indexAllHomes = reader.getBoolean("index-all-homes", previous.indexAllHomes);
+        builder.watchFiles = reader.getBoolean("watch-files", previous.watchFiles);
+        builder.watchDebounce = reader.getInt("watch-debounce", 50, 60_000, previous.watchDebounce);
+        builder.sync = reader.getChoice("sync", SYNC_TYPES, previous.sync);
+        builder.syncFolder = reader.getString("sync-folder", previous.syncFolder);
+        builder.bulkPlayersPerTick = reader.getInt("bulk-players-per-tick", 1, 100_000, previous.bulkPlayersPerTick);
+        builder.bulkTickBudget = reader.getInt("bulk-tick-budget", 1, 50, previous.bulkTickBudget);
+        return builder.build();
+    }
+
+    /**
+     * Retrieves whether messages are prefixed with the plugin prefix.
+     *
+     * @return Whether the prefix is shown.
+     */
+    public boolean isShowPrefix() { return showPrefix; }
+
+    /**
+     * Retrieves whether a sound is played when a player is teleported to a home.
+     *
+     * @return Whether the teleportation sound is played.
+     */
+    public boolean isTeleportSound() { return teleportSound; }
+
+    /**
+     * Retrieves whether players can teleport to homes in other worlds.
+     *
+     * @return Whether cross-world teleportation is enabled.
+     */
+    public boolean isCrossWorldTp() { return crossWorldTp; }
+
+    /**
+     * Retrieves whether teleportations are delayed by a warmup.
+     *
+     * @return Whether the warmup is enabled.
+     */
+    public boolean isWarmup() { return warmup; }
+
+    /**
+     * Retrieves the teleportation warmup.
+     *
+     * @return The warmup time, in seconds.
+     */
+    public int getWarmupTime() { return warmupTime; }
+
+    /**
+     * Retrieves how often the position of a player is checked during a warmup.
+     *
+     * @return The check interval, in ticks.
+     */
+    public int getWarmupCheckInterval() { return warmupCheckInterval; }
+
+    /**
+     * Retrieves whether taking damage cancels a warmup.
+     *
+     * @return Whether damage cancels the warmup.
+     */
+    public boolean isWarmupCancelOnDamage() { return warmupCancelOnDamage; }
+
+    /**
+     * Retrieves whether the number of homes is limited by max-homes.
+     *
+     * @return Whether the homes limit is enabled.
+     */
+    public boolean isHomesLimit() { return homesLimit; }
+
+    /**
+     * Retrieves the default maximum number of homes, between 0 and 100.
+     *
+     * @return The maximum number of homes.
+     */
+    public int getMaxHomes() { return maxHomes; }
+
+    /**
+     * Retrieves the delay after which a player whose homes stopped changing is saved.
+     *
+     * @return The save interval, in seconds.
+     */
+    public int getSaveInterval() { return saveInterval; }
+
+    /**
+     * Retrieves the maximum time a change can stay unsaved. It is never shorter than the save interval.
+     *
+     * @return The maximum dirty age, in seconds.
+     */
+    public int getMaxDirtyAge() { return maxDirtyAge; }
+
+    /**
+     * Retrieves whether homes are loaded when players join instead of at startup.
+     *
+     * @return Whether lazy loading is enabled.
+     */
+    public boolean isLazyLoading() { return lazyLoading; }
+
+    /**
+     * Retrieves the delay between a player quitting and their homes being unloaded.
+     *
+     * @return The unload delay, in seconds.
+     */
+    public int getUnloadDelay() { return unloadDelay; }
+
+    /**
+     * Retrieves the number of offline players whose homes are kept in memory.
+     *
+     * @return The offline cache size.
+     */
+    public int getOfflineCacheSize() { return offlineCacheSize; }
+
+    /**
+     * Retrieves the storage type.
+     *
+     * @return yaml, journal or sqlite.
+     */
+    public String getStorage() { return storage; }
+
+    /**
+     * Retrieves the interval between two compactions of the homes journal.
+     *
+     * @return The compaction interval, in seconds.
+     */
+    public int getJournalCompactionInterval() { return journalCompactionInterval; }
+
+    /**
+     * Retrieves the number of folder levels the player files of the YAML storage are spread over,
+     * each level named after the next two hex digits of the player's UUID.
+     *
+     * @return 0 for a flat homes folder, up to 2.
+     */
+    public int getHomesShardLevels() { return homesShardLevels; }
+
+    /**
+     * Retrieves the radius of /homes near when none is given.
+     *
+     * @return The default radius, in blocks.
+     */
+    public int getNearRadius() { return nearRadius; }
+
+    /**
+     * Retrieves the largest radius accepted by /homes near.
+     *
+     * @return The maximum radius, in blocks.
+     */
+    public int getNearMaxRadius() { return nearMaxRadius; }
+
+    /**
+     * Retrieves whether the spatial index holds the homes of offline players with lazy loading.
+     * With eager loading, every home is indexed anyway.
+     *
+     * @return Whether every home is indexed.
+     */
+    public boolean isIndexAllHomes() { return indexAllHomes; }
+
+    /**
+     * Retrieves whether the plugin folder is watched for homes files, config.yml and lang.yml edited outside of the game.
+     *
+     * @return Whether the file watcher is enabled.
+     */
+    public boolean isWatchFiles() { return watchFiles; }
+
+    /**
+     * Retrieves how long the file watcher waits without seeing a change before applying the changes it saw.
+     *
+     * @return The debounce delay, in milliseconds.
+     */
+    public int getWatchDebounce() { return watchDebounce; }
+
+    /**
+     * Retrieves how the changes of homes are exchanged with the other servers sharing the storage.
+     *
+     * @return none or socket.
+     */
+    public String getSync() { return sync; }
+
+    /**
+     * Retrieves the folder shared by the servers exchanging changes through sockets, relative to the plugin folder.
+     *
+     * @return The sync folder.
+     */
+    public String getSyncFolder() { return syncFolder; }
+
+    /**
+     * Retrieves the maximum number of players a bulk admin job edits per tick.
+     *
+     * @return The number of players per tick.
+     */
+    public int getBulkPlayersPerTick() { return bulkPlayersPerTick; }
+
+    /**
+     * Retrieves the time a bulk admin job may spend per tick, after which it continues on the next tick.
+     *
+     * @return The time budget per tick, in milliseconds.
+     */
+    public int getBulkTickBudget() { return bulkTickBudget; }
+
+    /**
+     * The Builder class collects the values of new settings by name, starting from the defaults or from other settings.
+     */
+    private static final class Builder {
+        private boolean showPrefix = true;
+        private boolean teleportSound = true;
+        private boolean crossWorldTp = false;
+        private boolean warmup = true;
+        private int warmupTime = 3;
+        private int warmupCheckInterval = 5;
+        private boolean warmupCancelOnDamage = true;
+        private boolean homesLimit = true;
+        private int maxHomes = 5;
+        private int saveInterval = 5;
+        private int maxDirtyAge = 30;
+        private boolean lazyLoading = true;
+        private int unloadDelay = 60;
+        private int offlineCacheSize = 500;
+        private String storage = "yaml";
+        private int journalCompactionInterval = 300;
+        private int homesShardLevels = 0;
+        private int nearRadius = 100;
+        private int nearMaxRadius = 500;
+        private boolean indexAllHomes = false;
+        private boolean watchFiles = false;
+        private int watchDebounce = 500;
+        private String sync = "none";
+        private String syncFolder = "sync";
+        private int bulkPlayersPerTick = 200;
+        private int bulkTickBudget = 5;
+
+        private Builder() {
+        }
+
+        private Builder(Settings settings) {
+            this.showPrefix = settings.showPrefix;
+            this.teleportSound = settings.teleportSound;
+            this.crossWorldTp = settings.crossWorldTp;
+            this.warmup = settings.warmup;
+            this.warmupTime = settings.warmupTime;
+            this.warmupCheckInterval = settings.warmupCheckInterval;
+            this.warmupCancelOnDamage = settings.warmupCancelOnDamage;
+            this.homesLimit = settings.homesLimit;
+            this.maxHomes = settings.maxHomes;
+            this.saveInterval = settings.saveInterval;
+            this.maxDirtyAge = settings.maxDirtyAge;
+            this.lazyLoading = settings.lazyLoading;
+            this.unloadDelay = settings.unloadDelay;
+            this.offlineCacheSize = settings.offlineCacheSize;
+            this.storage = settings.storage;
+            this.journalCompactionInterval = settings.journalCompactionInterval;
+            this.homesShardLevels = settings.homesShardLevels;
+            this.nearRadius = settings.nearRadius;
+            this.nearMaxRadius = settings.nearMaxRadius;
+            this.indexAllHomes = settings.indexAllHomes;
+            this.watchFiles = settings.watchFiles;
+            this.watchDebounce = settings.watchDebounce;
+            this.sync = settings.sync;
+            this.syncFolder = settings.syncFolder;
+            this.bulkPlayersPerTick = settings.bulkPlayersPerTick;
+            this.bulkTickBudget = settings.bulkTickBudget;
+        }
+
+        private Settings build() {
+            return new Settings(this);
+        }
+    }
+
+    /**
+     * The Reader class reads typed values from the configuration and reports the invalid ones.
+     */
+    private record Reader(ConfigurationSection config, Logger logger) {
+
+        boolean getBoolean(String path, boolean fallback) {
+            if (!config.isSet(path)) {
+                return fallback;
+            }
+            if (!config.isBoolean(path)) {
+                reject(path, "must be true or false", fallback);
+                return fallback;
+            }
+            return config.getBoolean(path);
+        }
+
+        int getInt(String path, int min, int max, int fallback) {
+            if (!config.isSet(path)) {
+                return fallback;
+            }
+            if (!config.isInt(path)) {
+                reject(path, "must be a whole number", fallback);
+                return fallback;
+            }
+            int value = config.getInt(path);
+            if (value < min || value > max) {
+                String range = max == Integer.MAX_VALUE ? "must be at least " + min : "must be between " + min + " and " + max;
+                reject(path, range, fallback);
+                return fallback;
+            }
+            return value;
+        }
+
+        String getChoice(String path, List<String> choices, String fallback) {
+            if (!config.isSet(path)) {
+                return fallback;
+            }
+            String value = String.valueOf(config.get(path)).toLowerCase(Locale.ROOT);
+            if (!choices.contains(value)) {
+                reject(path, "must be one of " + String.join(", ", choices), fallback);
+                return fallback;
+            }
+            return value;
+        }
+
+        String getString(String path, String fallback) {
+            if (!config.isSet(path)) {
+                return fallback;
+            }
+            if (!config.isString(path) || config.getString(path).isBlank()) {
+                reject(path, "must be a non-empty text", fallback);
+                return fallback;
+            }
+            return config.getString(path);
+        }
+
+        private void reject(String path, String reason, Object fallback) {
+            logger.warning("Invalid value '" + config.get(path) + "' for " + path + " in config.yml: " + reason
+                    + ". Keeping " + fallback + ".");
+        }
+    }
+}
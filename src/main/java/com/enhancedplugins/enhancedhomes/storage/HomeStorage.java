@@ -0,0 +1,119 @@
+package com.enhancedplugins.enhancedhomes.storage;
+
+import com.enhancedplugins.enhancedhomes.models.Home;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The HomeStorage interface is implemented by every way of persisting homes.
+ * The HomeManager keeps homes in memory and only goes through the storage to read and write the homes of a whole player.
+ * Implementations are called from background threads and must be thread-safe.
+ */
+public interface HomeStorage {
+
+    /**
+     * Reads the homes of a player.
+     *
+     * @param playerId The UUID of the player.
+     * @return A new list of the player's homes, empty if the player has none.
+     * @throws IOException If the homes could not be read.
+     */
+    List<Home> loadHomes(UUID playerId) throws IOException;
+
+    /**
+     * Reads the homes of every player.
+     *
+     * @return A new map of every player's homes, without players who have no homes.
+     * @throws IOException If the homes could not be read.
+     */
+    Map<UUID, List<Home>> loadAllHomes() throws IOException;
+
+    /**
+     * Reads the homes of the players whose stored homes were changed outside of the plugin since this storage
+     * last read or wrote them, e.g. files edited or restored by hand.
+     * Storages that cannot tell which players changed return null, and are read again in full on reload.
+     *
+     * @return A new map of the homes of each changed player, with an empty list for deleted players, or null.
+     * @throws IOException If the homes could not be read.
+     */
+    default Map<UUID, List<Home>> loadChangedHomes() throws IOException {
+        return null;
+    }
+
+    /**
+     * Reads the homes of the given players if their stored homes were changed outside of the plugin since this storage
+     * last read or wrote them. Players whose stored homes did not change are left out.
+     * Storages that cannot tell which players changed return null.
+     *
+     * @param playerIds The UUIDs of the players to check.
+     * @return A new map of the homes of each changed player, with an empty list for deleted players, or null.
+     * @throws IOException If the homes could not be read.
+     */
+    default Map<UUID, List<Home>> loadChangedHomes(Collection<UUID> playerIds) throws IOException {
+        return null;
+    }
+
+    /**
+     * Forgets what this storage knows of the stored homes of a player, because another server changed them.
+     * Storages that skip writes of unchanged homes must write the next homes of the player in full.
+     *
+     * @param playerId The UUID of the player.
+     */
+    default void forget(UUID playerId) {}
+
+    /**
+     * Replaces the stored homes of a player.
+     *
+     * @param playerId The UUID of the player.
+     * @param homes The player's homes.
+     * @throws IOException If the homes could not be written.
+     */
+    void saveHomes(UUID playerId, List<Home> homes) throws IOException;
+
+    /**
+     * Replaces the stored homes of several players at once.
+     * Storages that support it write the whole batch at once; by default, each player is saved in turn.
+     *
+     * @param homesByPlayer The homes of each player to save.
+     * @throws IOException If the homes could not be written.
+     */
+    default void saveAllHomes(Map<UUID, List<Home>> homesByPlayer) throws IOException {
+        for (Map.Entry<UUID, List<Home>> entry : homesByPlayer.entrySet()) {
+            saveHomes(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Retrieves the number of bytes read from disk since the storage was opened.
+     * Storages that cannot tell, such as the database, return 0.
+     *
+     * @return The number of bytes read.
+     */
+    default long getBytesRead() { return 0; }
+
+    /**
+     * Retrieves the number of bytes written to disk since the storage was opened.
+     * Storages that cannot tell, such as the database, return 0.
+     *
+     * @return The number of bytes written.
+     */
+    default long getBytesWritten() { return 0; }
+
+    /**
+     * Starts the background maintenance of the storage, such as moving files to a new layout.
+     * It is called once the storage is in use, after the previous storage of a reload was closed,
+     * so two storages never reorganize the same files at once.
+     */
+    default void startMaintenance() {}
+
+    /**
+     * Releases the resources of the storage once every pending write has been saved.
+     *
+     * @throws IOException If the storage could not be closed cleanly.
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,293 @@
+package com.enhancedplugins.enhancedhomes.storage;
+
+import com.enhancedplugins.enhancedhomes.models.Settings;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * The HomesFolder class locates the player files of a homes folder. Files are either all in the folder itself,
+ * or spread over one or two levels of sub-folders named after the first hex digits of the player's UUID,
+ * such as homes/ab/cd/abcd1234-....yml, so no folder holds more than a few thousand files.
+ * The layout the folder is in, or is being moved to, is recorded in its .layout file; a folder without one is flat.
+ * While files are moved from a layout to another, a player's file may be at any level, so lookups check every level
+ * and keep the most recently modified file.
+ * Files that are not player files, or that are at a level that does not match their name, are reported once and ignored.
+ */
+public final class HomesFolder {
+    /**
+     * The suffix of player files.
+     */
+    public static final String FILE_SUFFIX = ".yml";
+    private static final String LAYOUT_FILE = ".layout";
+    private static final String MOVING_FLAG = "moving";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private final Path folder;
+    private final int shardLevels;
+    private final Logger logger;
+    private final Set<Path> reportedFiles = ConcurrentHashMap.newKeySet();
+    private volatile boolean mixed;
+
+    /**
+     * Constructor for the HomesFolder class.
+     *
+     * @param folder The homes folder.
+     * @param shardLevels The number of sub-folder levels player files are written to, between 0 and 2.
+     * @param logger The logger the ignored files are reported to.
+     */
+    public HomesFolder(Path folder, int shardLevels, Logger logger) {
+        this.folder = folder;
+        this.shardLevels = shardLevels;
+        this.logger = logger;
+        String[] layout = readLayout(folder);
+        this.mixed = layout.length != 1 || !String.valueOf(shardLevels).equals(layout[0]);
+    }
+
+    /**
+     * Opens a homes folder to write player files in the layout recorded in it, e.g. to export or import homes.
+     * Files are looked up in every layout, since a server may be changing the layout of the folder meanwhile.
+     *
+     * @param folder The homes folder.
+     * @param logger The logger the ignored files are reported to.
+     * @return The homes folder.
+     */
+    public static HomesFolder open(Path folder, Logger logger) {
+        String[] layout = readLayout(folder);
+        int shardLevels = 0;
+        try {
+            shardLevels = Math.max(0, Math.min(Settings.MAX_SHARD_LEVELS, Integer.parseInt(layout[0])));
+        } catch (NumberFormatException e) {
+            // No layout file, or an invalid one: files may be anywhere, which the lookups handle
+        }
+        HomesFolder homesFolder = new HomesFolder(folder, shardLevels, logger);
+        homesFolder.mixed = true;
+        return homesFolder;
+    }
+
+    /**
+     * Retrieves the homes folder.
+     *
+     * @return The folder.
+     */
+    public Path getFolder() { return folder; }
+
+    /**
+     * Retrieves the number of sub-folder levels player files are written to.
+     *
+     * @return The number of levels, between 0 and 2.
+     */
+    public int getShardLevels() { return shardLevels; }
+
+    /**
+     * Retrieves whether some player files may still be in another layout than the one they are written to.
+     *
+     * @return Whether the folder is in the middle of a layout change.
+     */
+    public boolean isMixed() { return mixed; }
+
+    /**
+     * Retrieves the path a player file is written to.
+     *
+     * @param playerId The UUID of the player.
+     * @return The path of the file, which may not exist.
+     */
+    public Path playerFile(UUID playerId) {
+        return playerFile(playerId, shardLevels);
+    }
+
+    /**
+     * Retrieves the path of a player file in a given layout.
+     *
+     * @param playerId The UUID of the player.
+     * @param levels The number of sub-folder levels.
+     * @return The path of the file, which may not exist.
+     */
+    public Path playerFile(UUID playerId, int levels) {
+        String name = playerId.toString();
+        Path parent = folder;
+        for (int level = 0; level < levels; level++) {
+            parent = parent.resolve(name.substring(level * 2, level * 2 + 2));
+        }
+        return parent.resolve(name + FILE_SUFFIX);
+    }
+
+    /**
+     * Finds the file holding the homes of a player. While the layout changes, the other layouts are checked first
+     * and the written one last, since files are only ever moved towards it.
+     *
+     * @param playerId The UUID of the player.
+     * @return The most recently modified file of the player, or the path the file is written to if there is none.
+     */
+    public Path findPlayerFile(UUID playerId) {
+        Path writtenFile = playerFile(playerId);
+        if (!mixed) {
+            return writtenFile;
+        }
+        Path found = null;
+        for (int levels = 0; levels <= Settings.MAX_SHARD_LEVELS; levels++) {
+            if (levels != shardLevels) {
+                Path file = playerFile(playerId, levels);
+                if (Files.exists(file) && (found == null || isNewer(file, found))) {
+                    found = file;
+                }
+            }
+        }
+        if (found == null || (Files.exists(writtenFile) && !isNewer(found, writtenFile))) {
+            return writtenFile;
+        }
+        return found;
+    }
+
+    /**
+     * Lists the file of every player of the folder. A player with a file in several layouts gets the most recently modified one.
+     *
+     * @return A new map of the file of each player.
+     * @throws IOException If the folder could not be listed.
+     */
+    public Map<UUID, Path> listPlayerFiles() throws IOException {
+        Map<UUID, Path> playerFiles = new HashMap<>();
+        forEachPlayerFile((playerId, file) -> {
+            Path otherFile = playerFiles.putIfAbsent(playerId, file);
+            if (otherFile != null && (isNewer(file, otherFile) || (!isNewer(otherFile, file) && file.equals(playerFile(playerId))))) {
+                playerFiles.put(playerId, file);
+            }
+        });
+        return playerFiles;
+    }
+
+    /**
+     * Visits every player file of the folder, at any level. Temporary files and files deleted while the folder is walked
+     * are skipped; other files that are not player files, or are at a level that does not match their name, are reported
+     * the first time they are seen and skipped.
+     * A player with a file in several layouts is visited once per file.
+     *
+     * @param visitor The visitor.
+     * @throws IOException If the folder could not be walked, or the visitor failed.
+     */
+    public void forEachPlayerFile(PlayerFileVisitor visitor) throws IOException {
+        if (!Files.isDirectory(folder)) {
+            return;
+        }
+        Files.walkFileTree(folder, EnumSet.noneOf(FileVisitOption.class), Settings.MAX_SHARD_LEVELS + 1, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                String fileName = file.getFileName().toString();
+                if (!attributes.isRegularFile() || fileName.startsWith(".") || fileName.endsWith(TEMP_SUFFIX)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                UUID playerId = parsePlayerId(fileName);
+                if (playerId != null && file.equals(playerFile(playerId, file.getNameCount() - folder.getNameCount() - 1))) {
+                    visitor.visit(playerId, file);
+                } else if (reportedFiles.add(file)) {
+                    logger.warning("Ignoring " + file + ": " + (playerId == null
+                            ? "homes files must be named after the UUID of their player, such as " + new UUID(0, 0) + FILE_SUFFIX
+                            : "it is not in the sub-folder matching its name, expected " + playerFile(playerId, shardLevels)));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                if (e instanceof NoSuchFileException) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Records that the folder is being moved to its layout, so an interrupted move is resumed and lookups check every level.
+     *
+     * @throws IOException If the layout file could not be written.
+     */
+    void markMoving() throws IOException {
+        mixed = true;
+        writeLayout(shardLevels + " " + MOVING_FLAG);
+    }
+
+    /**
+     * Records that every player file is in the layout of the folder.
+     *
+     * @throws IOException If the layout file could not be written.
+     */
+    void markSettled() throws IOException {
+        writeLayout(String.valueOf(shardLevels));
+        mixed = false;
+    }
+
+    /**
+     * Parses the UUID of the player a file belongs to.
+     *
+     * @param fileName The name of the file.
+     * @return The UUID of the player, or null if the file is not a player file, e.g. a temporary file.
+     */
+    public static UUID parsePlayerId(String fileName) {
+        if (!fileName.endsWith(FILE_SUFFIX)) {
+            return null;
+        }
+        try {
+            return UUID.fromString(fileName.substring(0, fileName.length() - FILE_SUFFIX.length()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Tells whether a file was modified after another. A file that does not exist is older than any other.
+     *
+     * @param file The file.
+     * @param otherFile The other file.
+     * @return Whether the file is the newer one.
+     */
+    static boolean isNewer(Path file, Path otherFile) {
+        return file.toFile().lastModified() > otherFile.toFile().lastModified();
+    }
+
+    private void writeLayout(String layout) throws IOException {
+        Files.createDirectories(folder);
+        Path tempFile = folder.resolve(LAYOUT_FILE + TEMP_SUFFIX);
+        Files.writeString(tempFile, layout + "\n", StandardCharsets.UTF_8);
+        Files.move(tempFile, folder.resolve(LAYOUT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the layout file of a folder.
+     *
+     * @param folder The homes folder.
+     * @return The number of levels, followed by the moving flag while files are moved; {"0"} without a layout file.
+     */
+    private static String[] readLayout(Path folder) {
+        try {
+            return Files.readString(folder.resolve(LAYOUT_FILE), StandardCharsets.UTF_8).trim().split("\\s+");
+        } catch (NoSuchFileException e) {
+            return new String[]{"0"};
+        } catch (IOException e) {
+            return new String[]{"", MOVING_FLAG};
+        }
+    }
+
+    /**
+     * The PlayerFileVisitor interface is called for each player file of a folder.
+     */
+    @FunctionalInterface
+    public interface PlayerFileVisitor {
+        /**
+         * Visits a player file.
+         *
+         * @param playerId The UUID of the player.
+         * @param file The file.
+         * @throws IOException To stop the walk.
+         */
+        void visit(UUID playerId, Path file) throws IOException;
+    }
+}
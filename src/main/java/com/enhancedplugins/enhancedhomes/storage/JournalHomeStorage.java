@@ -0,0 +1,464 @@
+package com.enhancedplugins.enhancedhomes.storage;
+
+import com.enhancedplugins.enhancedhomes.models.Home;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * The JournalHomeStorage class stores every home change as a small record appended to a shared journal file.
+ * A periodic compaction folds the journal into a snapshot file and empties the journal. The snapshot is written
+ * without holding the storage lock, so saves are not held up by it; only the records appended meanwhile are kept in the journal.
+ * At startup, the snapshot is read and the journal is replayed on top of it.
+ * Each record is framed with its length and a CRC32, so a journal cut off mid-record by a crash is truncated
+ * back to its last complete record instead of failing the load.
+ * Each batch of saves is synced to disk once, whatever the number of players in it.
+ */
+public class JournalHomeStorage implements HomeStorage {
+    private static final byte RECORD_SET = 1;
+    private static final byte RECORD_DELETE = 2;
+    private static final int MAX_RECORD_LENGTH = 64 * 1024;
+    private final JavaPlugin plugin;
+    private final File snapshotFile;
+    private final File journalFile;
+    private final Map<UUID, Map<String, Home>> storedHomes = new HashMap<>();
+    private final Object compactionLock = new Object();
+    private int compactionIntervalSeconds;
+    private BukkitTask compactionTask;
+    private boolean closed;
+    private FileOutputStream journalOut;
+    private DataOutputStream journal;
+    private long rollBackLength = -1;
+    private int journalRecords;
+    private long bytesRead;
+    private long bytesWritten;
+
+    /**
+     * Constructor for the JournalHomeStorage class.
+     * It reads the snapshot and replays the journal; the periodic compaction starts with startMaintenance.
+     *
+     * @param plugin The JavaPlugin instance.
+     * @param compactionIntervalSeconds The interval between two compactions, in seconds.
+     * @throws IOException If the snapshot or the journal could not be read.
+     */
+    public JournalHomeStorage(JavaPlugin plugin, int compactionIntervalSeconds) throws IOException {
+        this.plugin = plugin;
+        this.snapshotFile = new File(plugin.getDataFolder(), "homes.snapshot");
+        this.journalFile = new File(plugin.getDataFolder(), "homes.journal");
+        replay(snapshotFile);
+        this.journalRecords = replay(journalFile);
+        this.journal = openJournal();
+        this.compactionIntervalSeconds = compactionIntervalSeconds;
+    }
+
+    @Override
+    public synchronized List<Home> loadHomes(UUID playerId) {
+        Map<String, Home> homes = storedHomes.get(playerId);
+        return homes != null ? new ArrayList<>(homes.values()) : new ArrayList<>();
+    }
+
+    @Override
+    public synchronized Map<UUID, List<Home>> loadAllHomes() {
+        Map<UUID, List<Home>> allHomes = new HashMap<>();
+        storedHomes.forEach((playerId, homes) -> allHomes.put(playerId, new ArrayList<>(homes.values())));
+        return allHomes;
+    }
+
+    /**
+     * Appends the differences between the stored homes of a player and the given homes to the journal, see saveAllHomes.
+     *
+     * @param playerId The UUID of the player.
+     * @param homes The player's homes.
+     * @throws IOException If the journal could not be written.
+     */
+    @Override
+    public synchronized void saveHomes(UUID playerId, List<Home> homes) throws IOException {
+        saveAllHomes(Collections.singletonMap(playerId, homes));
+    }
+
+    /**
+     * Appends the differences between the stored homes of a batch of players and the given homes to the journal,
+     * then syncs the journal once for the whole batch. Unchanged homes produce no record at all.
+     * If the batch cannot be written or synced, the journal is truncated back to the end of the previous batch,
+     * so a failed batch neither half-applies nor hides the records appended after it from the replay;
+     * if even that fails, it is truncated before the next batch is written.
+     *
+     * @param homesByPlayer The homes of each player to save.
+     * @throws IOException If the journal could not be written; none of the batch is saved then.
+     */
+    @Override
+    public synchronized void saveAllHomes(Map<UUID, List<Home>> homesByPlayer) throws IOException {
+        Map<UUID, Map<String, Home>> savedHomes = new LinkedHashMap<>();
+        repairJournal();
+        long batchStart = journalOut.getChannel().size();
+        int journalSize = journal.size();
+        int records = 0;
+        try {
+            for (Map.Entry<UUID, List<Home>> entry : homesByPlayer.entrySet()) {
+                UUID playerId = entry.getKey();
+                Map<String, Home> previousHomes = storedHomes.getOrDefault(playerId, Collections.emptyMap());
+                Map<String, Home> currentHomes = new LinkedHashMap<>();
+                for (Home home : entry.getValue()) {
+                    currentHomes.put(home.getName(), home);
+                }
+                for (String homeName : previousHomes.keySet()) {
+                    if (!currentHomes.containsKey(homeName)) {
+                        writeRecord(journal, encodeDelete(playerId, homeName));
+                        records++;
+                    }
+                }
+                for (Home home : currentHomes.values()) {
+                    if (!home.equals(previousHomes.get(home.getName()))) {
+                        writeRecord(journal, encodeSet(playerId, home));
+                        records++;
+                    }
+                }
+                savedHomes.put(playerId, currentHomes);
+            }
+            if (records > 0) {
+                journal.flush();
+                journalOut.getFD().sync();
+            }
+        } catch (IOException e) {
+            rollBackJournal(batchStart);
+            throw e;
+        }
+        bytesWritten += journal.size() - journalSize;
+        journalRecords += records;
+
+        savedHomes.forEach((playerId, currentHomes) -> {
+            if (currentHomes.isEmpty()) {
+                storedHomes.remove(playerId);
+            } else {
+                storedHomes.put(playerId, currentHomes);
+            }
+        });
+    }
+
+    @Override
+    public synchronized long getBytesRead() { return bytesRead; }
+
+    @Override
+    public synchronized long getBytesWritten() { return bytesWritten; }
+
+    /**
+     * Folds the journal into a new snapshot and empties the journal.
+     * The stored homes are copied under the storage lock, then written to a temporary file, synced and renamed into place
+     * without it, so saves go on meanwhile. Once the new snapshot is in place, the journal is cut back, under the lock,
+     * to the records appended since the copy. A crash leaves either the old or the new snapshot next to a journal
+     * holding at least every record not in it; replaying the journal over either of them gives the same homes.
+     *
+     * @throws IOException If the snapshot could not be written, or the journal could not be cut back.
+     */
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+            Map<UUID, Map<String, Home>> copiedHomes;
+            long copiedLength;
+            int copiedRecords;
+            synchronized (this) {
+                if (journalRecords == 0) {
+                    return;
+                }
+                // Saves replace the homes map of a player instead of changing it, so the maps can be shared
+                copiedHomes = new HashMap<>(storedHomes);
+                repairJournal();
+                copiedLength = journalOut.getChannel().size();
+                copiedRecords = journalRecords;
+            }
+
+            File tempFile = new File(snapshotFile.getPath() + ".tmp");
+            int snapshotSize;
+            try (FileOutputStream fileOut = new FileOutputStream(tempFile);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+                for (Map.Entry<UUID, Map<String, Home>> entry : copiedHomes.entrySet()) {
+                    for (Home home : entry.getValue().values()) {
+                        writeRecord(out, encodeSet(entry.getKey(), home));
+                    }
+                }
+                out.flush();
+                fileOut.getFD().sync();
+                snapshotSize = out.size();
+            }
+            Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            synchronized (this) {
+                bytesWritten += snapshotSize;
+                truncateJournal(copiedLength);
+                journalRecords -= copiedRecords;
+            }
+        }
+    }
+
+    /**
+     * Schedules the periodic compaction.
+     */
+    @Override
+    public synchronized void startMaintenance() {
+        if (closed || compactionTask != null) {
+            return;
+        }
+        long periodTicks = Math.max(1, compactionIntervalSeconds) * 20L;
+        this.compactionTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+            try {
+                compact();
+            } catch (IOException e) {
+                plugin.getLogger().severe("Could not compact the homes journal: " + e.getMessage());
+            }
+        }, periodTicks, periodTicks);
+    }
+
+    /**
+     * Changes the interval between two compactions, rescheduling the compaction if it already started.
+     *
+     * @param compactionIntervalSeconds The interval between two compactions, in seconds.
+     */
+    public synchronized void setCompactionInterval(int compactionIntervalSeconds) {
+        if (compactionIntervalSeconds == this.compactionIntervalSeconds) {
+            return;
+        }
+        this.compactionIntervalSeconds = compactionIntervalSeconds;
+        if (compactionTask != null) {
+            compactionTask.cancel();
+            compactionTask = null;
+            startMaintenance();
+        }
+    }
+
+    /**
+     * Stops the compaction, folds the journal a last time and closes it.
+     *
+     * @throws IOException If the journal could not be compacted or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            if (compactionTask != null) {
+                compactionTask.cancel();
+            }
+        }
+        compact();
+        synchronized (this) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Removes the records folded into the snapshot from the start of the journal and reopens it.
+     * If records were appended since, they are copied to a new journal, synced and renamed over the old one.
+     * The caller must hold the storage lock.
+     *
+     * @param foldedLength The length of the journal folded into the snapshot.
+     * @throws IOException If the journal could not be cut back, e.g. it is shorter than the folded length;
+     *                     it then still holds every record, which replays the same.
+     */
+    private void truncateJournal(long foldedLength) throws IOException {
+        long journalLength = journalOut.getChannel().size();
+        if (journalLength < foldedLength) {
+            throw new IOException("The homes journal is " + journalLength + " bytes long, shorter than the "
+                    + foldedLength + " bytes folded into the snapshot");
+        }
+        journal.close();
+        try {
+            if (journalLength == foldedLength) {
+                try (FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.WRITE)) {
+                    channel.truncate(0);
+                }
+            } else {
+                File tempFile = new File(journalFile.getPath() + ".tmp");
+                try (FileChannel in = FileChannel.open(journalFile.toPath(), StandardOpenOption.READ);
+                     FileChannel out = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                             StandardOpenOption.TRUNCATE_EXISTING)) {
+                    long position = foldedLength;
+                    while (position < journalLength) {
+                        long transferred = in.transferTo(position, journalLength - position, out);
+                        if (transferred <= 0) {
+                            throw new IOException("The homes journal ended at " + position + " bytes instead of " + journalLength);
+                        }
+                        position += transferred;
+                    }
+                    out.force(true);
+                    bytesWritten += journalLength - foldedLength;
+                }
+                Files.move(tempFile.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } finally {
+            this.journal = openJournal();
+        }
+    }
+
+    /**
+     * Opens the journal for appending.
+     *
+     * @return The journal output stream.
+     * @throws IOException If the journal could not be opened.
+     */
+    private DataOutputStream openJournal() throws IOException {
+        this.journalOut = new FileOutputStream(journalFile, true);
+        return new DataOutputStream(new BufferedOutputStream(journalOut));
+    }
+
+    /**
+     * Discards the records of a batch that could not be saved: the records still buffered are dropped,
+     * and the journal is truncated back to its length before the batch.
+     * If it cannot be truncated, it is truncated again before the next batch or compaction, see repairJournal.
+     *
+     * @param batchStart The length of the journal before the batch.
+     */
+    private void rollBackJournal(long batchStart) {
+        this.journal = new DataOutputStream(new BufferedOutputStream(journalOut));
+        this.rollBackLength = batchStart;
+        try {
+            repairJournal();
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not roll back the homes journal, retrying before the next save: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Truncates the journal back to the end of the last saved batch, if a failed batch could not be rolled back yet,
+     * so no record is ever appended after an incomplete one. The caller must hold the storage lock.
+     *
+     * @throws IOException If the journal could not be truncated.
+     */
+    private void repairJournal() throws IOException {
+        if (rollBackLength >= 0) {
+            journalOut.getChannel().truncate(rollBackLength);
+            rollBackLength = -1;
+        }
+    }
+
+    /**
+     * Applies every record of a file to the stored homes.
+     * If the file ends with an incomplete or corrupted record, the file is truncated to its last complete record.
+     *
+     * @param file The snapshot or journal file.
+     * @return The number of records applied.
+     * @throws IOException If the file could not be read.
+     */
+    private int replay(File file) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        int records = 0;
+        long validLength = 0;
+        long fileLength = file.length();
+        bytesRead += fileLength;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (validLength < fileLength) {
+                byte[] payload = readRecord(in);
+                if (payload == null) {
+                    break;
+                }
+                apply(payload);
+                records++;
+                validLength += Integer.BYTES + payload.length + Long.BYTES;
+            }
+        }
+        if (validLength < fileLength) {
+            plugin.getLogger().warning("Discarding " + (fileLength - validLength) + " bytes of incomplete records at the end of " + file.getName());
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Reads the next framed record of a file.
+     *
+     * @param in The file input stream.
+     * @return The record payload, or null if the record is incomplete or corrupted.
+     * @throws IOException If the file could not be read.
+     */
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            long checksum = in.readLong();
+            return checksum == checksum(payload) ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes a record framed with its length and checksum.
+     *
+     * @param out The output stream.
+     * @param payload The record payload.
+     * @throws IOException If the record could not be written.
+     */
+    private static void writeRecord(DataOutputStream out, byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.writeLong(checksum(payload));
+    }
+
+    /**
+     * Applies a record to the stored homes.
+     *
+     * @param payload The record payload.
+     * @throws IOException If the record is malformed.
+     */
+    private void apply(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        UUID playerId = new UUID(in.readLong(), in.readLong());
+        String homeName = in.readUTF();
+        if (type == RECORD_SET) {
+            Home home = new Home(homeName, in.readUTF(), in.readDouble(), in.readDouble(), in.readDouble());
+            storedHomes.computeIfAbsent(playerId, id -> new LinkedHashMap<>()).put(homeName, home);
+        } else if (type == RECORD_DELETE) {
+            Map<String, Home> homes = storedHomes.get(playerId);
+            if (homes != null) {
+                homes.remove(homeName);
+                if (homes.isEmpty()) {
+                    storedHomes.remove(playerId);
+                }
+            }
+        }
+    }
+
+    private static byte[] encodeSet(UUID playerId, Home home) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(RECORD_SET);
+        out.writeLong(playerId.getMostSignificantBits());
+        out.writeLong(playerId.getLeastSignificantBits());
+        out.writeUTF(home.getName());
+        out.writeUTF(Objects.toString(home.getWorldName(), ""));
+        out.writeDouble(home.getX());
+        out.writeDouble(home.getY());
+        out.writeDouble(home.getZ());
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeDelete(UUID playerId, String homeName) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(RECORD_DELETE);
+        out.writeLong(playerId.getMostSignificantBits());
+        out.writeLong(playerId.getLeastSignificantBits());
+        out.writeUTF(homeName);
+        return bytes.toByteArray();
+    }
+
+    private static long checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,33 @@
+package com.enhancedplugins.enhancedhomes.storage;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The SaveFailedException class is thrown by storages that save each player on their own
+ * when only some players of a batch could not be saved.
+ * The players it does not list were saved; any other IOException means that none of the batch was saved.
+ */
+public class SaveFailedException extends IOException {
+    private final Set<UUID> failedPlayers;
+
+    /**
+     * Constructor for the SaveFailedException class.
+     *
+     * @param failedPlayers The UUIDs of the players who could not be saved.
+     * @param cause The first error encountered.
+     */
+    public SaveFailedException(Set<UUID> failedPlayers, IOException cause) {
+        super(failedPlayers.size() + " players could not be saved: " + cause.getMessage(), cause);
+        this.failedPlayers = Collections.unmodifiableSet(failedPlayers);
+    }
+
+    /**
+     * Retrieves the players who could not be saved.
+     *
+     * @return The UUIDs of the players.
+     */
+    public Set<UUID> getFailedPlayers() { return failedPlayers; }
+}
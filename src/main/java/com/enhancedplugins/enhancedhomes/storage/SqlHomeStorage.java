@@ -0,0 +1,227 @@
+package com.enhancedplugins.enhancedhomes.storage;
+
+import com.enhancedplugins.enhancedhomes.models.Home;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The SqlHomeStorage class stores homes in an embedded SQLite database, in a single table keyed by (uuid, name).
+ * Every statement runs on a dedicated I/O thread which owns the connection, and batches of players are
+ * written in a single transaction.
+ * On first use, the existing per-player YAML files are migrated into the database.
+ */
+public class SqlHomeStorage implements HomeStorage {
+    private static final String MIGRATED_MARKER = ".migrated-to-sqlite";
+    private final JavaPlugin plugin;
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "EnhancedHomes Database");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Connection connection;
+
+    /**
+     * Constructor for the SqlHomeStorage class.
+     * It opens the database, creates the homes table and migrates the YAML files if they have not been migrated yet.
+     *
+     * @param plugin The JavaPlugin instance.
+     * @throws IOException If the database could not be opened or the migration failed.
+     */
+    public SqlHomeStorage(JavaPlugin plugin) throws IOException {
+        this.plugin = plugin;
+        File databaseFile = new File(plugin.getDataFolder(), "homes.db");
+        execute(() -> {
+            Class.forName("org.sqlite.JDBC");
+            connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+            createSchema(connection);
+            return null;
+        });
+        migrateYamlHomes();
+    }
+
+    /**
+     * Switches a database to write-ahead logging and creates the homes table if it does not exist yet.
+     *
+     * @param connection The connection to the database.
+     * @throws SQLException If the table could not be created.
+     */
+    public static void createSchema(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("CREATE TABLE IF NOT EXISTS homes ("
+                    + "uuid CHAR(36) NOT NULL, "
+                    + "name VARCHAR(64) NOT NULL, "
+                    + "world VARCHAR(64), "
+                    + "x DOUBLE NOT NULL, "
+                    + "y DOUBLE NOT NULL, "
+                    + "z DOUBLE NOT NULL, "
+                    + "position INTEGER NOT NULL, "
+                    + "PRIMARY KEY (uuid, name))");
+            statement.execute("CREATE INDEX IF NOT EXISTS homes_world ON homes (world)");
+        }
+    }
+
+    /**
+     * Reads the homes of a player with a single query on the primary key.
+     *
+     * @param playerId The UUID of the player.
+     * @return The player's homes, in the order they were saved.
+     * @throws IOException If the query failed.
+     */
+    @Override
+    public List<Home> loadHomes(UUID playerId) throws IOException {
+        return execute(() -> {
+            List<Home> homes = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT name, world, x, y, z FROM homes WHERE uuid = ? ORDER BY position")) {
+                statement.setString(1, playerId.toString());
+                try (ResultSet result = statement.executeQuery()) {
+                    while (result.next()) {
+                        homes.add(readHome(result));
+                    }
+                }
+            }
+            return homes;
+        });
+    }
+
+    @Override
+    public Map<UUID, List<Home>> loadAllHomes() throws IOException {
+        return execute(() -> {
+            Map<UUID, List<Home>> allHomes = new HashMap<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT uuid, name, world, x, y, z FROM homes ORDER BY uuid, position")) {
+                while (result.next()) {
+                    UUID playerId = UUID.fromString(result.getString("uuid"));
+                    allHomes.computeIfAbsent(playerId, id -> new ArrayList<>()).add(readHome(result));
+                }
+            }
+            return allHomes;
+        });
+    }
+
+    @Override
+    public void saveHomes(UUID playerId, List<Home> homes) throws IOException {
+        saveAllHomes(Collections.singletonMap(playerId, homes));
+    }
+
+    /**
+     * Replaces the stored homes of every given player in a single transaction.
+     *
+     * @param homesByPlayer The homes of each player to save.
+     * @throws IOException If the transaction failed and was rolled back.
+     */
+    @Override
+    public void saveAllHomes(Map<UUID, List<Home>> homesByPlayer) throws IOException {
+        if (homesByPlayer.isEmpty()) {
+            return;
+        }
+        execute(() -> {
+            connection.setAutoCommit(false);
+            try (PreparedStatement delete = connection.prepareStatement("DELETE FROM homes WHERE uuid = ?");
+                 PreparedStatement insert = connection.prepareStatement(
+                         "INSERT INTO homes (uuid, name, world, x, y, z, position) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+                for (Map.Entry<UUID, List<Home>> entry : homesByPlayer.entrySet()) {
+                    String playerId = entry.getKey().toString();
+                    delete.setString(1, playerId);
+                    delete.addBatch();
+                    int position = 0;
+                    for (Home home : entry.getValue()) {
+                        insert.setString(1, playerId);
+                        insert.setString(2, home.getName());
+                        insert.setString(3, home.getWorldName());
+                        insert.setDouble(4, home.getX());
+                        insert.setDouble(5, home.getY());
+                        insert.setDouble(6, home.getZ());
+                        insert.setInt(7, position++);
+                        insert.addBatch();
+                    }
+                }
+                delete.executeBatch();
+                insert.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Closes the database connection and stops the I/O thread.
+     *
+     * @throws IOException If the connection could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            execute(() -> {
+                if (connection != null) {
+                    connection.close();
+                }
+                return null;
+            });
+        } finally {
+            ioExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Copies the homes of the per-player YAML files into the database, once.
+     * A marker file is left in the homes directory so the migration does not run again; the YAML files are kept as a backup.
+     *
+     * @throws IOException If the YAML files could not be read or the homes could not be written.
+     */
+    private void migrateYamlHomes() throws IOException {
+        File homesDir = new File(plugin.getDataFolder(), "homes");
+        File marker = new File(homesDir, MIGRATED_MARKER);
+        String[] entries = homesDir.list();
+        if (marker.exists() || entries == null || entries.length == 0) {
+            return;
+        }
+        Map<UUID, List<Home>> yamlHomes = new YamlHomeStorage(plugin).loadAllHomes();
+        if (yamlHomes.isEmpty()) {
+            return;
+        }
+        saveAllHomes(yamlHomes);
+        if (!marker.createNewFile()) {
+            throw new IOException("Could not create " + marker);
+        }
+        plugin.getLogger().info("Migrated the homes of " + yamlHomes.size() + " players from YAML files to the database");
+    }
+
+    /**
+     * Runs a database task on the I/O thread and waits for its result.
+     *
+     * @param task The task.
+     * @param <T> The result type.
+     * @return The result of the task.
+     * @throws IOException If the task failed.
+     */
+    private <T> T execute(Callable<T> task) throws IOException {
+        try {
+            return ioExecutor.submit(task).get();
+        } catch (ExecutionException e) {
+            throw new IOException("Database error: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the database", e);
+        }
+    }
+
+    private static Home readHome(ResultSet result) throws SQLException {
+        return new Home(result.getString("name"), result.getString("world"),
+                result.getDouble("x"), result.getDouble("y"), result.getDouble("z"));
+    }
+}
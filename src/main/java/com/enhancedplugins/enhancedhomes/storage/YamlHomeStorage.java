@@ -0,0 +1,700 @@
+package com.enhancedplugins.enhancedhomes.storage;
+
+import com.enhancedplugins.enhancedhomes.models.Home;
+import com.enhancedplugins.enhancedhomes.models.Settings;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * The YamlHomeStorage class stores the homes of each player in its own YAML file, named after the player's UUID.
+ * Files are replaced atomically through a temporary file, so a crash never leaves a truncated player file.
+ * The modification time and size of every file read or written are remembered, so files changed by hand can be found
+ * without reading every file again.
+ * Files can be spread over sub-folders of the homes folder, see HomesFolder. When the number of levels changes,
+ * existing files are moved to the new layout in the background in small batches, while homes are read from both layouts.
+ * The move only takes the layout lock between batches, and reads and saves hold it shared, so they never see a file half-moved.
+ * An interrupted move is resumed the next time the storage is opened.
+ * A player file that cannot be parsed is reported and never overwritten: saves of the player fail until the file is fixed or deleted.
+ */
+public class YamlHomeStorage implements HomeStorage {
+    private static final int MAX_PARSER_THREADS = 8;
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MOVE_BATCH_SIZE = 256;
+    private static final long MOVE_PAUSE_MILLIS = 20;
+    private static final long MOVE_LOG_INTERVAL_MILLIS = 10_000;
+    private final JavaPlugin plugin;
+    private final File homesDir;
+    private final HomesFolder folder;
+    private final ReentrantReadWriteLock layoutLock = new ReentrantReadWriteLock();
+    private final Map<UUID, Long> savedHashes = new ConcurrentHashMap<>();
+    private final Map<UUID, FileStamp> fileStamps = new ConcurrentHashMap<>();
+    private final Map<UUID, FileStamp> unreadableFiles = new ConcurrentHashMap<>();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private Thread layoutMover;
+    private volatile boolean closed;
+
+    /**
+     * Constructor for the YamlHomeStorage class, with every file in the homes folder itself.
+     * Files left in another layout are still read.
+     *
+     * @param plugin The JavaPlugin instance.
+     */
+    public YamlHomeStorage(JavaPlugin plugin) {
+        this(plugin, 0);
+    }
+
+    /**
+     * Constructor for the YamlHomeStorage class.
+     *
+     * @param plugin The JavaPlugin instance.
+     * @param shardLevels The number of sub-folder levels player files are written to, between 0 and 2.
+     */
+    public YamlHomeStorage(JavaPlugin plugin, int shardLevels) {
+        this.plugin = plugin;
+        this.homesDir = new File(plugin.getDataFolder(), "homes");
+        if (!homesDir.exists()) {
+            homesDir.mkdirs();
+        }
+        this.folder = new HomesFolder(homesDir.toPath(), shardLevels, plugin.getLogger());
+        deleteTempFiles();
+    }
+
+    @Override
+    public List<Home> loadHomes(UUID playerId) throws IOException {
+        layoutLock.readLock().lock();
+        try {
+            return readHomes(playerId, folder.findPlayerFile(playerId).toFile());
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Parses every player file of the homes directory in parallel on a bounded pool.
+     * A file that cannot be read or parsed is reported and skipped without aborting the load.
+     *
+     * @return A new map of every player's homes.
+     * @throws IOException If the homes directory could not be listed.
+     */
+    @Override
+    public Map<UUID, List<Home>> loadAllHomes() throws IOException {
+        long start = System.nanoTime();
+        AtomicInteger failedFiles = new AtomicInteger();
+        ForkJoinPool parserPool = new ForkJoinPool(Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_PARSER_THREADS)));
+        Map<UUID, List<Home>> loadedHomes;
+        int fileCount;
+        layoutLock.readLock().lock();
+        try {
+            Map<UUID, Path> playerFiles = listPlayerFiles();
+            fileCount = playerFiles.size();
+            loadedHomes = parserPool.submit(() -> playerFiles.entrySet().parallelStream()
+                    .map(playerFile -> {
+                        try {
+                            return Map.entry(playerFile.getKey(), readHomes(playerFile.getKey(), playerFile.getValue().toFile()));
+                        } catch (IOException | RuntimeException e) {
+                            plugin.getLogger().warning("Skipping homes file " + playerFile.getValue() + ": " + e.getMessage());
+                            failedFiles.incrementAndGet();
+                            return null;
+                        }
+                    })
+                    .filter(entry -> entry != null && !entry.getValue().isEmpty())
+                    .collect(Collectors.toConcurrentMap(Map.Entry::getKey, Map.Entry::getValue, (first, second) -> first, ConcurrentHashMap::new)))
+                    .join();
+        } finally {
+            layoutLock.readLock().unlock();
+            parserPool.shutdown();
+        }
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        int homeCount = loadedHomes.values().stream().mapToInt(List::size).sum();
+        plugin.getLogger().info("Loaded " + homeCount + " homes of " + loadedHomes.size() + " players from " + fileCount
+                + " files in " + elapsedMillis + " ms (" + (fileCount * 1000L / elapsedMillis) + " files/s, "
+                + failedFiles.get() + " failed)");
+        return loadedHomes;
+    }
+
+    /**
+     * Reads again the player files created, modified or deleted since they were last read or written,
+     * comparing their modification time and size with the remembered ones.
+     * Unchanged files are not opened, so a reload costs one listing of the homes folder plus the changed files.
+     * A file moved to another layout keeps its modification time and size, so it is not read again.
+     * A changed file that cannot be parsed is reported and left out, so the homes in memory are kept.
+     *
+     * @return A new map of the homes of each changed player, with an empty list for deleted files.
+     * @throws IOException If the homes directory could not be listed.
+     */
+    @Override
+    public Map<UUID, List<Home>> loadChangedHomes() throws IOException {
+        layoutLock.readLock().lock();
+        try {
+            Map<UUID, Path> playerFiles = listPlayerFiles();
+            Map<UUID, List<Home>> changedHomes = new HashMap<>();
+            for (Map.Entry<UUID, Path> playerFile : playerFiles.entrySet()) {
+                UUID playerId = playerFile.getKey();
+                File file = playerFile.getValue().toFile();
+                if (!FileStamp.of(file).equals(fileStamps.get(playerId))) {
+                    readChangedHomes(playerId, file, changedHomes);
+                }
+            }
+            for (UUID playerId : fileStamps.keySet()) {
+                if (!playerFiles.containsKey(playerId)) {
+                    fileStamps.remove(playerId);
+                    savedHashes.remove(playerId);
+                    unreadableFiles.remove(playerId);
+                    changedHomes.put(playerId, new ArrayList<>());
+                }
+            }
+            return changedHomes;
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads again the files of the given players if they were created, modified or deleted since they were last read
+     * or written. Files the storage wrote itself still match their remembered modification time and size, so they are skipped
+     * without being opened.
+     *
+     * @param playerIds The UUIDs of the players to check.
+     * @return A new map of the homes of each changed player, with an empty list for deleted files.
+     */
+    @Override
+    public Map<UUID, List<Home>> loadChangedHomes(Collection<UUID> playerIds) {
+        Map<UUID, List<Home>> changedHomes = new HashMap<>();
+        layoutLock.readLock().lock();
+        try {
+            for (UUID playerId : playerIds) {
+                File file = folder.findPlayerFile(playerId).toFile();
+                FileStamp previousStamp = fileStamps.get(playerId);
+                if (!file.exists()) {
+                    if (previousStamp != null) {
+                        fileStamps.remove(playerId);
+                        savedHashes.remove(playerId);
+                        unreadableFiles.remove(playerId);
+                        changedHomes.put(playerId, new ArrayList<>());
+                    }
+                } else if (!FileStamp.of(file).equals(previousStamp)) {
+                    readChangedHomes(playerId, file, changedHomes);
+                }
+            }
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+        return changedHomes;
+    }
+
+    /**
+     * Saves all homes of a player to their file, see saveAllHomes.
+     *
+     * @param playerId The UUID of the player.
+     * @param homes The player's homes.
+     * @throws IOException If the file could not be written.
+     */
+    @Override
+    public void saveHomes(UUID playerId, List<Home> homes) throws IOException {
+        saveAllHomes(Collections.singletonMap(playerId, homes));
+    }
+
+    /**
+     * Saves the homes of a batch of players, each to their own file, with a single group commit.
+     * Every file is first written to a temporary file next to it. Once the whole batch is written, the temporary files are synced
+     * back to back, renamed over the player files, and each folder holding renamed files is synced once for the batch.
+     * A crash or a full disk therefore leaves each player file either entirely old or entirely new.
+     * Players whose serialized homes are identical to their last write are skipped.
+     * Players whose file could not be parsed fail without their file being touched, unless it was changed or deleted since.
+     *
+     * @param homesByPlayer The homes of each player to save.
+     * @throws SaveFailedException If some players could not be saved; the other players were saved.
+     */
+    @Override
+    public void saveAllHomes(Map<UUID, List<Home>> homesByPlayer) throws SaveFailedException {
+        layoutLock.readLock().lock();
+        try {
+            writeAllHomes(homesByPlayer);
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+    }
+
+    private void writeAllHomes(Map<UUID, List<Home>> homesByPlayer) throws SaveFailedException {
+        Map<UUID, PendingWrite> pendingWrites = new LinkedHashMap<>();
+        Map<UUID, IOException> failures = new LinkedHashMap<>();
+        for (Map.Entry<UUID, List<Home>> entry : homesByPlayer.entrySet()) {
+            UUID playerId = entry.getKey();
+            String content = serialize(entry.getValue());
+            long hash = hash(content);
+            Long savedHash = savedHashes.get(playerId);
+            Path homesFile = folder.playerFile(playerId);
+            if (savedHash != null && savedHash == hash && Files.exists(homesFile)) {
+                continue;
+            }
+            FileStamp unreadableStamp = unreadableFiles.get(playerId);
+            if (unreadableStamp != null) {
+                Path unreadableFile = folder.findPlayerFile(playerId);
+                if (unreadableStamp.equals(FileStamp.of(unreadableFile.toFile()))) {
+                    failures.put(playerId, new IOException("The homes file " + unreadableFile
+                            + " could not be parsed and is kept as is, fix or delete it"));
+                    continue;
+                }
+                unreadableFiles.remove(playerId);
+            }
+            PendingWrite pendingWrite = new PendingWrite(homesFile, homesFile.resolveSibling(homesFile.getFileName() + TEMP_SUFFIX),
+                    content.getBytes(StandardCharsets.UTF_8), hash);
+            try {
+                if (folder.getShardLevels() > 0) {
+                    Files.createDirectories(homesFile.getParent());
+                }
+                Files.write(pendingWrite.tempFile, pendingWrite.bytes);
+                pendingWrites.put(playerId, pendingWrite);
+            } catch (IOException e) {
+                failures.put(playerId, e);
+            }
+        }
+
+        for (Map.Entry<UUID, PendingWrite> entry : pendingWrites.entrySet()) {
+            try (FileChannel channel = FileChannel.open(entry.getValue().tempFile, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            } catch (IOException e) {
+                failures.put(entry.getKey(), e);
+            }
+        }
+
+        Set<Path> renamedFolders = new HashSet<>();
+        for (Map.Entry<UUID, PendingWrite> entry : pendingWrites.entrySet()) {
+            UUID playerId = entry.getKey();
+            PendingWrite pendingWrite = entry.getValue();
+            if (!failures.containsKey(playerId)) {
+                try {
+                    Files.move(pendingWrite.tempFile, pendingWrite.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    fileStamps.put(playerId, FileStamp.of(pendingWrite.file.toFile()));
+                    bytesWritten.add(pendingWrite.bytes.length);
+                    savedHashes.put(playerId, pendingWrite.hash);
+                    renamedFolders.add(pendingWrite.file.getParent());
+                    continue;
+                } catch (IOException e) {
+                    failures.put(playerId, e);
+                }
+            }
+            try {
+                Files.deleteIfExists(pendingWrite.tempFile);
+            } catch (IOException e) {
+                // Left over temporary files are removed the next time the storage is opened
+            }
+        }
+        renamedFolders.forEach(YamlHomeStorage::syncDirectory);
+
+        if (!failures.isEmpty()) {
+            for (UUID playerId : failures.keySet()) {
+                // The file may or may not hold the last homes, so the next save must not be skipped
+                savedHashes.remove(playerId);
+            }
+            throw new SaveFailedException(new HashSet<>(failures.keySet()), failures.values().iterator().next());
+        }
+    }
+
+    @Override
+    public void forget(UUID playerId) {
+        // The file stamp is kept, so the write of the other server is still seen as a change of the file
+        savedHashes.remove(playerId);
+    }
+
+    @Override
+    public long getBytesRead() { return bytesRead.sum(); }
+
+    @Override
+    public long getBytesWritten() { return bytesWritten.sum(); }
+
+    /**
+     * Starts moving the files left in another layout to the configured one, unless every file is already in place.
+     */
+    @Override
+    public synchronized void startMaintenance() {
+        if (closed || layoutMover != null || !folder.isMixed()) {
+            return;
+        }
+        layoutMover = new Thread(this::moveToLayout, "EnhancedHomes Layout Mover");
+        layoutMover.setDaemon(true);
+        layoutMover.start();
+    }
+
+    /**
+     * Stops moving files to the new layout, once the current batch is moved; the move is resumed when the storage is opened again.
+     */
+    @Override
+    public void close() {
+        Thread mover;
+        synchronized (this) {
+            closed = true;
+            mover = layoutMover;
+        }
+        if (mover != null) {
+            mover.interrupt();
+            try {
+                mover.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        savedHashes.clear();
+        fileStamps.clear();
+        unreadableFiles.clear();
+    }
+
+    /**
+     * Lists the file of every player of the homes folder.
+     *
+     * @return The file of each player.
+     * @throws IOException If the folder could not be listed.
+     */
+    private Map<UUID, Path> listPlayerFiles() throws IOException {
+        try {
+            return folder.listPlayerFiles();
+        } catch (IOException e) {
+            throw new IOException("Could not list the homes directory " + homesDir + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads again a player file changed since it was last read or written. A file that cannot be parsed is reported
+     * and left out, so one broken file does not stop the other players from being reloaded.
+     *
+     * @param playerId The UUID of the player.
+     * @param file The player file.
+     * @param changedHomes The map to add the homes of the player to.
+     */
+    private void readChangedHomes(UUID playerId, File file, Map<UUID, List<Home>> changedHomes) {
+        // The last write is no longer what the file holds, so the next save must not be skipped
+        savedHashes.remove(playerId);
+        try {
+            changedHomes.put(playerId, readHomes(playerId, file));
+        } catch (IOException e) {
+            plugin.getLogger().warning("Keeping the homes in memory of " + playerId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Moves every player file that is not in the configured layout, in batches.
+     * The layout file is marked first, so files are looked up in every layout until the move completes, even after a restart.
+     * A file already present in the new layout replaces the moved one if it is newer, e.g. saved since the layout changed.
+     */
+    private void moveToLayout() {
+        long start = System.currentTimeMillis();
+        String layoutName = folder.getShardLevels() == 0 ? "the flat layout" : folder.getShardLevels() + " folder levels";
+        long[] moved = new long[1];
+        long[] lastLog = {start};
+        try {
+            folder.markMoving();
+            plugin.getLogger().info("Moving the homes files to " + layoutName + " in the background");
+            List<Path> batch = new ArrayList<>(MOVE_BATCH_SIZE);
+            folder.forEachPlayerFile((playerId, file) -> {
+                if (closed) {
+                    throw new InterruptedIOException("The homes storage was closed");
+                }
+                if (file.equals(folder.playerFile(playerId))) {
+                    return;
+                }
+                batch.add(file);
+                if (batch.size() >= MOVE_BATCH_SIZE) {
+                    moved[0] += moveBatch(batch);
+                    batch.clear();
+                    if (System.currentTimeMillis() - lastLog[0] >= MOVE_LOG_INTERVAL_MILLIS) {
+                        lastLog[0] = System.currentTimeMillis();
+                        plugin.getLogger().info("Moved " + moved[0] + " homes files to " + layoutName + " so far");
+                    }
+                    pause();
+                }
+            });
+            moved[0] += moveBatch(batch);
+            deleteEmptyShardFolders();
+            layoutLock.writeLock().lock();
+            try {
+                folder.markSettled();
+            } finally {
+                layoutLock.writeLock().unlock();
+            }
+            plugin.getLogger().info("Moved " + moved[0] + " homes files to " + layoutName + " in "
+                    + (System.currentTimeMillis() - start) / 1000 + " s");
+        } catch (InterruptedIOException e) {
+            plugin.getLogger().info("Stopped moving the homes files after " + moved[0] + " files, the move resumes on the next start");
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not move the homes files to " + layoutName + ", the move resumes on the next start: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Moves a batch of player files to the configured layout, holding the layout lock exclusively.
+     * The lock is only tried, so a long read, such as loading every home, is never queued behind the move.
+     *
+     * @param batch The files to move.
+     * @return The number of files moved or replaced by a newer file.
+     * @throws IOException If a file could not be moved, or the storage was closed.
+     */
+    private int moveBatch(List<Path> batch) throws IOException {
+        while (!layoutLock.writeLock().tryLock()) {
+            pause();
+        }
+        int moved = 0;
+        Set<Path> changedFolders = new HashSet<>();
+        try {
+            for (Path file : batch) {
+                UUID playerId = HomesFolder.parsePlayerId(file.getFileName().toString());
+                Path target = folder.playerFile(playerId);
+                if (!Files.exists(file)) {
+                    continue;
+                }
+                if (Files.exists(target) && !HomesFolder.isNewer(file, target)) {
+                    Files.delete(file);
+                } else {
+                    Files.createDirectories(target.getParent());
+                    Files.move(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    changedFolders.add(target.getParent());
+                }
+                changedFolders.add(file.getParent());
+                moved++;
+            }
+        } finally {
+            layoutLock.writeLock().unlock();
+        }
+        changedFolders.forEach(YamlHomeStorage::syncDirectory);
+        return moved;
+    }
+
+    /**
+     * Waits between two batches of the move, so it does not compete with saves for the disk.
+     *
+     * @throws InterruptedIOException If the storage was closed.
+     */
+    private void pause() throws InterruptedIOException {
+        try {
+            Thread.sleep(MOVE_PAUSE_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (closed) {
+            throw new InterruptedIOException("The homes storage was closed");
+        }
+    }
+
+    /**
+     * Deletes the sub-folders left empty by the move, deeper than the configured layout.
+     * Folders that are not named like a shard, or still hold files, are kept.
+     *
+     * @throws IOException If the homes folder could not be walked.
+     */
+    private void deleteEmptyShardFolders() throws IOException {
+        Path root = homesDir.toPath();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                int depth = dir.getNameCount() - root.getNameCount();
+                return depth > 0 && !dir.getFileName().toString().matches("[0-9a-f]{2}") ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                if (dir.getNameCount() - root.getNameCount() > folder.getShardLevels()) {
+                    try {
+                        Files.delete(dir);
+                    } catch (IOException notEmpty) {
+                        // Still holds files
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Reads the homes stored in a player file and remembers its modification time and size.
+     * They are taken before reading, so a file changed while it is read is read again by the next reload.
+     * A file that cannot be parsed is remembered as unreadable, so it is not overwritten by the next save.
+     * The hash of the content read is remembered as the last write, so saving the same homes again is skipped;
+     * a file formatted differently than the storage writes it, e.g. edited by hand, is rewritten by the next save.
+     *
+     * @param playerId The UUID of the player.
+     * @param file The player file.
+     * @return The homes, or an empty list if the file does not exist.
+     * @throws IOException If the file could not be read or parsed.
+     */
+    private List<Home> readHomes(UUID playerId, File file) throws IOException {
+        if (!file.exists()) {
+            fileStamps.remove(playerId);
+            savedHashes.remove(playerId);
+            unreadableFiles.remove(playerId);
+            return new ArrayList<>();
+        }
+        FileStamp fileStamp = FileStamp.of(file);
+        String content;
+        try {
+            content = Files.readString(file.toPath(), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            // Deleted since it was found
+            fileStamps.remove(playerId);
+            savedHashes.remove(playerId);
+            unreadableFiles.remove(playerId);
+            return new ArrayList<>();
+        }
+        fileStamps.put(playerId, fileStamp);
+        bytesRead.add(fileStamp.length());
+        try {
+            List<Home> homes = parse(content);
+            unreadableFiles.remove(playerId);
+            long hash = hash(content);
+            // Only if no save replaced the file while it was read, or the hash of the older content would win over the save's
+            savedHashes.compute(playerId, (id, savedHash) -> fileStamp.equals(FileStamp.of(file)) ? Long.valueOf(hash) : savedHash);
+            return homes;
+        } catch (InvalidConfigurationException e) {
+            savedHashes.remove(playerId);
+            unreadableFiles.put(playerId, fileStamp);
+            throw new IOException("Invalid homes file " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses the content of a player file, without a server.
+     *
+     * @param content The YAML content.
+     * @return The homes, in the order of the file.
+     * @throws InvalidConfigurationException If the content is not valid YAML.
+     */
+    public static List<Home> parse(String content) throws InvalidConfigurationException {
+        YamlConfiguration yamlFile = new YamlConfiguration();
+        yamlFile.loadFromString(content);
+        return homesOf(yamlFile);
+    }
+
+    private static List<Home> homesOf(YamlConfiguration yamlFile) {
+        List<Home> homes = new ArrayList<>();
+        if (yamlFile.getConfigurationSection("homes") != null) {
+            yamlFile.getConfigurationSection("homes").getKeys(false).forEach(homeName -> {
+                String world = yamlFile.getString("homes." + homeName + ".world");
+                double x = yamlFile.getDouble("homes." + homeName + ".x");
+                double y = yamlFile.getDouble("homes." + homeName + ".y");
+                double z = yamlFile.getDouble("homes." + homeName + ".z");
+                homes.add(new Home(homeName, world, x, y, z));
+            });
+        }
+        return homes;
+    }
+
+    /**
+     * Serializes the homes of a player to the content of their file.
+     * The same homes always give the same content.
+     *
+     * @param homes The player's homes.
+     * @return The YAML content.
+     */
+    public static String serialize(List<Home> homes) {
+        YamlConfiguration yamlFile = new YamlConfiguration();
+        for (Home home : homes) {
+            String path = "homes." + home.getName();
+            yamlFile.set(path + ".world", home.getWorldName());
+            yamlFile.set(path + ".x", home.getX());
+            yamlFile.set(path + ".y", home.getY());
+            yamlFile.set(path + ".z", home.getZ());
+        }
+        return yamlFile.saveToString();
+    }
+
+    /**
+     * Syncs a folder of the homes directory, so the renames of a batch survive a crash.
+     * Some platforms, such as Windows, cannot sync a directory; the renames are still atomic there.
+     *
+     * @param directory The folder.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported on this platform
+        }
+    }
+
+    /**
+     * Deletes the temporary files left by a crash in the middle of a save.
+     * The player files they were meant to replace still hold the previous homes.
+     */
+    private void deleteTempFiles() {
+        try {
+            Files.walkFileTree(homesDir.toPath(), EnumSet.noneOf(FileVisitOption.class), Settings.MAX_SHARD_LEVELS + 1, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    if (file.getFileName().toString().endsWith(TEMP_SUFFIX) && !file.toFile().delete()) {
+                        plugin.getLogger().warning("Could not delete the temporary homes file " + file.getFileName());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not delete the temporary homes files: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Computes a 64-bit FNV-1a hash of the serialized homes of a player, or of the content of their file.
+     *
+     * @param content The serialized homes.
+     * @return The hash.
+     */
+    private static long hash(String content) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < content.length(); i++) {
+            hash ^= content.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * The FileStamp record holds the modification time and size of a player file, to tell whether it changed.
+     */
+    private record FileStamp(long lastModified, long length) {
+        private static FileStamp of(File file) {
+            return new FileStamp(file.lastModified(), file.length());
+        }
+    }
+
+    /**
+     * The PendingWrite class holds a player file written to its temporary file and waiting to be renamed into place.
+     */
+    private static final class PendingWrite {
+        private final Path file;
+        private final Path tempFile;
+        private final byte[] bytes;
+        private final long hash;
+
+        private PendingWrite(Path file, Path tempFile, byte[] bytes, long hash) {
+            this.file = file;
+            this.tempFile = tempFile;
+            this.bytes = bytes;
+            this.hash = hash;
+        }
+    }
+}
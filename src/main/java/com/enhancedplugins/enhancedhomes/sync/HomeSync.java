@@ -0,0 +1,180 @@
+package com.enhancedplugins.enhancedhomes.sync;
+
+import com.enhancedplugins.enhancedhomes.EnhancedHomes;
+import com.enhancedplugins.enhancedhomes.managers.HomeManager;
+import com.enhancedplugins.enhancedhomes.models.Home;
+import org.bukkit.Bukkit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The HomeSync class keeps the homes cached by several servers sharing the same storage coherent.
+ * After each change, the server publishes the new homes of the player, and the other servers patch only that player
+ * in memory, without reading the storage. When a server finds homes changed outside of the game, e.g. a file edited by hand,
+ * it publishes an invalidation, and the other servers read only those players again.
+ * Messages are small binary records sent through a SyncTransport; each server ignores its own messages.
+ */
+public class HomeSync {
+    private static final byte FORMAT_VERSION = 2;
+    private static final byte HOMES_MESSAGE = 0;
+    private static final byte INVALIDATION_MESSAGE = 1;
+    private final EnhancedHomes plugin;
+    private final SyncTransport transport;
+    private final long serverId = ThreadLocalRandom.current().nextLong();
+
+    /**
+     * Constructor for the HomeSync class.
+     *
+     * @param plugin The EnhancedHomes plugin.
+     * @param transport The transport to exchange messages through.
+     */
+    public HomeSync(EnhancedHomes plugin, SyncTransport transport) {
+        this.plugin = plugin;
+        this.transport = transport;
+    }
+
+    /**
+     * Connects the transport and starts applying the changes of the other servers.
+     *
+     * @throws IOException If the transport could not be connected.
+     */
+    public void start() throws IOException {
+        transport.start(this::receive);
+    }
+
+    /**
+     * Disconnects the transport. Changes published by the other servers are no longer applied.
+     */
+    public void shutdown() {
+        transport.close();
+    }
+
+    /**
+     * Publishes the new homes of a player to the other servers.
+     *
+     * @param playerId The UUID of the player.
+     * @param homes The player's homes.
+     * @param changeTime When the homes changed, in milliseconds since the epoch, to resolve concurrent changes.
+     */
+    public void publishHomes(UUID playerId, List<Home> homes, long changeTime) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + homes.size() * 48);
+            DataOutputStream out = writeHeader(bytes, HOMES_MESSAGE);
+            out.writeLong(changeTime);
+            writeUuid(out, playerId);
+            out.writeShort(homes.size());
+            for (Home home : homes) {
+                out.writeUTF(home.getName());
+                writeWorldName(out, home.getWorldName());
+                out.writeDouble(home.getX());
+                out.writeDouble(home.getY());
+                out.writeDouble(home.getZ());
+            }
+            transport.publish(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Publishes to the other servers that the stored homes of some players changed outside of the game.
+     *
+     * @param playerIds The UUIDs of the players.
+     */
+    public void publishInvalidation(Collection<UUID> playerIds) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + playerIds.size() * 16);
+            DataOutputStream out = writeHeader(bytes, INVALIDATION_MESSAGE);
+            out.writeInt(playerIds.size());
+            for (UUID playerId : playerIds) {
+                writeUuid(out, playerId);
+            }
+            transport.publish(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Decodes a message of another server and applies it on the main thread.
+     * Messages that cannot be decoded, e.g. sent by another version of the plugin, are dropped.
+     *
+     * @param message The message.
+     */
+    private void receive(byte[] message) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message))) {
+            if (in.readByte() != FORMAT_VERSION) {
+                return;
+            }
+            byte type = in.readByte();
+            if (in.readLong() == serverId || !plugin.isEnabled()) {
+                return;
+            }
+            HomeManager homeManager = plugin.getHomeManager();
+            if (type == HOMES_MESSAGE) {
+                long changeTime = in.readLong();
+                UUID playerId = readUuid(in);
+                int count = in.readUnsignedShort();
+                List<Home> homes = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    homes.add(new Home(in.readUTF(), readWorldName(in), in.readDouble(), in.readDouble(), in.readDouble()));
+                }
+                Bukkit.getScheduler().runTask(plugin, () -> homeManager.applyRemoteHomes(playerId, homes, changeTime));
+            } else if (type == INVALIDATION_MESSAGE) {
+                int count = in.readInt();
+                List<UUID> playerIds = new ArrayList<>();
+                for (int i = 0; i < count; i++) {
+                    playerIds.add(readUuid(in));
+                }
+                Bukkit.getScheduler().runTask(plugin, () -> homeManager.invalidateRemoteHomes(playerIds));
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Dropping a malformed sync message of " + message.length + " bytes");
+        }
+    }
+
+    private DataOutputStream writeHeader(ByteArrayOutputStream bytes, byte type) throws IOException {
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(FORMAT_VERSION);
+        out.writeByte(type);
+        out.writeLong(serverId);
+        return out;
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * Writes the world name of a home, which is null if the stored home has no world.
+     *
+     * @param out The output stream.
+     * @param worldName The world name, or null.
+     * @throws IOException If the world name could not be written.
+     */
+    private static void writeWorldName(DataOutputStream out, String worldName) throws IOException {
+        out.writeBoolean(worldName != null);
+        if (worldName != null) {
+            out.writeUTF(worldName);
+        }
+    }
+
+    private static String readWorldName(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+}
@@ -0,0 +1,52 @@
+package com.enhancedplugins.enhancedhomes.sync;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+/**
+ * The LoopbackTransport class connects several plugin instances running in the same process through a shared Hub,
+ * e.g. to test or benchmark several servers without a network. Messages are delivered on the thread that publishes them.
+ */
+public class LoopbackTransport implements SyncTransport {
+    private final Hub hub;
+    private volatile Consumer<byte[]> receiver;
+
+    /**
+     * Constructor for the LoopbackTransport class.
+     *
+     * @param hub The hub shared by the transports of every simulated server.
+     */
+    public LoopbackTransport(Hub hub) {
+        this.hub = hub;
+    }
+
+    @Override
+    public void start(Consumer<byte[]> receiver) {
+        this.receiver = receiver;
+        hub.transports.add(this);
+    }
+
+    @Override
+    public void publish(byte[] message) {
+        for (LoopbackTransport transport : hub.transports) {
+            Consumer<byte[]> peerReceiver = transport.receiver;
+            if (transport != this && peerReceiver != null) {
+                peerReceiver.accept(message);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        hub.transports.remove(this);
+        receiver = null;
+    }
+
+    /**
+     * The Hub class links the loopback transports that exchange messages with each other.
+     */
+    public static final class Hub {
+        private final Set<LoopbackTransport> transports = new CopyOnWriteArraySet<>();
+    }
+}
@@ -0,0 +1,224 @@
+package com.enhancedplugins.enhancedhomes.sync;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * The SocketTransport class connects the servers of one machine through Unix domain sockets, without any broker.
+ * Each server listens on a socket file of its own in a folder shared by every server, and sends each message
+ * to every other socket file of the folder. Connections to the other servers are kept open and re-established on failure.
+ * Messages are framed with their length and sent from a dedicated thread, so publishing never blocks.
+ */
+public class SocketTransport implements SyncTransport {
+    private static final String SOCKET_SUFFIX = ".sock";
+    private static final int MAX_MESSAGE_LENGTH = 1024 * 1024;
+    private static final long UNREACHABLE_RETRY_MILLIS = 5000;
+    private final Path folder;
+    private final Path socketFile;
+    private final Logger logger;
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "EnhancedHomes Sync Sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Path, SocketChannel> peers = new HashMap<>();
+    private final Map<Path, Long> unreachablePeers = new HashMap<>();
+    private final Set<SocketChannel> incoming = Collections.synchronizedSet(new HashSet<>());
+    private ServerSocketChannel server;
+    private volatile boolean running;
+
+    /**
+     * Constructor for the SocketTransport class.
+     *
+     * @param folder The folder shared by every server, created if needed.
+     * @param logger The logger to report connection problems to.
+     */
+    public SocketTransport(Path folder, Logger logger) {
+        this.folder = folder;
+        // Socket paths are limited to about 100 characters, so the file name is kept short
+        this.socketFile = folder.resolve(Long.toHexString(ThreadLocalRandom.current().nextLong()) + SOCKET_SUFFIX);
+        this.logger = logger;
+    }
+
+    @Override
+    public void start(Consumer<byte[]> receiver) throws IOException {
+        Files.createDirectories(folder);
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socketFile));
+        running = true;
+        Thread acceptThread = new Thread(() -> accept(receiver), "EnhancedHomes Sync Listener");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    @Override
+    public void publish(byte[] message) {
+        if (running) {
+            sender.execute(() -> send(message));
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        // Messages already published are still sent, then the connections to the other servers are closed
+        sender.execute(() -> peers.values().forEach(SocketTransport::closeQuietly));
+        sender.shutdown();
+        if (server != null) {
+            try {
+                server.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+        synchronized (incoming) {
+            incoming.forEach(SocketTransport::closeQuietly);
+            incoming.clear();
+        }
+        try {
+            Files.deleteIfExists(socketFile);
+        } catch (IOException e) {
+            logger.warning("Could not delete the sync socket " + socketFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Accepts the connections of the other servers and reads each of them on its own thread.
+     *
+     * @param receiver Called with each message received.
+     */
+    private void accept(Consumer<byte[]> receiver) {
+        while (running) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (IOException e) {
+                if (running) {
+                    logger.warning("Sync listener stopped: " + e.getMessage());
+                }
+                return;
+            }
+            incoming.add(channel);
+            Thread readThread = new Thread(() -> read(channel, receiver), "EnhancedHomes Sync Reader");
+            readThread.setDaemon(true);
+            readThread.start();
+        }
+    }
+
+    /**
+     * Reads the messages of a connection until it is closed.
+     *
+     * @param channel The connection.
+     * @param receiver Called with each message received.
+     */
+    private void read(SocketChannel channel, Consumer<byte[]> receiver) {
+        try (DataInputStream in = new DataInputStream(Channels.newInputStream(channel))) {
+            while (running) {
+                int length = in.readInt();
+                if (length <= 0 || length > MAX_MESSAGE_LENGTH) {
+                    logger.warning("Dropping a sync connection that sent a message of " + length + " bytes");
+                    return;
+                }
+                byte[] message = new byte[length];
+                in.readFully(message);
+                receiver.accept(message);
+            }
+        } catch (EOFException e) {
+            // The other server disconnected
+        } catch (IOException e) {
+            if (running) {
+                logger.fine("Sync connection closed: " + e.getMessage());
+            }
+        } finally {
+            incoming.remove(channel);
+        }
+    }
+
+    /**
+     * Sends a message to every other socket of the folder. This method runs on the sender thread.
+     * Connections to servers that went away are closed; servers that cannot be reached are skipped for a few seconds.
+     *
+     * @param message The message.
+     */
+    private void send(byte[] message) {
+        Set<Path> peerFiles = listPeers();
+        peers.keySet().removeIf(peerFile -> {
+            if (!peerFiles.contains(peerFile)) {
+                closeQuietly(peers.get(peerFile));
+                return true;
+            }
+            return false;
+        });
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + message.length);
+        frame.putInt(message.length).put(message);
+        long now = System.currentTimeMillis();
+        for (Path peerFile : peerFiles) {
+            Long retryAt = unreachablePeers.get(peerFile);
+            if (retryAt != null && now < retryAt) {
+                continue;
+            }
+            try {
+                SocketChannel channel = peers.get(peerFile);
+                if (channel == null) {
+                    channel = SocketChannel.open(UnixDomainSocketAddress.of(peerFile));
+                    peers.put(peerFile, channel);
+                    unreachablePeers.remove(peerFile);
+                }
+                frame.rewind();
+                while (frame.hasRemaining()) {
+                    channel.write(frame);
+                }
+            } catch (IOException e) {
+                // A socket file left by a server that crashed, or a server shutting down
+                closeQuietly(peers.remove(peerFile));
+                unreachablePeers.put(peerFile, now + UNREACHABLE_RETRY_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Lists the socket files of the other servers.
+     *
+     * @return The socket files.
+     */
+    private Set<Path> listPeers() {
+        Set<Path> peerFiles = new HashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, "*" + SOCKET_SUFFIX)) {
+            for (Path file : files) {
+                if (!file.equals(socketFile)) {
+                    peerFiles.add(file);
+                }
+            }
+        } catch (IOException e) {
+            logger.warning("Could not list the sync folder " + folder + ": " + e.getMessage());
+        }
+        return peerFiles;
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.enhancedplugins.enhancedhomes.sync;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * The SyncTransport interface is implemented by every way of exchanging home changes between servers.
+ * A transport only moves opaque messages: HomeSync encodes and applies them.
+ * Messages are delivered at most once, to every other server connected to the same transport, and never back to their sender.
+ */
+public interface SyncTransport {
+
+    /**
+     * Connects the transport and starts delivering the messages of the other servers.
+     *
+     * @param receiver Called with each message received, on a thread of the transport.
+     * @throws IOException If the transport could not be connected.
+     */
+    void start(Consumer<byte[]> receiver) throws IOException;
+
+    /**
+     * Sends a message to every other server.
+     * It must not block on the network, since it is called on the main thread after each home change.
+     *
+     * @param message The message, which must not be modified afterwards.
+     */
+    void publish(byte[] message);
+
+    /**
+     * Disconnects the transport. No message is delivered afterwards.
+     */
+    void close();
+}
@@ -0,0 +1,192 @@
+package com.enhancedplugins.enhancedhomes.transfer;
+
+import com.enhancedplugins.enhancedhomes.models.Home;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The CsvFormat class streams homes from and to a CSV file with one home per line, as read by spreadsheets and analytics tools.
+ * The file starts with the header uuid,name,world,x,y,z; fields are quoted as in RFC 4180 when needed,
+ * lines end with \n on every platform, and a missing world is an empty field.
+ * The homes of a player are on consecutive lines, in their stored order; a file with the homes of a player
+ * split over several groups of lines, e.g. a re-sorted file, is rejected instead of keeping only the last group.
+ */
+final class CsvFormat {
+    private static final String HEADER = "uuid,name,world,x,y,z";
+    private static final int FIELDS = 6;
+
+    private CsvFormat() {
+    }
+
+    /**
+     * The Source class reads a CSV file line by line, grouping the consecutive lines of each player.
+     */
+    static final class Source implements HomeSource {
+        private final BufferedReader reader;
+        private final Set<UUID> readPlayers = new HashSet<>();
+        private int line = 1;
+        private List<String> pendingRecord;
+
+        Source(Path file) throws IOException {
+            this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+            List<String> header = readRecord();
+            if (header == null || !HEADER.equals(String.join(",", header))) {
+                reader.close();
+                throw new IOException(file + " is not a homes CSV file: its first line must be " + HEADER);
+            }
+            this.pendingRecord = readRecord();
+        }
+
+        @Override
+        public StoredHomes next() throws IOException {
+            if (pendingRecord == null) {
+                return null;
+            }
+            String playerId = pendingRecord.get(0);
+            UUID parsedPlayerId;
+            try {
+                parsedPlayerId = UUID.fromString(playerId);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid player UUID before line " + line + ": " + playerId, e);
+            }
+            if (!readPlayers.add(parsedPlayerId)) {
+                throw new IOException("The homes of " + playerId + " continue before line " + line
+                        + " after the lines of other players: the homes of a player must be on consecutive lines");
+            }
+            List<Home> homes = new ArrayList<>();
+            while (pendingRecord != null && playerId.equals(pendingRecord.get(0))) {
+                homes.add(parseHome(pendingRecord));
+                pendingRecord = readRecord();
+            }
+            return new StoredHomes(parsedPlayerId, homes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+
+        private Home parseHome(List<String> record) throws IOException {
+            if (record.size() != FIELDS) {
+                throw new IOException("Expected " + FIELDS + " fields before line " + line + " but found " + record.size());
+            }
+            try {
+                String world = record.get(2).isEmpty() ? null : record.get(2);
+                return new Home(record.get(1), world, Double.parseDouble(record.get(3)),
+                        Double.parseDouble(record.get(4)), Double.parseDouble(record.get(5)));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid coordinate before line " + line + ": " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Reads the fields of the next record, which spans several lines if a quoted field contains line breaks.
+         *
+         * @return The fields, or null at the end of the file.
+         * @throws IOException If the file could not be read or a quoted field is not closed.
+         */
+        private List<String> readRecord() throws IOException {
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>(FIELDS);
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IOException("Unterminated quoted field on line " + line);
+                    }
+                    if (c == '"') {
+                        c = reader.read();
+                        if (c != '"') {
+                            quoted = false;
+                            continue;
+                        }
+                    } else if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c == -1) {
+                    fields.add(field.toString());
+                    line++;
+                    return fields;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = reader.read();
+            }
+        }
+    }
+
+    /**
+     * The Sink class writes one line per home. A player without homes writes no line.
+     */
+    static final class Sink implements HomeSink {
+        private final BufferedWriter writer;
+
+        Sink(Path file) throws IOException {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            writer.write(HEADER);
+            writer.write('\n');
+        }
+
+        @Override
+        public void write(UUID playerId, List<Home> homes) throws IOException {
+            for (Home home : homes) {
+                writer.write(playerId.toString());
+                writer.write(',');
+                writeField(home.getName());
+                writer.write(',');
+                writeField(home.getWorldName() == null ? "" : home.getWorldName());
+                writer.write(',');
+                writer.write(Double.toString(home.getX()));
+                writer.write(',');
+                writer.write(Double.toString(home.getY()));
+                writer.write(',');
+                writer.write(Double.toString(home.getZ()));
+                writer.write('\n');
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+
+        private void writeField(String value) throws IOException {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.enhancedplugins.enhancedhomes.transfer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * The HomeFormat enum lists the formats homes can be exported to and imported from.
+ */
+public enum HomeFormat {
+    /**
+     * A folder of per-player YAML files, as in the homes folder of the YAML storage.
+     */
+    YAML,
+    /**
+     * A SQLite database, as the homes.db file of the SQLite storage.
+     */
+    SQLITE,
+    /**
+     * A CSV file with one home per line.
+     */
+    CSV,
+    /**
+     * A JSON Lines file with one player per line.
+     */
+    JSON;
+
+    /**
+     * Opens a source reading homes in this format.
+     *
+     * @param path The folder or file to read.
+     * @return The source, to close once read.
+     * @throws IOException If the folder or file could not be opened.
+     */
+    public HomeSource openSource(Path path) throws IOException {
+        return switch (this) {
+            case YAML -> new YamlFolderFormat.Source(path);
+            case SQLITE -> new SqliteFormat.Source(path);
+            case CSV -> new CsvFormat.Source(path);
+            case JSON -> new JsonLinesFormat.Source(path);
+        };
+    }
+
+    /**
+     * Opens a sink writing homes in this format. CSV and JSON files are replaced, while a folder or a database
+     * keeps the players it already holds that are not written.
+     *
+     * @param path The folder or file to write.
+     * @return The sink, to finish and close once written.
+     * @throws IOException If the folder or file could not be created.
+     */
+    public HomeSink openSink(Path path) throws IOException {
+        return switch (this) {
+            case YAML -> new YamlFolderFormat.Sink(path);
+            case SQLITE -> new SqliteFormat.Sink(path);
+            case CSV -> new CsvFormat.Sink(path);
+            case JSON -> new JsonLinesFormat.Sink(path);
+        };
+    }
+
+    /**
+     * Retrieves the name of the format, as typed in commands.
+     *
+     * @return The lower case name.
+     */
+    public String getName() { return name().toLowerCase(Locale.ROOT); }
+
+    /**
+     * Finds a format by name, ignoring case.
+     *
+     * @param name The name of the format.
+     * @return The format, or null if there is no such format.
+     */
+    public static HomeFormat fromName(String name) {
+        for (HomeFormat format : values()) {
+            if (format.getName().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lists the names of every format, for usage messages.
+     *
+     * @return The names, separated by commas.
+     */
+    public static String names() {
+        return Arrays.stream(values()).map(HomeFormat::getName).collect(Collectors.joining(", "));
+    }
+}
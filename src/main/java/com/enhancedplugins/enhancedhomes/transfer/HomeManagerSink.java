@@ -0,0 +1,53 @@
+package com.enhancedplugins.enhancedhomes.transfer;
+
+import com.enhancedplugins.enhancedhomes.managers.HomeManager;
+import com.enhancedplugins.enhancedhomes.models.Home;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The HomeManagerSink class imports homes into a running plugin, through the home manager,
+ * so the imported players are written to the configured storage and their homes in memory are replaced.
+ * Players are buffered and replaced in batches, each written with a single save of the storage.
+ */
+public class HomeManagerSink implements HomeSink {
+    private static final int BATCH_SIZE = 500;
+    private final HomeManager homeManager;
+    private Map<UUID, List<Home>> batch = new LinkedHashMap<>();
+
+    /**
+     * Constructor for the HomeManagerSink class.
+     *
+     * @param homeManager The home manager.
+     */
+    public HomeManagerSink(HomeManager homeManager) {
+        this.homeManager = homeManager;
+    }
+
+    @Override
+    public void write(UUID playerId, List<Home> homes) throws IOException {
+        batch.put(playerId, homes);
+        if (batch.size() >= BATCH_SIZE) {
+            finish();
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<UUID, List<Home>> replacedHomes = batch;
+        batch = new LinkedHashMap<>();
+        homeManager.replaceHomes(replacedHomes);
+    }
+
+    @Override
+    public void close() {
+        batch.clear();
+    }
+}
@@ -0,0 +1,32 @@
+package com.enhancedplugins.enhancedhomes.transfer;
+
+import com.enhancedplugins.enhancedhomes.models.Home;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The HomeSink interface is implemented by every format homes can be streamed to, one player at a time.
+ * Writing the homes of a player replaces the homes the sink already holds for them.
+ */
+public interface HomeSink extends Closeable {
+
+    /**
+     * Writes the homes of a player.
+     *
+     * @param playerId The UUID of the player.
+     * @param homes The player's homes.
+     * @throws IOException If the homes could not be written.
+     */
+    void write(UUID playerId, List<Home> homes) throws IOException;
+
+    /**
+     * Writes everything still buffered by the sink. It is called once every player was written;
+     * closing a sink without finishing it may drop the last players written.
+     *
+     * @throws IOException If the homes could not be written.
+     */
+    void finish() throws IOException;
+}
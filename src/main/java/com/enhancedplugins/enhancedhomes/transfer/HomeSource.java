@@ -0,0 +1,55 @@
+package com.enhancedplugins.enhancedhomes.transfer;
+
+import com.enhancedplugins.enhancedhomes.models.Home;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The HomeSource interface is implemented by every format homes can be streamed from, one player at a time,
+ * so a source never holds more than a bounded number of players in memory.
+ */
+public interface HomeSource extends Closeable {
+
+    /**
+     * Reads the homes of the next player.
+     *
+     * @return The homes of the next player, or null once every player was read.
+     * @throws IOException If the homes could not be read.
+     */
+    StoredHomes next() throws IOException;
+
+    /**
+     * Creates a source over homes already in memory, in the order of HomeTransfer.PLAYER_ORDER.
+     * It is used for storages that keep every home in memory anyway, such as the journal.
+     *
+     * @param homesByPlayer The homes of each player.
+     * @return The source.
+     */
+    static HomeSource of(Map<UUID, List<Home>> homesByPlayer) {
+        List<UUID> playerIds = new ArrayList<>(homesByPlayer.keySet());
+        playerIds.sort(HomeTransfer.PLAYER_ORDER);
+        Iterator<UUID> iterator = playerIds.iterator();
+        return new HomeSource() {
+            @Override
+            public StoredHomes next() {
+                while (iterator.hasNext()) {
+                    UUID playerId = iterator.next();
+                    List<Home> homes = homesByPlayer.get(playerId);
+                    if (!homes.isEmpty()) {
+                        return new StoredHomes(playerId, homes);
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public void close() {}
+        };
+    }
+}
@@ -0,0 +1,81 @@
+package com.enhancedplugins.enhancedhomes.transfer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * The HomeTransfer class copies homes from a source to a sink, one player at a time, reporting its progress.
+ * Players are written in the order of the source; the sources that list players themselves use PLAYER_ORDER,
+ * so exporting the same homes twice gives identical dumps that can be compared with diff.
+ */
+public final class HomeTransfer {
+    /**
+     * The order of players in dumps: the order of their UUIDs as text, which is also the order of the database.
+     */
+    public static final Comparator<UUID> PLAYER_ORDER = Comparator
+            .comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+            .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned);
+
+    private HomeTransfer() {
+    }
+
+    /**
+     * Copies every player of a source to a sink and finishes the sink.
+     * The copy stops with an InterruptedIOException if the calling thread is interrupted.
+     *
+     * @param source The source.
+     * @param sink The sink.
+     * @param progressIntervalMillis The minimum time between two progress reports, in milliseconds.
+     * @param progressListener Called on the calling thread with the progress, and once more when the copy is done.
+     * @return The final progress.
+     * @throws IOException If the source could not be read or the sink could not be written.
+     */
+    public static Progress copy(HomeSource source, HomeSink sink, long progressIntervalMillis,
+                                Consumer<Progress> progressListener) throws IOException {
+        long start = System.currentTimeMillis();
+        long nextReport = start + progressIntervalMillis;
+        int players = 0;
+        long homes = 0;
+        StoredHomes storedHomes;
+        while ((storedHomes = source.next()) != null) {
+            if (Thread.interrupted()) {
+                throw new InterruptedIOException("Interrupted after " + players + " players");
+            }
+            sink.write(storedHomes.playerId(), storedHomes.homes());
+            players++;
+            homes += storedHomes.homes().size();
+            long now = System.currentTimeMillis();
+            if (now >= nextReport) {
+                progressListener.accept(new Progress(players, homes, now - start, false));
+                nextReport = now + progressIntervalMillis;
+            }
+        }
+        sink.finish();
+        Progress progress = new Progress(players, homes, System.currentTimeMillis() - start, true);
+        progressListener.accept(progress);
+        return progress;
+    }
+
+    /**
+     * The Progress record holds how far a copy went.
+     *
+     * @param players The number of players copied.
+     * @param homes The number of homes copied.
+     * @param elapsedMillis The time since the copy started, in milliseconds.
+     * @param done Whether the copy is complete.
+     */
+    public record Progress(int players, long homes, long elapsedMillis, boolean done) {
+
+        /**
+         * Retrieves the number of players copied per second.
+         *
+         * @return The copy rate.
+         */
+        public long playersPerSecond() {
+            return players * 1000L / Math.max(1, elapsedMillis);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.enhancedplugins.enhancedhomes.transfer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The HomeTransferTool class converts homes between formats without a server, e.g. to back up the homes folder
+ * or to load them into an analytics database while the server is stopped.
+ * It needs the server jar on the class path for the YAML parser and the SQLite driver:
+ * java -cp spigot.jar:EnhancedHomes.jar com.enhancedplugins.enhancedhomes.transfer.HomeTransferTool &lt;from-format&gt; &lt;from-path&gt; &lt;to-format&gt; &lt;to-path&gt;
+ */
+public final class HomeTransferTool {
+    private static final long PROGRESS_INTERVAL_MILLIS = 2000;
+
+    private HomeTransferTool() {
+    }
+
+    /**
+     * Converts the homes given on the command line. Progress is reported on the standard error.
+     *
+     * @param args The source format and path, then the destination format and path.
+     */
+    public static void main(String[] args) {
+        HomeFormat sourceFormat = args.length == 4 ? HomeFormat.fromName(args[0]) : null;
+        HomeFormat sinkFormat = args.length == 4 ? HomeFormat.fromName(args[2]) : null;
+        if (sourceFormat == null || sinkFormat == null) {
+            System.err.println("Usage: HomeTransferTool <from-format> <from-path> <to-format> <to-path>");
+            System.err.println("Formats: " + HomeFormat.names());
+            System.exit(2);
+            return;
+        }
+        Path sourcePath = Path.of(args[1]);
+        Path sinkPath = Path.of(args[3]);
+        if (sourcePath.toAbsolutePath().normalize().equals(sinkPath.toAbsolutePath().normalize())) {
+            System.err.println("The source and the destination must be different");
+            System.exit(2);
+            return;
+        }
+        try (HomeSource source = sourceFormat.openSource(sourcePath);
+             HomeSink sink = sinkFormat.openSink(sinkPath)) {
+            HomeTransfer.copy(source, sink, PROGRESS_INTERVAL_MILLIS, progress -> System.err.println(
+                    (progress.done() ? "Copied " : "Copying... ") + progress.players() + " players, " + progress.homes() + " homes in "
+                            + progress.elapsedMillis() / 1000.0 + " s (" + progress.playersPerSecond() + " players/s)"));
+        } catch (IOException e) {
+            System.err.println("Could not copy the homes: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.enhancedplugins.enhancedhomes.transfer;
+
+import com.enhancedplugins.enhancedhomes.models.Home;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The JsonLinesFormat class streams homes from and to a JSON Lines file: one JSON object per player and per line,
+ * such as {"uuid":"...","homes":[{"name":"home","world":"world","x":1.5,"y":64.0,"z":-3.5}]}.
+ * Each line can be parsed on its own, so the file is read and written one player at a time and can be processed
+ * line by line by analytics tools. Keys are always written in the same order, so dumps of the same homes are identical.
+ */
+final class JsonLinesFormat {
+
+    private JsonLinesFormat() {
+    }
+
+    /**
+     * The Source class reads a JSON Lines file line by line. Blank lines are skipped.
+     * A player found on a second line is rejected instead of keeping only the homes of the last line.
+     */
+    static final class Source implements HomeSource {
+        private final BufferedReader reader;
+        private final Set<UUID> readPlayers = new HashSet<>();
+        private int lineNumber;
+
+        Source(Path file) throws IOException {
+            this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public StoredHomes next() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                lineNumber++;
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+            UUID playerId;
+            List<Home> homes = new ArrayList<>();
+            try {
+                Map<?, ?> player = (Map<?, ?>) new Parser(line).parseDocument();
+                playerId = UUID.fromString((String) player.get("uuid"));
+                for (Object value : (List<?>) player.get("homes")) {
+                    Map<?, ?> home = (Map<?, ?>) value;
+                    homes.add(new Home((String) home.get("name"), (String) home.get("world"),
+                            (Double) home.get("x"), (Double) home.get("y"), (Double) home.get("z")));
+                }
+            } catch (IllegalArgumentException | ClassCastException | NullPointerException e) {
+                throw new IOException("Invalid player on line " + lineNumber + ": " + e.getMessage(), e);
+            }
+            if (!readPlayers.add(playerId)) {
+                throw new IOException("The player " + playerId + " on line " + lineNumber + " was already found on a previous line");
+            }
+            return new StoredHomes(playerId, homes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * The Sink class writes one line per player. A player without homes writes no line.
+     */
+    static final class Sink implements HomeSink {
+        private final BufferedWriter writer;
+
+        Sink(Path file) throws IOException {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void write(UUID playerId, List<Home> homes) throws IOException {
+            if (homes.isEmpty()) {
+                return;
+            }
+            StringBuilder line = new StringBuilder(64 + homes.size() * 80);
+            line.append("{\"uuid\":\"").append(playerId).append("\",\"homes\":[");
+            for (int i = 0; i < homes.size(); i++) {
+                Home home = homes.get(i);
+                if (i > 0) {
+                    line.append(',');
+                }
+                line.append("{\"name\":");
+                appendString(line, home.getName());
+                line.append(",\"world\":");
+                appendString(line, home.getWorldName());
+                line.append(",\"x\":").append(home.getX())
+                        .append(",\"y\":").append(home.getY())
+                        .append(",\"z\":").append(home.getZ()).append('}');
+            }
+            line.append("]}\n");
+            writer.write(line.toString());
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+
+        private static void appendString(StringBuilder line, String value) {
+            if (value == null) {
+                line.append("null");
+                return;
+            }
+            line.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> line.append("\\\"");
+                    case '\\' -> line.append("\\\\");
+                    case '\n' -> line.append("\\n");
+                    case '\r' -> line.append("\\r");
+                    case '\t' -> line.append("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            line.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            line.append(c);
+                        }
+                    }
+                }
+            }
+            line.append('"');
+        }
+    }
+
+    /**
+     * The Parser class parses a single JSON document into maps, lists, strings, doubles, booleans and nulls.
+     */
+    private static final class Parser {
+        private final String text;
+        private int position;
+
+        private Parser(String text) {
+            this.text = text;
+        }
+
+        private Object parseDocument() {
+            Object value = parseValue();
+            skipWhitespace();
+            if (position != text.length()) {
+                throw error("unexpected content");
+            }
+            return value;
+        }
+
+        private Object parseValue() {
+            skipWhitespace();
+            if (position >= text.length()) {
+                throw error("unexpected end of line");
+            }
+            char c = text.charAt(position);
+            switch (c) {
+                case '{':
+                    return parseObject();
+                case '[':
+                    return parseArray();
+                case '"':
+                    return parseString();
+                case 't':
+                    expect("true");
+                    return Boolean.TRUE;
+                case 'f':
+                    expect("false");
+                    return Boolean.FALSE;
+                case 'n':
+                    expect("null");
+                    return null;
+                default:
+                    return parseNumber();
+            }
+        }
+
+        private Map<String, Object> parseObject() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            position++;
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                if (peek() != '"') {
+                    throw error("expected a key");
+                }
+                String key = parseString();
+                skipWhitespace();
+                expect(":");
+                object.put(key, parseValue());
+                skipWhitespace();
+                char c = next();
+                if (c == '}') {
+                    return object;
+                }
+                if (c != ',') {
+                    throw error("expected , or }");
+                }
+            }
+        }
+
+        private List<Object> parseArray() {
+            List<Object> array = new ArrayList<>();
+            position++;
+            skipWhitespace();
+            if (peek() == ']') {
+                position++;
+                return array;
+            }
+            while (true) {
+                array.add(parseValue());
+                skipWhitespace();
+                char c = next();
+                if (c == ']') {
+                    return array;
+                }
+                if (c != ',') {
+                    throw error("expected , or ]");
+                }
+            }
+        }
+
+        private String parseString() {
+            StringBuilder value = new StringBuilder();
+            position++;
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case '"', '\\', '/' -> value.append(escaped);
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'u' -> {
+                        if (position + 4 > text.length()) {
+                            throw error("truncated escape");
+                        }
+                        value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        position += 4;
+                    }
+                    default -> throw error("invalid escape");
+                }
+            }
+        }
+
+        private Double parseNumber() {
+            int start = position;
+            while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            if (start == position) {
+                throw error("unexpected character");
+            }
+            return Double.valueOf(text.substring(start, position));
+        }
+
+        private void expect(String token) {
+            if (!text.startsWith(token, position)) {
+                throw error("expected " + token);
+            }
+            position += token.length();
+        }
+
+        private char peek() {
+            return position < text.length() ? text.charAt(position) : 0;
+        }
+
+        private char next() {
+            if (position >= text.length()) {
+                throw error("unexpected end of line");
+            }
+            return text.charAt(position++);
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at column " + (position + 1));
+        }
+    }
+}
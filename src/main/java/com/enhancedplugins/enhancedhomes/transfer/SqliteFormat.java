@@ -0,0 +1,169 @@
+package com.enhancedplugins.enhancedhomes.transfer;
+
+import com.enhancedplugins.enhancedhomes.models.Home;
+import com.enhancedplugins.enhancedhomes.storage.SqlHomeStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The SqliteFormat class streams homes from and to a SQLite database with the schema of the SQLite storage.
+ * It needs the SQLite driver bundled with the server on the class path.
+ */
+final class SqliteFormat {
+    private static final int ROWS_PER_FETCH = 1000;
+    private static final int PLAYERS_PER_TRANSACTION = 1000;
+
+    private SqliteFormat() {
+    }
+
+    private static Connection connect(Path database) throws IOException {
+        try {
+            Class.forName("org.sqlite.JDBC");
+            return DriverManager.getConnection("jdbc:sqlite:" + database.toAbsolutePath());
+        } catch (ClassNotFoundException e) {
+            throw new IOException("The SQLite driver is not on the class path", e);
+        } catch (SQLException e) {
+            throw new IOException("Could not open " + database + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The Source class reads the homes table with a single query sorted by UUID, which the database streams row by row.
+     */
+    static final class Source implements HomeSource {
+        private final Connection connection;
+        private final Statement statement;
+        private final ResultSet result;
+        private boolean hasRow;
+
+        Source(Path database) throws IOException {
+            if (!Files.exists(database)) {
+                throw new IOException("The database " + database + " does not exist");
+            }
+            this.connection = connect(database);
+            try {
+                this.statement = connection.createStatement();
+                statement.setFetchSize(ROWS_PER_FETCH);
+                this.result = statement.executeQuery("SELECT uuid, name, world, x, y, z FROM homes ORDER BY uuid, position");
+                this.hasRow = result.next();
+            } catch (SQLException e) {
+                close();
+                throw new IOException("Could not read the homes table: " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public StoredHomes next() throws IOException {
+            if (!hasRow) {
+                return null;
+            }
+            try {
+                String playerId = result.getString("uuid");
+                List<Home> homes = new ArrayList<>();
+                while (hasRow && playerId.equals(result.getString("uuid"))) {
+                    homes.add(new Home(result.getString("name"), result.getString("world"),
+                            result.getDouble("x"), result.getDouble("y"), result.getDouble("z")));
+                    hasRow = result.next();
+                }
+                return new StoredHomes(UUID.fromString(playerId), homes);
+            } catch (SQLException e) {
+                throw new IOException("Could not read the homes table: " + e.getMessage(), e);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid player UUID in the homes table: " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    /**
+     * The Sink class replaces the homes of each player in the homes table, creating it if needed.
+     * Players are written in batched transactions, so a failed import keeps the players of the committed transactions.
+     */
+    static final class Sink implements HomeSink {
+        private final Connection connection;
+        private final PreparedStatement delete;
+        private final PreparedStatement insert;
+        private int pendingPlayers;
+
+        Sink(Path database) throws IOException {
+            Path parent = database.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            this.connection = connect(database);
+            try {
+                SqlHomeStorage.createSchema(connection);
+                connection.setAutoCommit(false);
+                this.delete = connection.prepareStatement("DELETE FROM homes WHERE uuid = ?");
+                this.insert = connection.prepareStatement("INSERT INTO homes (uuid, name, world, x, y, z, position) VALUES (?, ?, ?, ?, ?, ?, ?)");
+            } catch (SQLException e) {
+                close();
+                throw new IOException("Could not create the homes table: " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void write(UUID playerId, List<Home> homes) throws IOException {
+            try {
+                delete.setString(1, playerId.toString());
+                delete.addBatch();
+                int position = 0;
+                for (Home home : homes) {
+                    insert.setString(1, playerId.toString());
+                    insert.setString(2, home.getName());
+                    insert.setString(3, home.getWorldName());
+                    insert.setDouble(4, home.getX());
+                    insert.setDouble(5, home.getY());
+                    insert.setDouble(6, home.getZ());
+                    insert.setInt(7, position++);
+                    insert.addBatch();
+                }
+                if (++pendingPlayers >= PLAYERS_PER_TRANSACTION) {
+                    commit();
+                }
+            } catch (SQLException e) {
+                throw new IOException("Could not write the homes of " + playerId + ": " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            try {
+                commit();
+            } catch (SQLException e) {
+                throw new IOException("Could not write homes: " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                // Players written since the last commit are dropped
+                connection.close();
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+        }
+
+        private void commit() throws SQLException {
+            delete.executeBatch();
+            insert.executeBatch();
+            connection.commit();
+            pendingPlayers = 0;
+        }
+    }
+}
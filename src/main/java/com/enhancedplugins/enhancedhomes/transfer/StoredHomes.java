@@ -0,0 +1,15 @@
+package com.enhancedplugins.enhancedhomes.transfer;
+
+import com.enhancedplugins.enhancedhomes.models.Home;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The StoredHomes record holds the homes of one player as they are read from or written to a dump.
+ *
+ * @param playerId The UUID of the player.
+ * @param homes The player's homes, in their stored order.
+ */
+public record StoredHomes(UUID playerId, List<Home> homes) {
+}
@@ -0,0 +1,161 @@
+package com.enhancedplugins.enhancedhomes.transfer;
+
+import com.enhancedplugins.enhancedhomes.models.Home;
+import com.enhancedplugins.enhancedhomes.models.Settings;
+import com.enhancedplugins.enhancedhomes.storage.HomesFolder;
+import com.enhancedplugins.enhancedhomes.storage.YamlHomeStorage;
+import org.bukkit.configuration.InvalidConfigurationException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * The YamlFolderFormat class streams homes from and to a folder of per-player YAML files, the layout of the YAML storage.
+ * Files are read from every layout of the folder, flat or in sub-folders, and written in the layout recorded in the folder.
+ */
+final class YamlFolderFormat {
+    private static final Logger LOGGER = Logger.getLogger(YamlFolderFormat.class.getName());
+
+    private YamlFolderFormat() {
+    }
+
+    /**
+     * The Source class reads the player files of a folder in the order of their UUIDs.
+     * Only the UUIDs are listed up front; files are parsed in chunks, in parallel on a bounded pool,
+     * so memory holds one chunk of homes at a time.
+     */
+    static final class Source implements HomeSource {
+        private static final int CHUNK_SIZE = 1024;
+        private static final int MAX_PARSER_THREADS = 8;
+        private final HomesFolder folder;
+        private final UUID[] playerIds;
+        private final ForkJoinPool parserPool = new ForkJoinPool(Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_PARSER_THREADS)));
+        private Iterator<StoredHomes> chunk = Collections.emptyIterator();
+        private int cursor;
+
+        Source(Path folder) throws IOException {
+            if (!Files.isDirectory(folder)) {
+                parserPool.shutdown();
+                throw new NoSuchFileException(folder.toString());
+            }
+            this.folder = HomesFolder.open(folder, LOGGER);
+            List<UUID> listedPlayers = new ArrayList<>();
+            try {
+                this.folder.forEachPlayerFile((playerId, file) -> listedPlayers.add(playerId));
+            } catch (IOException e) {
+                parserPool.shutdown();
+                throw e;
+            }
+            // A player whose file is being moved to another layout may be listed twice
+            this.playerIds = listedPlayers.stream().sorted(HomeTransfer.PLAYER_ORDER).distinct().toArray(UUID[]::new);
+        }
+
+        @Override
+        public StoredHomes next() throws IOException {
+            while (!chunk.hasNext()) {
+                if (cursor >= playerIds.length) {
+                    return null;
+                }
+                UUID[] chunkPlayers = Arrays.copyOfRange(playerIds, cursor, Math.min(cursor + CHUNK_SIZE, playerIds.length));
+                cursor += chunkPlayers.length;
+                chunk = parseChunk(chunkPlayers).iterator();
+            }
+            return chunk.next();
+        }
+
+        @Override
+        public void close() {
+            parserPool.shutdownNow();
+        }
+
+        /**
+         * Parses the files of a chunk of players in parallel, keeping their order.
+         *
+         * @param chunkPlayers The UUIDs of the players.
+         * @return The homes of the players who have homes.
+         * @throws IOException If a file could not be read or parsed.
+         */
+        private List<StoredHomes> parseChunk(UUID[] chunkPlayers) throws IOException {
+            try {
+                return parserPool.submit(() -> Arrays.stream(chunkPlayers).parallel()
+                        .map(this::read)
+                        .filter(storedHomes -> !storedHomes.homes().isEmpty())
+                        .collect(Collectors.toList())).get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+                    throw uncheckedIOException.getCause();
+                }
+                throw new IOException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading homes files", e);
+            }
+        }
+
+        /**
+         * Reads the file of a player. A file moved to another layout between the lookup and the read is looked up again.
+         *
+         * @param playerId The UUID of the player.
+         * @return The homes of the player, empty if their file was deleted since the folder was listed.
+         */
+        private StoredHomes read(UUID playerId) {
+            for (int attempt = 0; attempt <= Settings.MAX_SHARD_LEVELS; attempt++) {
+                Path file = folder.findPlayerFile(playerId);
+                try {
+                    return new StoredHomes(playerId, YamlHomeStorage.parse(Files.readString(file, StandardCharsets.UTF_8)));
+                } catch (NoSuchFileException e) {
+                    // Deleted or moved since it was found
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (InvalidConfigurationException e) {
+                    throw new UncheckedIOException(new IOException("Invalid homes file " + file + ": " + e.getMessage(), e));
+                }
+            }
+            return new StoredHomes(playerId, List.of());
+        }
+    }
+
+    /**
+     * The Sink class writes one file per player into a folder, replacing each file atomically through a temporary file,
+     * and deletes the files of a player without homes in every layout.
+     */
+    static final class Sink implements HomeSink {
+        private final HomesFolder folder;
+
+        Sink(Path folder) throws IOException {
+            Files.createDirectories(folder);
+            this.folder = HomesFolder.open(folder, LOGGER);
+        }
+
+        @Override
+        public void write(UUID playerId, List<Home> homes) throws IOException {
+            Path file = folder.playerFile(playerId);
+            if (homes.isEmpty()) {
+                for (int levels = 0; levels <= Settings.MAX_SHARD_LEVELS; levels++) {
+                    Files.deleteIfExists(folder.playerFile(playerId, levels));
+                }
+                return;
+            }
+            Files.createDirectories(file.getParent());
+            Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(tempFile, YamlHomeStorage.serialize(homes), StandardCharsets.UTF_8);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        @Override
+        public void finish() {}
+
+        @Override
+        public void close() {}
+    }
+}
@@ -0,0 +1,111 @@
+package com.enhancedplugins.enhancedhomes.utils;
+
+import org.bukkit.ChatColor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The MessageTemplate class is a language message compiled once when the language file is loaded.
+ * Color codes are translated at compile time and the message is split around its %placeholder% slots,
+ * so rendering is a single pass over the parts into a reused builder.
+ */
+public final class MessageTemplate {
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+    private final String[] parts;
+
+    private MessageTemplate(String[] parts) {
+        this.parts = parts;
+    }
+
+    /**
+     * Compiles a message.
+     * The parts of the compiled message alternate between literal text (even indexes) and placeholder names (odd indexes).
+     *
+     * @param message The raw message, with '&' color codes.
+     * @return The compiled message.
+     */
+    public static MessageTemplate compile(String message) {
+        String translated = ChatColor.translateAlternateColorCodes('&', message);
+        List<String> parts = new ArrayList<>();
+        int literalStart = 0;
+        int searchFrom = 0;
+        while (true) {
+            int open = translated.indexOf('%', searchFrom);
+            int close = open < 0 ? -1 : translated.indexOf('%', open + 1);
+            if (close < 0) {
+                break;
+            }
+            String name = translated.substring(open + 1, close);
+            if (!isPlaceholderName(name)) {
+                // Not a placeholder, the closing '%' may open the next one
+                searchFrom = close;
+                continue;
+            }
+            parts.add(translated.substring(literalStart, open));
+            parts.add(name);
+            literalStart = close + 1;
+            searchFrom = literalStart;
+        }
+        parts.add(translated.substring(literalStart));
+        return new MessageTemplate(parts.toArray(new String[0]));
+    }
+
+    /**
+     * Renders the message.
+     *
+     * @param placeholders The placeholder names and their values, alternating (e.g. "home", "base", "player", "Steve").
+     * @return The rendered message; placeholders without a value are kept as they are.
+     */
+    public String render(String... placeholders) {
+        return renderPrefixed("", placeholders);
+    }
+
+    /**
+     * Renders the message after a prefix.
+     *
+     * @param prefix The prefix.
+     * @param placeholders The placeholder names and their values, alternating.
+     * @return The prefix followed by the rendered message.
+     */
+    public String renderPrefixed(String prefix, String... placeholders) {
+        if (parts.length == 1) {
+            return prefix.isEmpty() ? parts[0] : prefix + parts[0];
+        }
+        StringBuilder builder = BUILDER.get();
+        builder.setLength(0);
+        builder.append(prefix).append(parts[0]);
+        for (int i = 1; i < parts.length; i += 2) {
+            String value = valueOf(parts[i], placeholders);
+            if (value != null) {
+                builder.append(value);
+            } else {
+                builder.append('%').append(parts[i]).append('%');
+            }
+            builder.append(parts[i + 1]);
+        }
+        return builder.toString();
+    }
+
+    private static String valueOf(String name, String[] placeholders) {
+        for (int i = 0; i + 1 < placeholders.length; i += 2) {
+            if (placeholders[i].equals(name)) {
+                return placeholders[i + 1];
+            }
+        }
+        return null;
+    }
+
+    private static boolean isPlaceholderName(String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!(c >= 'a' && c <= 'z') && !(c >= '0' && c <= '9') && c != '-' && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+}